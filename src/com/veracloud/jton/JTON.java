@@ -110,7 +110,7 @@ public class JTON {
       }
     }
 
-    JtonElement _value = value instanceof JtonElement ? (JtonPrimitive) value : new JtonPrimitive(value);
+    JtonElement _value = value instanceof JtonElement ? (JtonPrimitive) value : JtonPrimitive.valueOf(value);
     if (e.isJtonObject()) {
       e.getAsJtonObject().set(lastPath, _value);
     } else if (e.isJtonArray()) {
@@ -16,25 +16,47 @@ package com.veracloud.jton;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.stream.DoubleStream;
+import java.util.stream.LongStream;
 import java.util.stream.Stream;
 
+import com.veracloud.jton.internal.LinkedArrayMap;
+
 /**
  * A class representing an array type in Json. An array is a list of
  * {@link JtonElement}s each of which can be of a different type. This is an
  * ordered list, meaning that the order in which elements are added is
  * preserved.
+ * <p>
+ * Arrays created empty store their elements unboxed while they are all longs,
+ * all doubles or all booleans, as in arrays of numbers read by the
+ * serializers; the values of such arrays are best read with
+ * {@link #getLong(int)}, {@link #toLongArray()}, {@link #longStream()} and the
+ * like, which do not create elements.
  */
 public final class JtonArray extends JtonElement implements List<JtonElement> {
 
+  /**
+   * Creates an array of objects with the entries of the given maps. Objects
+   * with the same keys in the same order share their keys.
+   */
   public static JtonArray create(List<Map<String, Object>> list) {
     JtonArray result = new JtonArray();
+    LinkedArrayMap.Shape shape = new LinkedArrayMap.Shape();
     for (Map<String, Object> item : list) {
-      result.add(new JtonObject(item));
+      JtonObject object = JtonObject.wrap(new LinkedArrayMap<String, JtonElement>(shape, item != null ? item.size() : 0));
+      if (item != null) {
+        for (Map.Entry<String, Object> entry : item.entrySet()) {
+          object.set(entry.getKey(), entry.getValue());
+        }
+      }
+      result.add(object);
     }
     return result;
   }
@@ -43,11 +65,16 @@ public final class JtonArray extends JtonElement implements List<JtonElement> {
 
   private final List<JtonElement> elements;
 
+  private transient boolean frozen = false;
+
+  /** The hash code, computed once frozen, or 0. */
+  private transient int hash = 0;
+
   /**
    * Creates an empty JsonArray.
    */
   public JtonArray() {
-    elements = new ArrayList<JtonElement>();
+    elements = new PackedElementList();
   }
   
   public JtonArray(List<JtonElement> elements) {
@@ -58,8 +85,15 @@ public final class JtonArray extends JtonElement implements List<JtonElement> {
     this(Arrays.asList(stream.toArray(JtonElement[]::new)));
   }
 
+  /**
+   * Returns this array, if frozen, or a deep copy of it.
+   */
   @Override
   public JtonArray deepCopy() {
+    if (frozen) {
+      return this;
+    }
+
     JtonArray result = new JtonArray();
     for (JtonElement element : elements) {
       result.add(element.deepCopy());
@@ -67,6 +101,38 @@ public final class JtonArray extends JtonElement implements List<JtonElement> {
     return result;
   }
 
+  /**
+   * Freezes the elements of this array and trims it to its size. Elements
+   * stored unboxed are frozen in place, with the list holding them.
+   *
+   * @return this array.
+   */
+  @Override
+  public JtonArray freeze() {
+    if (!frozen) {
+      // Elements stored unboxed are immutable
+      if (getPrimitiveType() == null) {
+        for (JtonElement element : elements) {
+          element.freeze();
+        }
+      }
+
+      trimToSize();
+
+      PackedElementList packed = packed();
+      if (packed != null) {
+        packed.freeze();
+      }
+      frozen = true;
+    }
+    return this;
+  }
+
+  @Override
+  public boolean isFrozen() {
+    return frozen;
+  }
+
   public boolean addObject(Object value) {
     if (value == this) {
       throw new IllegalArgumentException("cyclic reference");
@@ -83,63 +149,63 @@ public final class JtonArray extends JtonElement implements List<JtonElement> {
   }
 
   public boolean add(Boolean bool) {
-    return add(new JtonPrimitive(bool));
+    return add(JtonPrimitive.valueOf(bool));
   }
   
   public void add(int index, Boolean bool) {
-    add(index, new JtonPrimitive(bool));
+    add(index, JtonPrimitive.valueOf(bool));
   }
 
   public JtonElement set(int index, Boolean bool) {
-    return set(index, new JtonPrimitive(bool));
+    return set(index, JtonPrimitive.valueOf(bool));
   }
 
   public boolean add(Number number) {
-    return add(new JtonPrimitive(number));
+    return add(JtonPrimitive.valueOf(number));
   }
   
   public void add(int index, Number number) {
-    add(index, new JtonPrimitive(number));
+    add(index, JtonPrimitive.valueOf(number));
   }
 
   public JtonElement set(int index, Number number) {
-    return set(index, new JtonPrimitive(number));
+    return set(index, JtonPrimitive.valueOf(number));
   }
 
   public boolean add(String string) {
-    return add(new JtonPrimitive(string));
+    return add(JtonPrimitive.valueOf(string));
   }
   
   public void add(int index, String string) {
-    add(index, new JtonPrimitive(string));
+    add(index, JtonPrimitive.valueOf(string));
   }
 
   public JtonElement set(int index, String string) {
-    return set(index, new JtonPrimitive(string));
+    return set(index, JtonPrimitive.valueOf(string));
   }
 
   public boolean add(Character c) {
-    return add(new JtonPrimitive(c));
+    return add(JtonPrimitive.valueOf(c));
   }
   
   public void add(int index, Character c) {
-    add(index, new JtonPrimitive(c));
+    add(index, JtonPrimitive.valueOf(c));
   }
 
   public JtonElement set(int index, Character c) {
-    return set(index, new JtonPrimitive(c));
+    return set(index, JtonPrimitive.valueOf(c));
   }
 
   public boolean add(Date date) {
-    return add(new JtonPrimitive(date));
+    return add(JtonPrimitive.valueOf(date));
   }
   
   public void add(int index, Date date) {
-    add(index, new JtonPrimitive(date));
+    add(index, JtonPrimitive.valueOf(date));
   }
 
   public JtonElement set(int index, Date date) {
-    return set(index, new JtonPrimitive(date));
+    return set(index, JtonPrimitive.valueOf(date));
   }
 
   /**
@@ -151,6 +217,7 @@ public final class JtonArray extends JtonElement implements List<JtonElement> {
    */
   @Override
   public boolean add(JtonElement element) {
+    checkMutable();
     if (element == null) {
       element = JtonNull.INSTANCE;
     }
@@ -164,6 +231,7 @@ public final class JtonArray extends JtonElement implements List<JtonElement> {
    *          the array whose elements need to be added to the array.
    */
   public void addAll(JtonArray array) {
+    checkMutable();
     elements.addAll(array.elements);
   }
 
@@ -179,6 +247,7 @@ public final class JtonArray extends JtonElement implements List<JtonElement> {
    */
   @Override
   public JtonElement set(int index, JtonElement element) {
+    checkMutable();
     if (index >= elements.size()) {
       for (int i = elements.size(); i <= index; i++) {
         elements.add(JtonNull.INSTANCE);
@@ -196,6 +265,7 @@ public final class JtonArray extends JtonElement implements List<JtonElement> {
    * @return true if this array contained the specified element, false otherwise
    */
   public boolean remove(JtonElement element) {
+    checkMutable();
     return elements.remove(element);
   }
 
@@ -212,6 +282,7 @@ public final class JtonArray extends JtonElement implements List<JtonElement> {
    */
   @Override
   public JtonElement remove(int index) {
+    checkMutable();
     return elements.remove(index);
   }
 
@@ -245,7 +316,7 @@ public final class JtonArray extends JtonElement implements List<JtonElement> {
    */
   @Override
   public Iterator<JtonElement> iterator() {
-    return elements.iterator();
+    return view().iterator();
   }
 
   /**
@@ -477,6 +548,185 @@ public final class JtonArray extends JtonElement implements List<JtonElement> {
   // throw new IllegalStateException();
   // }
 
+  /**
+   * Returns {@code long.class}, {@code double.class} or {@code boolean.class}
+   * if the elements of this array are stored unboxed as such, and
+   * <tt>null</tt> otherwise.
+   */
+  public Class<?> getPrimitiveType() {
+    PackedElementList packed = packed();
+    return (packed != null) ? packed.primitiveType() : null;
+  }
+
+  /**
+   * Returns the element at the specified position as a long, without creating
+   * it if it is stored unboxed.
+   *
+   * @see JtonElement#getAsLong()
+   */
+  public long getLong(int i) {
+    long[] longs = longs();
+    return (longs != null && i < elements.size()) ? longs[i] : get(i).getAsLong();
+  }
+
+  /**
+   * Returns the element at the specified position as a double, without
+   * creating it if it is stored unboxed.
+   *
+   * @see JtonElement#getAsDouble()
+   */
+  public double getDouble(int i) {
+    double[] doubles = doubles();
+    if (doubles != null && i < elements.size()) {
+      return doubles[i];
+    }
+
+    long[] longs = longs();
+    return (longs != null && i < elements.size()) ? longs[i] : get(i).getAsDouble();
+  }
+
+  /**
+   * Returns the element at the specified position as a boolean, without
+   * creating it if it is stored unboxed.
+   *
+   * @see JtonElement#getAsBoolean()
+   */
+  public boolean getBoolean(int i) {
+    boolean[] booleans = booleans();
+    return (booleans != null && i < elements.size()) ? booleans[i] : get(i).getAsBoolean();
+  }
+
+  /**
+   * Returns the elements of this array as longs, converted as by
+   * {@link JtonElement#getAsLong()}.
+   */
+  public long[] toLongArray() {
+    int n = elements.size();
+    long[] longs = longs();
+    if (longs != null) {
+      return Arrays.copyOf(longs, n);
+    }
+
+    long[] result = new long[n];
+    for (int i = 0; i < n; i++) {
+      result[i] = elements.get(i).getAsLong();
+    }
+    return result;
+  }
+
+  /**
+   * Returns the elements of this array as doubles, converted as by
+   * {@link JtonElement#getAsDouble()}.
+   */
+  public double[] toDoubleArray() {
+    int n = elements.size();
+    double[] doubles = doubles();
+    if (doubles != null) {
+      return Arrays.copyOf(doubles, n);
+    }
+
+    long[] longs = longs();
+    double[] result = new double[n];
+    for (int i = 0; i < n; i++) {
+      result[i] = (longs != null) ? longs[i] : elements.get(i).getAsDouble();
+    }
+    return result;
+  }
+
+  /**
+   * Returns the elements of this array as booleans, converted as by
+   * {@link JtonElement#getAsBoolean()}.
+   */
+  public boolean[] toBooleanArray() {
+    int n = elements.size();
+    boolean[] booleans = booleans();
+    if (booleans != null) {
+      return Arrays.copyOf(booleans, n);
+    }
+
+    boolean[] result = new boolean[n];
+    for (int i = 0; i < n; i++) {
+      result[i] = elements.get(i).getAsBoolean();
+    }
+    return result;
+  }
+
+  /**
+   * Returns a sequential stream of the elements of this array as longs.
+   */
+  public LongStream longStream() {
+    long[] longs = longs();
+    if (longs != null) {
+      return Arrays.stream(longs, 0, elements.size());
+    }
+    return elements.stream().mapToLong(JtonElement::getAsLong);
+  }
+
+  /**
+   * Returns a sequential stream of the elements of this array as doubles.
+   */
+  public DoubleStream doubleStream() {
+    double[] doubles = doubles();
+    if (doubles != null) {
+      return Arrays.stream(doubles, 0, elements.size());
+    }
+
+    long[] longs = longs();
+    if (longs != null) {
+      return Arrays.stream(longs, 0, elements.size()).asDoubleStream();
+    }
+    return elements.stream().mapToDouble(JtonElement::getAsDouble);
+  }
+
+  /**
+   * Reduces the storage of this array to its size; frozen arrays are trimmed
+   * already, and left as they are.
+   */
+  public void trimToSize() {
+    if (frozen) {
+      return;
+    }
+
+    if (elements instanceof PackedElementList) {
+      ((PackedElementList) elements).trimToSize();
+    } else if (elements instanceof ArrayList) {
+      ((ArrayList<JtonElement>) elements).trimToSize();
+    }
+  }
+
+  /**
+   * Returns the elements or, once frozen, an unmodifiable view of them unless
+   * they are packed, which reject changes themselves.
+   */
+  private List<JtonElement> view() {
+    return (frozen && !(elements instanceof PackedElementList)) ? Collections.unmodifiableList(elements) : elements;
+  }
+
+  private void checkMutable() {
+    if (frozen) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  private PackedElementList packed() {
+    return (elements instanceof PackedElementList) ? (PackedElementList) elements : null;
+  }
+
+  private long[] longs() {
+    PackedElementList packed = packed();
+    return (packed != null) ? packed.longs() : null;
+  }
+
+  private double[] doubles() {
+    PackedElementList packed = packed();
+    return (packed != null) ? packed.doubles() : null;
+  }
+
+  private boolean[] booleans() {
+    PackedElementList packed = packed();
+    return (packed != null) ? packed.booleans() : null;
+  }
+
   @Override
   public boolean equals(Object o) {
     return (o == this) || (o instanceof JtonArray && ((JtonArray) o).elements.equals(elements));
@@ -484,7 +734,17 @@ public final class JtonArray extends JtonElement implements List<JtonElement> {
 
   @Override
   public int hashCode() {
-    return elements.hashCode();
+    if (!frozen) {
+      return elements.hashCode();
+    }
+
+    // Racy but idempotent, as in String
+    int h = hash;
+    if (h == 0) {
+      h = elements.hashCode();
+      hash = h;
+    }
+    return h;
   }
 
   @Override
@@ -511,6 +771,7 @@ public final class JtonArray extends JtonElement implements List<JtonElement> {
   @Override
   @Deprecated
   public boolean remove(Object o) {
+    checkMutable();
     return elements.remove(o);
   }
 
@@ -521,31 +782,37 @@ public final class JtonArray extends JtonElement implements List<JtonElement> {
 
   @Override
   public boolean addAll(Collection<? extends JtonElement> c) {
+    checkMutable();
     return elements.addAll(c);
   }
 
   @Override
   public boolean addAll(int index, Collection<? extends JtonElement> c) {
+    checkMutable();
     return elements.addAll(index, c);
   }
 
   @Override
   public boolean removeAll(Collection<?> c) {
+    checkMutable();
     return elements.removeAll(c);
   }
 
   @Override
   public boolean retainAll(Collection<?> c) {
+    checkMutable();
     return elements.retainAll(c);
   }
 
   @Override
   public void clear() {
+    checkMutable();
     elements.clear();
   }
 
   @Override
   public void add(int index, JtonElement element) {
+    checkMutable();
     elements.add(index, element);
   }
 
@@ -573,17 +840,17 @@ public final class JtonArray extends JtonElement implements List<JtonElement> {
 
   @Override
   public ListIterator<JtonElement> listIterator() {
-    return elements.listIterator();
+    return view().listIterator();
   }
 
   @Override
   public ListIterator<JtonElement> listIterator(int index) {
-    return elements.listIterator(index);
+    return view().listIterator(index);
   }
 
   @Override
   public List<JtonElement> subList(int fromIndex, int toIndex) {
-    return elements.subList(fromIndex, toIndex);
+    return view().subList(fromIndex, toIndex);
   }
 
   @Override
@@ -35,6 +35,34 @@ public abstract class JtonElement {
    */
   public abstract JtonElement deepCopy();
 
+  /**
+   * Makes this element and the elements it contains immutable, in place, and
+   * returns it. Primitives and nulls are immutable already; the methods
+   * changing a frozen object or array, and its views, throw an
+   * {@link UnsupportedOperationException}, and it caches its hash code.
+   * <p>
+   * Freezing does not publish the element: what it and the code before it
+   * wrote is visible to other threads only through a happens-before edge, as
+   * when the element is stored in a <tt>volatile</tt> field or a concurrent
+   * collection, or before the threads are started. Once published so, the
+   * element may be read by any number of threads without synchronization, as
+   * nothing is written to it again but its cached hash code, which is
+   * computed the same by every thread.
+   *
+   * @see #isFrozen()
+   */
+  public JtonElement freeze() {
+    return this;
+  }
+
+  /**
+   * Returns whether this element is immutable, which is always the case but
+   * for objects and arrays that have not been frozen.
+   */
+  public boolean isFrozen() {
+    return true;
+  }
+
   // -----------------------------------------------------------------------
   // TYPE CHECKING
   // -----------------------------------------------------------------------
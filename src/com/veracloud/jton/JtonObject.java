@@ -14,6 +14,7 @@
 package com.veracloud.jton;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Stream;
@@ -22,7 +23,7 @@ import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlRootElement;
 
-import com.veracloud.jton.internal.LinkedTreeMap;
+import com.veracloud.jton.internal.LinkedArrayMap;
 
 /**
  * A class representing an object type in Json. An object consists of name-value
@@ -35,9 +36,14 @@ import com.veracloud.jton.internal.LinkedTreeMap;
 public class JtonObject extends JtonElement implements Map<String, JtonElement> {
   
   private final Map<String, JtonElement> members;
+
+  private transient boolean frozen = false;
+
+  /** The hash code, computed once frozen, or 0. */
+  private transient int hash = 0;
   
   public JtonObject() {
-    members = new LinkedTreeMap<String, JtonElement>();
+    members = new LinkedArrayMap<String, JtonElement>();
   }
 
   public JtonObject(Map<String, Object> map) {
@@ -50,8 +56,33 @@ public class JtonObject extends JtonElement implements Map<String, JtonElement>
     }
   }
 
+  private JtonObject(Map<String, JtonElement> members, boolean wrap) {
+    this.members = members;
+  }
+
+  /**
+   * Creates an object that keeps its members in the specified map; the map is
+   * used as it is, not copied.
+   *
+   * @param members
+   *          the map holding the members of the object.
+   */
+  public static JtonObject wrap(Map<String, JtonElement> members) {
+    if (members == null) {
+      throw new IllegalArgumentException("members is null.");
+    }
+    return new JtonObject(members, true);
+  }
+
+  /**
+   * Returns this object, if frozen, or a deep copy of it.
+   */
   @Override
   public JtonObject deepCopy() {
+    if (frozen) {
+      return this;
+    }
+
     JtonObject result = new JtonObject();
     for (Map.Entry<String, JtonElement> entry : members.entrySet()) {
       result.add(entry.getKey(), entry.getValue().deepCopy());
@@ -59,6 +90,32 @@ public class JtonObject extends JtonElement implements Map<String, JtonElement>
     return result;
   }
 
+  /**
+   * Freezes the members of this object, and trims its member map to its size.
+   *
+   * @return this object.
+   */
+  @Override
+  public JtonObject freeze() {
+    if (!frozen) {
+      for (JtonElement value : members.values()) {
+        value.freeze();
+      }
+
+      if (members instanceof LinkedArrayMap) {
+        ((LinkedArrayMap<String, JtonElement>) members).trimToSize();
+      }
+
+      frozen = true;
+    }
+    return this;
+  }
+
+  @Override
+  public boolean isFrozen() {
+    return frozen;
+  }
+
   /**
    * Convenience method to add a member. The specified value is converted to a
    * JtonPrimitive at runtime.
@@ -74,6 +131,7 @@ public class JtonObject extends JtonElement implements Map<String, JtonElement>
   }
 
   public JtonObject set(String property, Object value) {
+    checkMutable();
     if (value == this) {
       throw new IllegalArgumentException("cyclic reference");
     }
@@ -129,6 +187,7 @@ public class JtonObject extends JtonElement implements Map<String, JtonElement>
    *          the member object.
    */
   public JtonElement remove(String key) {
+    checkMutable();
     return members.remove(key);
   }
 
@@ -146,8 +205,11 @@ public class JtonObject extends JtonElement implements Map<String, JtonElement>
   }
 
   static JtonElement createJsonElement(Object value, boolean jtonTransient) {
-    return (value == null && !jtonTransient) ? JtonNull.INSTANCE
-        : new JtonPrimitive(value, jtonTransient);
+    if (jtonTransient) {
+      return JtonPrimitive.createTransient(value);
+    }
+
+    return value == null ? JtonNull.INSTANCE : JtonPrimitive.valueOf(value);
   }
 
   /**
@@ -158,7 +220,7 @@ public class JtonObject extends JtonElement implements Map<String, JtonElement>
    */
   @Override
   public Set<Map.Entry<String, JtonElement>> entrySet() {
-    return members.entrySet();
+    return view().entrySet();
   }
 
   /**
@@ -184,10 +246,11 @@ public class JtonObject extends JtonElement implements Map<String, JtonElement>
    */
   @Override
   public JtonElement get(String memberName) {
-    if (members.containsKey(memberName))
-      return members.get(memberName);
-    else
+    JtonElement value = members.get(memberName);
+    if (value == null && !members.containsKey(memberName)) {
       return JtonNull.INSTANCE;
+    }
+    return value;
   }
 
   @Override
@@ -199,7 +262,17 @@ public class JtonObject extends JtonElement implements Map<String, JtonElement>
 
   @Override
   public int hashCode() {
-    return members.hashCode();
+    if (!frozen) {
+      return members.hashCode();
+    }
+
+    // Racy but idempotent, as in String
+    int h = hash;
+    if (h == 0) {
+      h = members.hashCode();
+      hash = h;
+    }
+    return h;
   }
 
   @Override
@@ -240,6 +313,7 @@ public class JtonObject extends JtonElement implements Map<String, JtonElement>
   @Override
   @Deprecated
   public final JtonElement remove(Object key) {
+    checkMutable();
     return members.remove(key);
   }
 
@@ -253,16 +327,30 @@ public class JtonObject extends JtonElement implements Map<String, JtonElement>
 
   @Override
   public void clear() {
+    checkMutable();
     members.clear();
   }
 
   @Override
   public Set<String> keySet() {
-    return members.keySet();
+    return view().keySet();
   }
 
   @Override
   public Collection<JtonElement> values() {
-    return members.values();
+    return view().values();
+  }
+
+  /**
+   * Returns the members, or an unmodifiable view of them once frozen.
+   */
+  private Map<String, JtonElement> view() {
+    return frozen ? Collections.unmodifiableMap(members) : members;
+  }
+
+  private void checkMutable() {
+    if (frozen) {
+      throw new UnsupportedOperationException();
+    }
   }
 }
@@ -44,77 +44,178 @@ public class JtonPrimitive extends JtonElement {
       Character.class, char.class
   };
 
-  // ---
-
   /**
-   * Primitive value.
+   * Range of the integers whose primitives are shared.
    */
-  private Object value;
-  private transient Object _value;
+  private static final int MIN_CACHED_LONG = -128;
+  private static final int MAX_CACHED_LONG = 1023;
+
+  private static final JtonPrimitive[] LONG_CACHE = new JtonPrimitive[MAX_CACHED_LONG - MIN_CACHED_LONG + 1];
+  private static final JtonPrimitive[] LAZY_LONG_CACHE = new JtonPrimitive[LONG_CACHE.length];
+
+  private static final JtonPrimitive TRUE = new BooleanValue(true);
+  private static final JtonPrimitive FALSE = new BooleanValue(false);
+
+  static {
+    for (int i = 0; i < LONG_CACHE.length; i++) {
+      LONG_CACHE[i] = new LongValue(MIN_CACHED_LONG + i);
+      LAZY_LONG_CACHE[i] = new LazyLongValue(MIN_CACHED_LONG + i);
+    }
+  }
+
+  // ---
 
   /**
-   * Flag indicating that the primitive value is transient.
+   * Primitive value; <tt>null</tt> in the subclasses that store their value
+   * unboxed.
    */
-  private transient boolean jtonTransient = false;
+  private final Object value;
 
   /**
    * Create a primitive using the specified Object. It must be an instance of
    * {@link Number}, a {@link Date}, a Java primitive type, or a String.
+   * <p>
+   * The {@code valueOf} factory methods return primitives of the same value
+   * that take less memory.
    *
    * @param primitive
    *          the value to create the primitive with.
    */
   public JtonPrimitive(Object primitive) {
-    setPrimitiveValue(primitive);
+    if (primitive instanceof Character) {
+      // convert characters to strings since in JSON, characters are represented
+      // as a single character string
+      char c = ((Character) primitive).charValue();
+      this.value = String.valueOf(c);
+    } else {
+      $Gson$Preconditions.checkArgument(isPrimitiveOrStringOrNumberOrDate(primitive));
+      this.value = primitive;
+    }
   }
 
   /**
-   * Create a primitive using the specified Object. It must be an instance of
-   * {@link Number}, a {@link Date}, a Java primitive type, or a String;
-   * otherwise {@code jtonTransient} parameter must be set to {@code true}.
-   * 
-   * @param primitive
-   *          the value to create the primitive with.
-   * @param jtonTransient
-   *          whether this primitive value is transient or not.
+   * Creates a primitive of a subclass that holds its own value.
    */
-  JtonPrimitive(Object primitive, boolean jtonTransient) {
-    this.jtonTransient = jtonTransient;
-    setPrimitiveValue(primitive);
+  private JtonPrimitive() {
+    this.value = null;
   }
 
-  @Override
-  public JtonPrimitive deepCopy() {
-    if (!isTransient()) {
-      return new JtonPrimitive(value);
+  /**
+   * Returns a primitive holding the given long, as a {@link Long}. Small
+   * values are shared.
+   */
+  public static JtonPrimitive valueOf(long value) {
+    if (value >= MIN_CACHED_LONG && value <= MAX_CACHED_LONG) {
+      return LONG_CACHE[(int) value - MIN_CACHED_LONG];
     }
-    return this;
+
+    return new LongValue(value);
   }
 
-  @Override
-  public boolean isTransient() {
-    return jtonTransient;
+  /**
+   * Returns a primitive holding the given double, as a {@link Double}.
+   */
+  public static JtonPrimitive valueOf(double value) {
+    return new DoubleValue(value);
   }
 
-  @Override
-  public Object getPrimitiveValue() {
-    return (jtonTransient) ? _value : value;
+  /**
+   * Returns one of the two shared boolean primitives.
+   */
+  public static JtonPrimitive valueOf(boolean value) {
+    return value ? TRUE : FALSE;
+  }
+
+  /**
+   * Returns a primitive holding the given character as a single character
+   * string.
+   */
+  public static JtonPrimitive valueOf(char value) {
+    return new StringValue(String.valueOf(value));
   }
 
-  final void setPrimitiveValue(Object primitive) {
-    if (isTransient()) {
-      this._value = primitive;
+  public static JtonPrimitive valueOf(String value) {
+    return new StringValue(value);
+  }
+
+  /**
+   * Returns a primitive holding the given value, which must be valid for
+   * {@link #JtonPrimitive(Object)}, in the most compact form for its type.
+   */
+  public static JtonPrimitive valueOf(Object primitive) {
+    if (primitive instanceof String) {
+      return new StringValue((String) primitive);
+    } else if (primitive instanceof Long) {
+      return valueOf(((Long) primitive).longValue());
+    } else if (primitive instanceof Double) {
+      return valueOf(((Double) primitive).doubleValue());
+    } else if (primitive instanceof Boolean) {
+      return valueOf(((Boolean) primitive).booleanValue());
+    } else if (primitive instanceof LazilyParsedNumber) {
+      return lazyValueOf(primitive.toString());
+    } else if (primitive instanceof Number) {
+      return new NumberValue((Number) primitive);
+    } else if (primitive instanceof Date) {
+      return new DateValue((Date) primitive);
     } else if (primitive instanceof Character) {
-      // convert characters to strings since in JSON, characters are represented
-      // as a single character string
-      char c = ((Character) primitive).charValue();
-      this.value = String.valueOf(c);
+      return valueOf(((Character) primitive).charValue());
     } else {
-      $Gson$Preconditions.checkArgument(isPrimitiveOrStringOrNumberOrDate(primitive));
-      this.value = primitive;
+      return new JtonPrimitive(primitive);
     }
   }
 
+  /**
+   * Returns a primitive for a lazily parsed number. Integers in canonical form
+   * fitting in a long, whose text is that of the long, are stored unboxed.
+   */
+  private static JtonPrimitive lazyValueOf(String text) {
+    int length = text.length();
+    int start = (length > 1 && text.charAt(0) == '-') ? 1 : 0;
+
+    boolean canonical = length - start <= 18 && length > start
+        && (text.charAt(start) != '0' || length == 1);
+    for (int i = start; i < length && canonical; i++) {
+      char c = text.charAt(i);
+      canonical = c >= '0' && c <= '9';
+    }
+
+    if (!canonical) {
+      return new LazyNumberValue(text);
+    }
+
+    return lazyValueOf(Long.parseLong(text));
+  }
+
+  /**
+   * Returns a primitive for a lazily parsed integer whose text is that of the
+   * given long.
+   */
+  static JtonPrimitive lazyValueOf(long value) {
+    if (value >= MIN_CACHED_LONG && value <= MAX_CACHED_LONG) {
+      return LAZY_LONG_CACHE[(int) value - MIN_CACHED_LONG];
+    }
+
+    return new LazyLongValue(value);
+  }
+
+  /**
+   * Creates a transient primitive, which may hold any object or
+   * <tt>null</tt>.
+   */
+  static JtonPrimitive createTransient(Object value) {
+    return new TransientValue(value);
+  }
+
+  @Override
+  public JtonPrimitive deepCopy() {
+    return new JtonPrimitive(value);
+  }
+
+  @Override
+  public Object getPrimitiveValue() {
+    return value;
+  }
+
   /**
    * Check whether this primitive contains a boolean value.
    *
@@ -406,7 +507,8 @@ public class JtonPrimitive extends JtonElement {
     if (this == obj) {
       return true;
     }
-    if (obj == null || getClass() != obj.getClass()) {
+    // Primitives of the same value are equal whatever their representation
+    if (!(obj instanceof JtonPrimitive)) {
       return false;
     }
     Object value = getPrimitiveValue();
@@ -439,4 +541,526 @@ public class JtonPrimitive extends JtonElement {
     }
     return false;
   }
+
+  /**
+   * A long, stored unboxed.
+   */
+  static final class LongValue extends JtonPrimitive {
+    final long value;
+
+    LongValue(long value) {
+      this.value = value;
+    }
+
+    @Override
+    public JtonPrimitive deepCopy() {
+      return this;
+    }
+
+    @Override
+    public Object getPrimitiveValue() {
+      return Long.valueOf(value);
+    }
+
+    @Override
+    public boolean isBoolean() {
+      return false;
+    }
+
+    @Override
+    public boolean isNumber() {
+      return true;
+    }
+
+    @Override
+    public boolean isString() {
+      return false;
+    }
+
+    @Override
+    public boolean isDate() {
+      return false;
+    }
+
+    @Override
+    public Number getAsNumber() {
+      return Long.valueOf(value);
+    }
+
+    @Override
+    public String getAsString() {
+      return Long.toString(value);
+    }
+
+    @Override
+    public double getAsDouble() {
+      return value;
+    }
+
+    @Override
+    public float getAsFloat() {
+      return value;
+    }
+
+    @Override
+    public long getAsLong() {
+      return value;
+    }
+
+    @Override
+    public int getAsInt() {
+      return (int) value;
+    }
+
+    @Override
+    public short getAsShort() {
+      return (short) value;
+    }
+
+    @Override
+    public byte getAsByte() {
+      return (byte) value;
+    }
+
+    @Override
+    public int hashCode() {
+      return (int) (value ^ (value >>> 32));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj instanceof LongValue) {
+        return value == ((LongValue) obj).value;
+      }
+      return super.equals(obj);
+    }
+  }
+
+  /**
+   * A double, stored unboxed.
+   */
+  static final class DoubleValue extends JtonPrimitive {
+    final double value;
+
+    DoubleValue(double value) {
+      this.value = value;
+    }
+
+    @Override
+    public JtonPrimitive deepCopy() {
+      return this;
+    }
+
+    @Override
+    public Object getPrimitiveValue() {
+      return Double.valueOf(value);
+    }
+
+    @Override
+    public boolean isBoolean() {
+      return false;
+    }
+
+    @Override
+    public boolean isNumber() {
+      return true;
+    }
+
+    @Override
+    public boolean isString() {
+      return false;
+    }
+
+    @Override
+    public boolean isDate() {
+      return false;
+    }
+
+    @Override
+    public Number getAsNumber() {
+      return Double.valueOf(value);
+    }
+
+    @Override
+    public String getAsString() {
+      return Double.toString(value);
+    }
+
+    @Override
+    public double getAsDouble() {
+      return value;
+    }
+
+    @Override
+    public float getAsFloat() {
+      return (float) value;
+    }
+
+    @Override
+    public long getAsLong() {
+      return (long) value;
+    }
+
+    @Override
+    public int getAsInt() {
+      return (int) value;
+    }
+
+    @Override
+    public int hashCode() {
+      long bits = Double.doubleToLongBits(value);
+      return (int) (bits ^ (bits >>> 32));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj instanceof DoubleValue) {
+        double other = ((DoubleValue) obj).value;
+        return value == other || (Double.isNaN(value) && Double.isNaN(other));
+      }
+      return super.equals(obj);
+    }
+  }
+
+  /**
+   * A boolean; there are only the two shared instances.
+   */
+  static final class BooleanValue extends JtonPrimitive {
+    final boolean value;
+
+    BooleanValue(boolean value) {
+      this.value = value;
+    }
+
+    @Override
+    public JtonPrimitive deepCopy() {
+      return this;
+    }
+
+    @Override
+    public Object getPrimitiveValue() {
+      return Boolean.valueOf(value);
+    }
+
+    @Override
+    public boolean isBoolean() {
+      return true;
+    }
+
+    @Override
+    public boolean isNumber() {
+      return false;
+    }
+
+    @Override
+    public boolean isString() {
+      return false;
+    }
+
+    @Override
+    public boolean isDate() {
+      return false;
+    }
+
+    @Override
+    public boolean getAsBoolean() {
+      return value;
+    }
+
+    @Override
+    public String getAsString() {
+      return value ? "true" : "false";
+    }
+
+    @Override
+    public int hashCode() {
+      return Boolean.hashCode(value);
+    }
+  }
+
+  /**
+   * A string.
+   */
+  private static final class StringValue extends JtonPrimitive {
+    StringValue(String value) {
+      super(value);
+    }
+
+    @Override
+    public JtonPrimitive deepCopy() {
+      return this;
+    }
+
+    @Override
+    public boolean isBoolean() {
+      return false;
+    }
+
+    @Override
+    public boolean isNumber() {
+      return false;
+    }
+
+    @Override
+    public boolean isString() {
+      return true;
+    }
+
+    @Override
+    public boolean isDate() {
+      return false;
+    }
+
+    @Override
+    public String getAsString() {
+      return (String) getPrimitiveValue();
+    }
+  }
+
+  /**
+   * A number of another type than long and double, such as a
+   * {@link BigDecimal} or a {@link BigInteger}.
+   */
+  private static final class NumberValue extends JtonPrimitive {
+    NumberValue(Number value) {
+      super(value);
+    }
+
+    @Override
+    public JtonPrimitive deepCopy() {
+      return this;
+    }
+
+    @Override
+    public boolean isBoolean() {
+      return false;
+    }
+
+    @Override
+    public boolean isNumber() {
+      return true;
+    }
+
+    @Override
+    public boolean isString() {
+      return false;
+    }
+
+    @Override
+    public boolean isDate() {
+      return false;
+    }
+
+    @Override
+    public Number getAsNumber() {
+      return (Number) getPrimitiveValue();
+    }
+
+    @Override
+    public String getAsString() {
+      return getPrimitiveValue().toString();
+    }
+  }
+
+  /**
+   * A number kept as its text, and given as a {@link LazilyParsedNumber}.
+   */
+  private static final class LazyNumberValue extends JtonPrimitive {
+    LazyNumberValue(String text) {
+      super(text);
+    }
+
+    @Override
+    public JtonPrimitive deepCopy() {
+      return this;
+    }
+
+    @Override
+    public Object getPrimitiveValue() {
+      return new LazilyParsedNumber(getAsString());
+    }
+
+    @Override
+    public boolean isBoolean() {
+      return false;
+    }
+
+    @Override
+    public boolean isNumber() {
+      return true;
+    }
+
+    @Override
+    public boolean isString() {
+      return false;
+    }
+
+    @Override
+    public boolean isDate() {
+      return false;
+    }
+
+    @Override
+    public Number getAsNumber() {
+      return new LazilyParsedNumber(getAsString());
+    }
+
+    @Override
+    public String getAsString() {
+      return (String) super.getPrimitiveValue();
+    }
+
+    @Override
+    public BigDecimal getAsBigDecimal() {
+      return new BigDecimal(getAsString());
+    }
+
+    @Override
+    public BigInteger getAsBigInteger() {
+      return new BigInteger(getAsString());
+    }
+  }
+
+  /**
+   * A lazily parsed integer, stored unboxed; its text is given back by
+   * {@link Long#toString(long)}.
+   */
+  static final class LazyLongValue extends JtonPrimitive {
+    final long value;
+
+    LazyLongValue(long value) {
+      this.value = value;
+    }
+
+    @Override
+    public JtonPrimitive deepCopy() {
+      return this;
+    }
+
+    @Override
+    public Object getPrimitiveValue() {
+      return new LazilyParsedNumber(Long.toString(value));
+    }
+
+    @Override
+    public boolean isBoolean() {
+      return false;
+    }
+
+    @Override
+    public boolean isNumber() {
+      return true;
+    }
+
+    @Override
+    public boolean isString() {
+      return false;
+    }
+
+    @Override
+    public boolean isDate() {
+      return false;
+    }
+
+    @Override
+    public Number getAsNumber() {
+      return new LazilyParsedNumber(Long.toString(value));
+    }
+
+    @Override
+    public String getAsString() {
+      return Long.toString(value);
+    }
+
+    @Override
+    public double getAsDouble() {
+      return value;
+    }
+
+    @Override
+    public long getAsLong() {
+      return value;
+    }
+
+    @Override
+    public int getAsInt() {
+      return (int) value;
+    }
+
+    // As lazily parsed numbers, compared and hashed as doubles, without
+    // parsing the text
+
+    @Override
+    public int hashCode() {
+      return Double.hashCode(value);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj instanceof LazyLongValue) {
+        return (double) value == (double) ((LazyLongValue) obj).value;
+      }
+      return super.equals(obj);
+    }
+  }
+
+  /**
+   * A date, or one of its SQL subclasses.
+   */
+  private static final class DateValue extends JtonPrimitive {
+    DateValue(Date value) {
+      super(value);
+    }
+
+    @Override
+    public boolean isBoolean() {
+      return false;
+    }
+
+    @Override
+    public boolean isNumber() {
+      return false;
+    }
+
+    @Override
+    public boolean isString() {
+      return false;
+    }
+
+    @Override
+    public boolean isDate() {
+      return true;
+    }
+
+    @Override
+    public Date getAsDate() {
+      return (Date) getPrimitiveValue();
+    }
+  }
+
+  /**
+   * A transient value, which may be any object.
+   */
+  private static final class TransientValue extends JtonPrimitive {
+    private final Object value;
+
+    TransientValue(Object value) {
+      this.value = value;
+    }
+
+    @Override
+    public JtonPrimitive deepCopy() {
+      return this;
+    }
+
+    @Override
+    public boolean isTransient() {
+      return true;
+    }
+
+    @Override
+    public Object getPrimitiveValue() {
+      return value;
+    }
+  }
 }
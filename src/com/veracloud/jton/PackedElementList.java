@@ -0,0 +1,329 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.veracloud.jton;
+
+import java.lang.reflect.Array;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * The elements of a {@link JtonArray}, stored unboxed in an array of longs,
+ * doubles or booleans while they are all primitives of one of these types,
+ * and in an array of elements otherwise.
+ * <p>
+ * The storage is chosen by the first element added, and replaced by an array
+ * of elements when an element of another type is added or set. Elements
+ * stored unboxed are created when they are read, as by the
+ * {@code JtonPrimitive.valueOf} methods, so they are equal to the elements
+ * added but not always the same instances.
+ * <p>
+ * A frozen list rejects changes with an
+ * {@link UnsupportedOperationException}.
+ */
+final class PackedElementList extends AbstractList<JtonElement> implements RandomAccess {
+  /** Kinds of storage. */
+  private static final byte EMPTY = 0;
+  private static final byte ELEMENTS = 1;
+  private static final byte LONGS = 2;
+  private static final byte LAZY_LONGS = 3;
+  private static final byte DOUBLES = 4;
+  private static final byte BOOLEANS = 5;
+
+  private static final int INITIAL_CAPACITY = 4;
+
+  private byte kind = EMPTY;
+
+  /**
+   * A {@code long[]}, {@code double[]}, {@code boolean[]} or
+   * {@code JtonElement[]} according to the kind; <tt>null</tt> while empty.
+   */
+  private Object data = null;
+  private int size = 0;
+
+  private boolean frozen = false;
+
+  private static byte kindOf(JtonElement element) {
+    if (element instanceof JtonPrimitive.LongValue) {
+      return LONGS;
+    } else if (element instanceof JtonPrimitive.LazyLongValue) {
+      return LAZY_LONGS;
+    } else if (element instanceof JtonPrimitive.DoubleValue) {
+      return DOUBLES;
+    } else if (element instanceof JtonPrimitive.BooleanValue) {
+      return BOOLEANS;
+    } else {
+      return ELEMENTS;
+    }
+  }
+
+  private static Object newArray(byte kind, int capacity) {
+    switch (kind) {
+    case LONGS:
+    case LAZY_LONGS:
+      return new long[capacity];
+    case DOUBLES:
+      return new double[capacity];
+    case BOOLEANS:
+      return new boolean[capacity];
+    default:
+      return new JtonElement[capacity];
+    }
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public JtonElement get(int index) {
+    checkIndex(index);
+
+    switch (kind) {
+    case LONGS:
+      return JtonPrimitive.valueOf(((long[]) data)[index]);
+    case LAZY_LONGS:
+      return JtonPrimitive.lazyValueOf(((long[]) data)[index]);
+    case DOUBLES:
+      return JtonPrimitive.valueOf(((double[]) data)[index]);
+    case BOOLEANS:
+      return JtonPrimitive.valueOf(((boolean[]) data)[index]);
+    default:
+      return ((JtonElement[]) data)[index];
+    }
+  }
+
+  @Override
+  public JtonElement set(int index, JtonElement element) {
+    checkMutable();
+    checkIndex(index);
+
+    JtonElement result = get(index);
+    if (kindOf(element) != kind) {
+      unpack();
+    }
+    store(index, element);
+    return result;
+  }
+
+  @Override
+  public boolean add(JtonElement element) {
+    checkMutable();
+
+    // Appends of elements of the kind stored, with room, are the common case
+    int size = this.size;
+    boolean stored = false;
+    switch (kind) {
+    case ELEMENTS:
+      JtonElement[] elements = (JtonElement[]) data;
+      if (size < elements.length) {
+        elements[size] = element;
+        stored = true;
+      }
+      break;
+    case LONGS:
+      long[] longs = (long[]) data;
+      if (size < longs.length && element instanceof JtonPrimitive.LongValue) {
+        longs[size] = ((JtonPrimitive.LongValue) element).value;
+        stored = true;
+      }
+      break;
+    case LAZY_LONGS:
+      long[] lazyLongs = (long[]) data;
+      if (size < lazyLongs.length && element instanceof JtonPrimitive.LazyLongValue) {
+        lazyLongs[size] = ((JtonPrimitive.LazyLongValue) element).value;
+        stored = true;
+      }
+      break;
+    case DOUBLES:
+      double[] doubles = (double[]) data;
+      if (size < doubles.length && element instanceof JtonPrimitive.DoubleValue) {
+        doubles[size] = ((JtonPrimitive.DoubleValue) element).value;
+        stored = true;
+      }
+      break;
+    case BOOLEANS:
+      boolean[] booleans = (boolean[]) data;
+      if (size < booleans.length && element instanceof JtonPrimitive.BooleanValue) {
+        booleans[size] = ((JtonPrimitive.BooleanValue) element).value;
+        stored = true;
+      }
+      break;
+    default:
+      break;
+    }
+
+    if (stored) {
+      this.size = size + 1;
+      modCount++;
+    } else {
+      add(size, element);
+    }
+    return true;
+  }
+
+  @Override
+  public void add(int index, JtonElement element) {
+    checkMutable();
+
+    if (index < 0 || index > size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+
+    if (kind == EMPTY) {
+      kind = kindOf(element);
+      data = newArray(kind, INITIAL_CAPACITY);
+    } else if (kindOf(element) != kind) {
+      unpack();
+    }
+
+    if (size == Array.getLength(data)) {
+      Object grown = newArray(kind, size + (size >> 1) + 1);
+      System.arraycopy(data, 0, grown, 0, size);
+      data = grown;
+    }
+
+    if (index < size) {
+      System.arraycopy(data, index, data, index + 1, size - index);
+    }
+    store(index, element);
+    size++;
+    modCount++;
+  }
+
+  @Override
+  public JtonElement remove(int index) {
+    checkMutable();
+    checkIndex(index);
+
+    JtonElement result = get(index);
+    System.arraycopy(data, index + 1, data, index, size - index - 1);
+    size--;
+    if (kind == ELEMENTS) {
+      ((JtonElement[]) data)[size] = null;
+    }
+    modCount++;
+    return result;
+  }
+
+  @Override
+  public void clear() {
+    checkMutable();
+
+    kind = EMPTY;
+    data = null;
+    size = 0;
+    modCount++;
+  }
+
+  /**
+   * Reduces the capacity of the storage to the size of the list.
+   */
+  void trimToSize() {
+    if (data != null && size < Array.getLength(data)) {
+      Object trimmed = newArray(kind, size);
+      System.arraycopy(data, 0, trimmed, 0, size);
+      data = trimmed;
+    }
+  }
+
+  /**
+   * Makes this list immutable.
+   */
+  void freeze() {
+    frozen = true;
+  }
+
+  /**
+   * Returns {@code long.class}, {@code double.class} or {@code boolean.class}
+   * if the elements are stored unboxed, and <tt>null</tt> otherwise.
+   */
+  Class<?> primitiveType() {
+    switch (kind) {
+    case LONGS:
+    case LAZY_LONGS:
+      return long.class;
+    case DOUBLES:
+      return double.class;
+    case BOOLEANS:
+      return boolean.class;
+    default:
+      return null;
+    }
+  }
+
+  /**
+   * Returns the storage, whose length may exceed the size, if the elements
+   * are stored as longs, or <tt>null</tt>.
+   */
+  long[] longs() {
+    return (kind == LONGS || kind == LAZY_LONGS) ? (long[]) data : null;
+  }
+
+  double[] doubles() {
+    return (kind == DOUBLES) ? (double[]) data : null;
+  }
+
+  boolean[] booleans() {
+    return (kind == BOOLEANS) ? (boolean[]) data : null;
+  }
+
+  private void store(int index, JtonElement element) {
+    switch (kind) {
+    case LONGS:
+      ((long[]) data)[index] = ((JtonPrimitive.LongValue) element).value;
+      break;
+    case LAZY_LONGS:
+      ((long[]) data)[index] = ((JtonPrimitive.LazyLongValue) element).value;
+      break;
+    case DOUBLES:
+      ((double[]) data)[index] = ((JtonPrimitive.DoubleValue) element).value;
+      break;
+    case BOOLEANS:
+      ((boolean[]) data)[index] = ((JtonPrimitive.BooleanValue) element).value;
+      break;
+    default:
+      ((JtonElement[]) data)[index] = element;
+    }
+  }
+
+  /**
+   * Replaces unboxed storage by an array of the elements.
+   */
+  private void unpack() {
+    if (kind == ELEMENTS) {
+      return;
+    }
+
+    JtonElement[] elements = new JtonElement[Array.getLength(data)];
+    for (int i = 0; i < size; i++) {
+      elements[i] = get(i);
+    }
+
+    kind = ELEMENTS;
+    data = elements;
+  }
+
+  private void checkMutable() {
+    if (frozen) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+  }
+}
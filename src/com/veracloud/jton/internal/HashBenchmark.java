@@ -0,0 +1,91 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.veracloud.jton.internal;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import com.veracloud.jton.JtonElement;
+import com.veracloud.jton.serialization.JsonSerializer;
+import com.veracloud.jton.serialization.SerializationException;
+
+/**
+ * Measures hashing parsed documents, mutable or frozen with
+ * {@link JtonElement#freeze()}: removing duplicates with a {@link HashSet},
+ * and counting them in a {@link HashMap} over five rounds of lookups. Run once
+ * for each kind of tree, in separate JVMs, with a heap large enough to hold
+ * the documents without collecting during the measures ({@code -Xms2g
+ * -Xmx2g}).
+ * <p>
+ * Usage: {@code HashBenchmark [mutable|freeze] [number of documents] [iterations]}.
+ */
+public class HashBenchmark {
+  private static final int DISTINCT_DOCUMENTS = 10000;
+
+  private static final int LOOKUP_ROUNDS = 5;
+
+  private static volatile int sink;
+
+  public static void main(String[] args) throws IOException, SerializationException {
+    boolean freeze = args.length > 0 && args[0].equals("freeze");
+    int count = args.length > 1 ? Integer.parseInt(args[1]) : 50000;
+    int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 15;
+
+    // Documents parsed apart, so that equal trees are not the same instances
+    Random random = new Random(1);
+    JsonSerializer serializer = new JsonSerializer();
+    List<JtonElement> trees = new ArrayList<JtonElement>(count);
+    for (int i = 0; i < count; i++) {
+      JtonElement tree = serializer.readObject(document(random.nextInt(DISTINCT_DOCUMENTS)));
+      trees.add(freeze ? tree.freeze() : tree);
+    }
+
+    long bestDedupe = Long.MAX_VALUE;
+    long bestLookups = Long.MAX_VALUE;
+    for (int i = 0; i < iterations; i++) {
+      long t = System.nanoTime();
+      Set<JtonElement> set = new HashSet<JtonElement>(trees);
+      long dedupe = System.nanoTime() - t;
+
+      t = System.nanoTime();
+      Map<JtonElement, Integer> counts = new HashMap<JtonElement, Integer>();
+      for (int round = 0; round < LOOKUP_ROUNDS; round++) {
+        for (JtonElement tree : trees) {
+          counts.merge(tree, 1, Integer::sum);
+        }
+      }
+      long lookups = System.nanoTime() - t;
+      sink = set.size() + counts.size();
+
+      bestDedupe = Math.min(bestDedupe, dedupe);
+      bestLookups = Math.min(bestLookups, lookups);
+    }
+
+    System.out.printf("%-7s dedupe %6.1f ms   lookups x%d %6.1f ms   (best of %d)%n",
+        freeze ? "frozen" : "mutable", bestDedupe / 1e6, LOOKUP_ROUNDS, bestLookups / 1e6, iterations);
+  }
+
+  private static byte[] document(int id) {
+    return ("{\"id\":" + id + ",\"name\":\"n" + id + "\",\"score\":" + (id * 1.25)
+        + ",\"tags\":[\"a\",\"b\"],\"geo\":{\"lat\":" + (id % 90) + ".5,\"lon\":" + (id % 180) + ".25}}")
+        .getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,590 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.veracloud.jton.internal;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A map whose iteration order is the insertion order, with the keys and values
+ * stored in two parallel arrays.
+ * <p>
+ * Small maps, which are most JSON objects, are searched by a linear scan of
+ * their keys. Maps larger than {@value #MAX_LINEAR_SIZE} entries add an
+ * open-addressed hash index of the keys, with linear probing. Removing an
+ * entry shifts the following ones and rebuilds the index, if any, so it takes
+ * linear time. Keys must be non-null.
+ * <p>
+ * Maps created with a {@link Shape} share their keys and index with the other
+ * maps of that shape given the same keys in the same order, and only hold
+ * their values: the rows of a table or the elements of an array of similar
+ * objects keep a single copy of their key structure. A map takes a private
+ * copy of its keys when it is changed otherwise than by adding a key or
+ * replacing a value, or when its shape has too many keys or transitions.
+ */
+public final class LinkedArrayMap<K, V> extends AbstractMap<K, V> implements Serializable {
+  /** Largest map searched without an index. */
+  private static final int MAX_LINEAR_SIZE = 8;
+
+  private static final int INITIAL_CAPACITY = 4;
+
+  private static final Object[] EMPTY_ARRAY = {};
+
+  /**
+   * The keys in insertion order: those of the shape, exactly sized, while the
+   * map has one, and a private array as long as {@link #values} otherwise.
+   */
+  Object[] keys = EMPTY_ARRAY;
+  Object[] values = EMPTY_ARRAY;
+  int size = 0;
+  int modCount = 0;
+
+  /**
+   * Slots of the entries by hash, holding the entry position plus one, or 0
+   * if free; <tt>null</tt> while the map is small. Shared with the shape, if
+   * any.
+   */
+  int[] index = null;
+
+  /** The shape whose keys this map shares, or <tt>null</tt>. */
+  Shape shape = null;
+
+  public LinkedArrayMap() {
+  }
+
+  /**
+   * Creates a map with room for the given number of entries.
+   */
+  public LinkedArrayMap(int expectedSize) {
+    if (expectedSize > 0) {
+      keys = new Object[expectedSize];
+      values = new Object[expectedSize];
+    }
+  }
+
+  /**
+   * Creates a map with room for the given number of entries, sharing its keys
+   * with the other maps created with the given shape.
+   *
+   * @param shape
+   *          a shape created with {@link Shape#Shape()}.
+   */
+  public LinkedArrayMap(Shape shape, int expectedSize) {
+    if (shape == null) {
+      throw new NullPointerException("shape == null");
+    }
+
+    this.shape = shape;
+    if (expectedSize > 0) {
+      values = new Object[expectedSize];
+    }
+  }
+
+  /**
+   * Reduces the capacity of this map to its size.
+   */
+  public void trimToSize() {
+    if (values.length > size) {
+      values = Arrays.copyOf(values, size);
+      if (shape == null) {
+        keys = Arrays.copyOf(keys, size);
+      }
+    }
+  }
+
+  @Override public int size() {
+    return size;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override public V get(Object key) {
+    int i = indexOf(key);
+    return i >= 0 ? (V) values[i] : null;
+  }
+
+  @Override public boolean containsKey(Object key) {
+    return indexOf(key) >= 0;
+  }
+
+  @Override public boolean containsValue(Object value) {
+    Object[] values = this.values;
+    for (int i = 0; i < size; i++) {
+      if (equal(values[i], value)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override public V put(K key, V value) {
+    if (key == null) {
+      throw new NullPointerException("key == null");
+    }
+
+    int i = indexOf(key);
+    if (i >= 0) {
+      V result = (V) values[i];
+      values[i] = value;
+      return result;
+    }
+
+    i = size;
+    if (i == values.length) {
+      int capacity = Math.max(INITIAL_CAPACITY, i << 1);
+      values = Arrays.copyOf(values, capacity);
+      if (shape == null) {
+        keys = Arrays.copyOf(keys, capacity);
+      }
+    }
+
+    if (shape != null) {
+      Shape next = shape.transition(key);
+      if (next != null) {
+        values[i] = value;
+        keys = next.keys;
+        index = next.index;
+        shape = next;
+        size = i + 1;
+        modCount++;
+        return null;
+      }
+
+      unshare();
+    }
+
+    keys[i] = key;
+    values[i] = value;
+    size = i + 1;
+    modCount++;
+
+    if (index != null && size << 1 <= index.length) {
+      insert(index, key, i);
+    } else if (size > MAX_LINEAR_SIZE) {
+      index = buildIndex(keys, size);
+    }
+
+    return null;
+  }
+
+  @Override public void clear() {
+    if (shape != null) {
+      shape = null;
+      keys = new Object[values.length];
+    } else {
+      Arrays.fill(keys, 0, size, null);
+    }
+
+    Arrays.fill(values, 0, size, null);
+    size = 0;
+    index = null;
+    modCount++;
+  }
+
+  @Override public V remove(Object key) {
+    int i = indexOf(key);
+    return i >= 0 ? removeAt(i) : null;
+  }
+
+  /**
+   * Returns the position of the entry with the given key, or -1.
+   */
+  int indexOf(Object key) {
+    if (key == null) {
+      return -1;
+    }
+
+    Object[] keys = this.keys;
+    int[] index = this.index;
+
+    // Hash codes, cached by strings, rule out most keys before equals()
+    int h = key.hashCode();
+
+    if (index == null) {
+      for (int i = 0, n = size; i < n; i++) {
+        Object k = keys[i];
+        if (k == key || (k.hashCode() == h && key.equals(k))) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    int mask = index.length - 1;
+    for (int slot = (h ^ (h >>> 16)) & mask;; slot = (slot + 1) & mask) {
+      int position = index[slot];
+      if (position == 0) {
+        return -1;
+      }
+
+      Object k = keys[position - 1];
+      if (k == key || (k.hashCode() == h && key.equals(k))) {
+        return position - 1;
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  V removeAt(int i) {
+    if (shape != null) {
+      unshare();
+    }
+
+    Object[] keys = this.keys;
+    Object[] values = this.values;
+    V result = (V) values[i];
+
+    int n = size - 1;
+    System.arraycopy(keys, i + 1, keys, i, n - i);
+    System.arraycopy(values, i + 1, values, i, n - i);
+    keys[n] = null;
+    values[n] = null;
+    size = n;
+    modCount++;
+
+    index = n > MAX_LINEAR_SIZE ? buildIndex(keys, n) : null;
+
+    return result;
+  }
+
+  /**
+   * Replaces the keys and index shared with the shape by private copies.
+   */
+  private void unshare() {
+    keys = Arrays.copyOf(keys, values.length);
+    if (index != null) {
+      index = index.clone();
+    }
+    shape = null;
+  }
+
+  private static int[] buildIndex(Object[] keys, int size) {
+    int capacity = MAX_LINEAR_SIZE << 1;
+    while (capacity < size << 1) {
+      capacity <<= 1;
+    }
+
+    int[] index = new int[capacity];
+    for (int i = 0; i < size; i++) {
+      insert(index, keys[i], i);
+    }
+    return index;
+  }
+
+  private static void insert(int[] index, Object key, int i) {
+    int mask = index.length - 1;
+    int slot = hash(key) & mask;
+    while (index[slot] != 0) {
+      slot = (slot + 1) & mask;
+    }
+    index[slot] = i + 1;
+  }
+
+  private static int hash(Object key) {
+    int h = key.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  private static boolean equal(Object a, Object b) {
+    return a == b || (a != null && a.equals(b));
+  }
+
+  // The views are not cached, so as not to add three fields to every map
+
+  @Override public Set<Entry<K, V>> entrySet() {
+    return new EntrySet();
+  }
+
+  @Override public Set<K> keySet() {
+    return new KeySet();
+  }
+
+  @Override public Collection<V> values() {
+    return new Values();
+  }
+
+  /**
+   * The keys shared by the maps created with a root shape and given the same
+   * keys in the same order. Each shape has the shapes of one more key as
+   * children, found by the key added, so that a map adding a key moves from
+   * a shape to one of its children.
+   * <p>
+   * Shapes are immutable but for their list of children, which is only ever
+   * replaced by a longer one; maps of the same shapes can be changed by
+   * several threads, a race at most creating duplicate shapes.
+   */
+  public static final class Shape {
+    /** Largest number of keys of a shape. */
+    private static final int MAX_SIZE = 64;
+
+    /** Largest number of children of a shape. */
+    private static final int MAX_CHILDREN = 8;
+
+    final Object[] keys;
+    final int[] index;
+
+    /** The next older child of the parent of this shape, and their count. */
+    private final Shape sibling;
+    private final int siblings;
+
+    /** The most recent child of this shape. */
+    private Shape children = null;
+
+    /**
+     * Creates the shape of empty maps, the root of a new family of shapes.
+     */
+    public Shape() {
+      this.keys = EMPTY_ARRAY;
+      this.index = null;
+      this.sibling = null;
+      this.siblings = 0;
+    }
+
+    private Shape(Shape parent, Object key, Shape sibling) {
+      int n = parent.keys.length;
+      this.keys = Arrays.copyOf(parent.keys, n + 1);
+      this.keys[n] = key;
+      this.index = n + 1 > MAX_LINEAR_SIZE ? buildIndex(keys, n + 1) : null;
+      this.sibling = sibling;
+      this.siblings = (sibling == null) ? 0 : sibling.siblings + 1;
+    }
+
+    /**
+     * Returns the child of this shape adding the given key, which is not one
+     * of its keys, or <tt>null</tt> if there are too many.
+     */
+    Shape transition(Object key) {
+      Shape children = this.children;
+
+      int h = key.hashCode();
+      for (Shape child = children; child != null; child = child.sibling) {
+        Object k = child.keys[keys.length];
+        if (k == key || (k.hashCode() == h && key.equals(k))) {
+          return child;
+        }
+      }
+
+      if (keys.length == MAX_SIZE || (children != null && children.siblings + 1 == MAX_CHILDREN)) {
+        return null;
+      }
+
+      Shape child = new Shape(this, key, children);
+      this.children = child;
+      return child;
+    }
+  }
+
+  /**
+   * An entry returned by the iterator; setting its value writes it to the map
+   * while the key is in it.
+   */
+  final class ArrayEntry implements Entry<K, V> {
+    final K key;
+    V value;
+    int position;
+
+    ArrayEntry(K key, V value, int position) {
+      this.key = key;
+      this.value = value;
+      this.position = position;
+    }
+
+    public K getKey() {
+      return key;
+    }
+
+    public V getValue() {
+      return value;
+    }
+
+    public V setValue(V value) {
+      V oldValue = this.value;
+      this.value = value;
+
+      if (position < 0 || position >= size || keys[position] != key) {
+        position = indexOf(key);
+      }
+      if (position >= 0) {
+        values[position] = value;
+      }
+      return oldValue;
+    }
+
+    @SuppressWarnings("rawtypes")
+    @Override public boolean equals(Object o) {
+      if (o instanceof Entry) {
+        Entry other = (Entry) o;
+        return key.equals(other.getKey()) && equal(value, other.getValue());
+      }
+      return false;
+    }
+
+    @Override public int hashCode() {
+      return key.hashCode() ^ (value == null ? 0 : value.hashCode());
+    }
+
+    @Override public String toString() {
+      return key + "=" + value;
+    }
+  }
+
+  private abstract class LinkedArrayMapIterator<T> implements Iterator<T> {
+    int next = 0;
+    int lastReturned = -1;
+    int expectedModCount = modCount;
+
+    public final boolean hasNext() {
+      return next < size;
+    }
+
+    final int nextPosition() {
+      if (next >= size) {
+        throw new NoSuchElementException();
+      }
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      return lastReturned = next++;
+    }
+
+    public final void remove() {
+      if (lastReturned < 0) {
+        throw new IllegalStateException();
+      }
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      removeAt(lastReturned);
+      next = lastReturned;
+      lastReturned = -1;
+      expectedModCount = modCount;
+    }
+  }
+
+  class EntrySet extends AbstractSet<Entry<K, V>> {
+    @Override public int size() {
+      return size;
+    }
+
+    @Override public Iterator<Entry<K, V>> iterator() {
+      return new LinkedArrayMapIterator<Entry<K, V>>() {
+        @SuppressWarnings("unchecked")
+        public Entry<K, V> next() {
+          int i = nextPosition();
+          return new ArrayEntry((K) keys[i], (V) values[i], i);
+        }
+      };
+    }
+
+    @Override public boolean contains(Object o) {
+      return o instanceof Entry && indexOfEntry((Entry<?, ?>) o) >= 0;
+    }
+
+    @Override public boolean remove(Object o) {
+      if (!(o instanceof Entry)) {
+        return false;
+      }
+
+      int i = indexOfEntry((Entry<?, ?>) o);
+      if (i < 0) {
+        return false;
+      }
+      removeAt(i);
+      return true;
+    }
+
+    private int indexOfEntry(Entry<?, ?> entry) {
+      int i = indexOf(entry.getKey());
+      return i >= 0 && equal(values[i], entry.getValue()) ? i : -1;
+    }
+
+    @Override public void clear() {
+      LinkedArrayMap.this.clear();
+    }
+  }
+
+  final class KeySet extends AbstractSet<K> {
+    @Override public int size() {
+      return size;
+    }
+
+    @Override public Iterator<K> iterator() {
+      return new LinkedArrayMapIterator<K>() {
+        @SuppressWarnings("unchecked")
+        public K next() {
+          return (K) keys[nextPosition()];
+        }
+      };
+    }
+
+    @Override public boolean contains(Object o) {
+      return containsKey(o);
+    }
+
+    @Override public boolean remove(Object key) {
+      int i = indexOf(key);
+      if (i < 0) {
+        return false;
+      }
+      removeAt(i);
+      return true;
+    }
+
+    @Override public void clear() {
+      LinkedArrayMap.this.clear();
+    }
+  }
+
+  final class Values extends AbstractCollection<V> {
+    @Override public int size() {
+      return size;
+    }
+
+    @Override public Iterator<V> iterator() {
+      return new LinkedArrayMapIterator<V>() {
+        @SuppressWarnings("unchecked")
+        public V next() {
+          return (V) values[nextPosition()];
+        }
+      };
+    }
+
+    @Override public boolean contains(Object o) {
+      return containsValue(o);
+    }
+
+    @Override public void clear() {
+      LinkedArrayMap.this.clear();
+    }
+  }
+
+  /**
+   * Serialize as a LinkedHashMap, as {@link LinkedTreeMap} does.
+   */
+  private Object writeReplace() throws ObjectStreamException {
+    return new LinkedHashMap<K, V>(this);
+  }
+
+  private static final long serialVersionUID = 0;
+}
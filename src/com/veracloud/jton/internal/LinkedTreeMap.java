@@ -127,6 +127,11 @@ public final class LinkedTreeMap<K, V> extends AbstractMap<K, V> implements Seri
           : null;
 
       while (true) {
+        // Keys read by a parser are canonical instances; try identity first.
+        if (key == nearest.key) {
+          return nearest;
+        }
+
         comparison = (comparableKey != null)
             ? comparableKey.compareTo(nearest.key)
             : comparator.compare(key, nearest.key);
@@ -0,0 +1,128 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.veracloud.jton.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Measures {@link LinkedArrayMap}, with or without a shared
+ * {@link LinkedArrayMap.Shape}, or {@link LinkedTreeMap} as the member map
+ * of objects of a few sizes: building the maps, looking up each key, iterating
+ * the entries, and the heap taken per map. Run once for each map, in separate
+ * JVMs, so that the map calls are not made polymorphic by the other map.
+ * <p>
+ * Usage: {@code MemberMapBenchmark [array|shaped|tree] [number of members] [iterations]}.
+ */
+public class MemberMapBenchmark {
+  private static final int[] SIZES = { 4, 8, 16, 64 };
+
+  private static volatile int sink;
+
+  public static void main(String[] args) {
+    String name = args.length > 0 ? args[0] : "array";
+    int count = args.length > 1 ? Integer.parseInt(args[1]) : 400000;
+    int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+    Supplier<Map<String, Object>> factory;
+    if (name.equals("tree")) {
+      factory = LinkedTreeMap::new;
+    } else if (name.equals("shaped")) {
+      LinkedArrayMap.Shape shape = new LinkedArrayMap.Shape();
+      factory = () -> new LinkedArrayMap<String, Object>(shape, 0);
+    } else {
+      factory = LinkedArrayMap::new;
+    }
+
+    for (int size : SIZES) {
+      // Keys are copies, as those of parsed documents, not the same instances
+      String[] keys = new String[size];
+      String[] lookups = new String[size];
+      for (int i = 0; i < size; i++) {
+        keys[i] = "member" + i;
+        lookups[i] = new String(keys[i]);
+      }
+
+      int maps = Math.max(count / size, 1);
+      System.out.println(maps + " maps of " + size + " members");
+
+      for (int i = 0; i < iterations; i++) {
+        report(name, maps, size, keys, lookups, factory);
+      }
+
+      System.out.printf("%-6s footprint %6.1f bytes/map%n", name, footprint(maps, keys, factory));
+    }
+  }
+
+  private static void report(String name, int maps, int size, String[] keys, String[] lookups,
+      Supplier<Map<String, Object>> factory) {
+    long t = System.nanoTime();
+    List<Map<String, Object>> list = build(maps, keys, factory);
+    long build = System.nanoTime() - t;
+
+    t = System.nanoTime();
+    int sum = 0;
+    for (Map<String, Object> map : list) {
+      for (String key : lookups) {
+        sum += map.get(key) != null ? 1 : 0;
+      }
+    }
+    long get = System.nanoTime() - t;
+
+    t = System.nanoTime();
+    for (Map<String, Object> map : list) {
+      for (Map.Entry<String, Object> entry : map.entrySet()) {
+        sum += entry.getKey().length();
+      }
+    }
+    long iterate = System.nanoTime() - t;
+    sink = sum;
+
+    long operations = (long) maps * size;
+    System.out.printf("%-6s put %6.1f ns   get %6.1f ns   iterate %6.1f ns   (per member)%n", name,
+        (double) build / operations, (double) get / operations, (double) iterate / operations);
+  }
+
+  private static List<Map<String, Object>> build(int maps, String[] keys, Supplier<Map<String, Object>> factory) {
+    List<Map<String, Object>> list = new ArrayList<Map<String, Object>>(maps);
+    for (int i = 0; i < maps; i++) {
+      Map<String, Object> map = factory.get();
+      for (String key : keys) {
+        map.put(key, Boolean.TRUE);
+      }
+      list.add(map);
+    }
+    return list;
+  }
+
+  private static double footprint(int maps, String[] keys, Supplier<Map<String, Object>> factory) {
+    long before = usedMemory();
+    List<Map<String, Object>> list = build(maps, keys, factory);
+    long after = usedMemory();
+    sink = list.size();
+
+    // Less the list holding the maps
+    return (double) (after - before) / maps - 4;
+  }
+
+  private static long usedMemory() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 4; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
@@ -0,0 +1,183 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.veracloud.jton.serialization;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Scans runs of string contents and whitespace eight bytes at a time.
+ * <p>
+ * Each word is read from a little-endian view of the byte array and tested
+ * with carry-based bit tricks ("SIMD within a register"): a test sets the high
+ * bit of the bytes that match, so the first match is given by the number of
+ * trailing zeros of the result. Borrows only propagate above a matching byte,
+ * which can flag bytes after the first match but never before it. The last
+ * bytes of a range, shorter than a word, are scanned one at a time by the
+ * scalar variants.
+ */
+final class ByteScanner {
+  private static final long ONES = 0x0101010101010101L;
+  private static final long HIGH_BITS = 0x8080808080808080L;
+
+  private static final long QUOTES = '"' * ONES;
+  private static final long BACKSLASHES = '\\' * ONES;
+  private static final long DELS = 0x7F * ONES;
+  private static final long SPACES = ' ' * ONES;
+
+  private ByteScanner() {
+  }
+
+  /**
+   * Returns a view of the given bytes suitable for the scanning methods.
+   */
+  static ByteBuffer words(byte[] bytes) {
+    return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  /**
+   * Sets the high bit of the lowest byte of {@code v} that is zero. Bytes
+   * above it may be flagged too.
+   */
+  private static long zeros(long v) {
+    return (v - ONES) & ~v & HIGH_BITS;
+  }
+
+  /**
+   * Returns the index of the first byte in {@code [from, to)} that ends the
+   * ASCII fast path of a lenient string: the delimiter, a backslash, a control
+   * character, DEL or a non-ASCII byte. Returns {@code to} if there is none.
+   */
+  static int scanString(ByteBuffer words, int from, int to, byte delimiter) {
+    long delimiters = (delimiter & 0xFFL) * ONES;
+
+    int i = from;
+    for (int n = to - 8; i <= n; i += 8) {
+      long w = words.getLong(i);
+
+      // Bytes below 0x20 borrow into their high bit; the others have it set
+      // if they are non-ASCII
+      long stops = zeros(w ^ delimiters) | zeros(w ^ BACKSLASHES) | zeros(w ^ DELS)
+          | ((w - SPACES) | w) & HIGH_BITS;
+      if (stops != 0) {
+        return i + (Long.numberOfTrailingZeros(stops) >>> 3);
+      }
+    }
+
+    return scanStringScalar(words.array(), i, to, delimiter);
+  }
+
+  static int scanStringScalar(byte[] bytes, int from, int to, byte delimiter) {
+    int i = from;
+    while (i < to) {
+      byte b = bytes[i];
+      if (b == delimiter || b == '\\' || b < 0x20 || b == 0x7F) {
+        break;
+      }
+
+      i++;
+    }
+
+    return i;
+  }
+
+  /**
+   * Returns the index of the first byte in {@code [from, to)} that ends the
+   * contents of a standard JSON string: a quote, a backslash or a control
+   * character. Non-ASCII bytes are part of the contents. Returns {@code to}
+   * if there is none.
+   */
+  static int scanStrictString(ByteBuffer words, int from, int to) {
+    int i = from;
+    for (int n = to - 8; i <= n; i += 8) {
+      long w = words.getLong(i);
+
+      long stops = zeros(w ^ QUOTES) | zeros(w ^ BACKSLASHES) | (w - SPACES) & ~w & HIGH_BITS;
+      if (stops != 0) {
+        return i + (Long.numberOfTrailingZeros(stops) >>> 3);
+      }
+    }
+
+    return scanStrictStringScalar(words.array(), i, to);
+  }
+
+  static int scanStrictStringScalar(byte[] bytes, int from, int to) {
+    int i = from;
+    while (i < to) {
+      byte b = bytes[i];
+      if (b == '"' || b == '\\' || (b >= 0 && b < 0x20)) {
+        break;
+      }
+
+      i++;
+    }
+
+    return i;
+  }
+
+  /**
+   * Returns the index of the first byte in {@code [from, to)} that is not
+   * whitespace of standard JSON, or {@code to} if there is none. Runs of
+   * spaces, as in indentation, are skipped a word at a time; other whitespace
+   * is tested one byte at a time.
+   */
+  static int skipWhitespace(ByteBuffer words, int from, int to) {
+    byte[] bytes = words.array();
+
+    int i = from;
+    for (int n = to - 8; i <= n;) {
+      long spaces = words.getLong(i) ^ SPACES;
+      if (spaces == 0) {
+        i += 8;
+      } else {
+        i += Long.numberOfTrailingZeros(spaces) >>> 3;
+        if (!JsonTokenizer.isJsonWhitespace(bytes[i])) {
+          return i;
+        }
+
+        i++;
+      }
+    }
+
+    return skipWhitespaceScalar(bytes, i, to);
+  }
+
+  static int skipWhitespaceScalar(byte[] bytes, int from, int to) {
+    int i = from;
+    while (i < to && JsonTokenizer.isJsonWhitespace(bytes[i])) {
+      i++;
+    }
+
+    return i;
+  }
+
+  /**
+   * Returns whether the bytes in {@code [from, to)} are all ASCII.
+   */
+  static boolean isASCII(ByteBuffer words, int from, int to) {
+    long bits = 0;
+
+    int i = from;
+    for (int n = to - 8; i <= n; i += 8) {
+      bits |= words.getLong(i);
+    }
+
+    byte[] bytes = words.array();
+    for (; i < to; i++) {
+      bits |= bytes[i];
+    }
+
+    return (bits & HIGH_BITS) == 0;
+  }
+}
@@ -35,7 +35,9 @@ import java.util.List;
 import com.veracloud.jton.JtonArray;
 import com.veracloud.jton.JtonElement;
 import com.veracloud.jton.JtonObject;
+import com.veracloud.jton.JtonPrimitive;
 import com.veracloud.jton.internal.LazilyParsedNumber;
+import com.veracloud.jton.internal.LinkedArrayMap;
 
 public class CSVSerializer implements Serializer<JtonArray> {
 	private Charset charset;
@@ -46,6 +48,8 @@ public class CSVSerializer implements Serializer<JtonArray> {
 
 	private int c = -1;
 
+	private final ValueFormatter formatter = new ValueFormatter();
+
 	public static final String DEFAULT_CHARSET_NAME = "ISO-8859-1";
 
 	public static final String CSV_EXTENSION = "csv";
@@ -179,6 +183,9 @@ public class CSVSerializer implements Serializer<JtonArray> {
 		// Create the list and notify the listeners
 		JtonArray items = new JtonArray();
 
+		// Items with the same keys share them through a common shape
+		LinkedArrayMap.Shape shape = new LinkedArrayMap.Shape();
+
 		// Move to the first character
 		c = lineNumberReader.read();
 
@@ -189,7 +196,7 @@ public class CSVSerializer implements Serializer<JtonArray> {
 
 		try {
 			while (c != -1) {
-				JtonObject item = readItem(lineNumberReader);
+				JtonObject item = readItem(lineNumberReader, shape);
 				while (item != null) {
 					items.add(item);
 
@@ -199,7 +206,7 @@ public class CSVSerializer implements Serializer<JtonArray> {
 					}
 
 					// Read the next item
-					item = readItem(lineNumberReader);
+					item = readItem(lineNumberReader, shape);
 				}
 			}
 		} catch (SerializationException exception) {
@@ -211,12 +218,12 @@ public class CSVSerializer implements Serializer<JtonArray> {
 		return items;
 	}
 
-	private JtonObject readItem(Reader reader) throws IOException, SerializationException {
+	private JtonObject readItem(Reader reader, LinkedArrayMap.Shape shape) throws IOException, SerializationException {
 		JtonObject item = null;
 
 		if (c != -1) {
 			// Instantiate the item
-			item = new JtonObject();
+			item = JtonObject.wrap(new LinkedArrayMap<String, JtonElement>(shape, keys.size()));
 
 			// Add values to the item
 			for (int i = 0, n = keys.size(); i < n; i++) {
@@ -390,6 +397,10 @@ public class CSVSerializer implements Serializer<JtonArray> {
 						writer.append(",");
 					}
 
+					if (value != null && value.isJtonPrimitive() && writeFormatted(value.getAsJtonPrimitive(), writer)) {
+						continue;
+					}
+
 					String string = value.getAsString(null);
 					if (value != null) {
 						if (string == null) {
@@ -418,6 +429,28 @@ public class CSVSerializer implements Serializer<JtonArray> {
 		writer.flush();
 	}
 
+	/**
+	 * Writes a number or a date straight from its formatted characters, which
+	 * never need quoting.
+	 *
+	 * @return <tt>false</tt> if the value was not written.
+	 */
+	private boolean writeFormatted(JtonPrimitive value, Writer writer) throws IOException {
+		int length = -1;
+		if (value.isNumber()) {
+			length = formatter.formatNumber(value.getAsNumber());
+		} else if (value.isDate()) {
+			length = formatter.formatDate(value.getAsDate());
+		}
+
+		if (length < 0) {
+			return false;
+		}
+
+		writer.write(formatter.chars(), 0, length);
+		return true;
+	}
+
 	@Override
 	public String getMIMEType(JtonArray object) {
 		return MIME_TYPE + "; charset=" + charset.name();
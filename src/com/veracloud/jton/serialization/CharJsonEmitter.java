@@ -0,0 +1,119 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.veracloud.jton.serialization;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * JSON emitter that collects characters in a reusable buffer and hands them
+ * to a {@link Writer} a block at a time.
+ */
+final class CharJsonEmitter extends JsonEmitter {
+  private static final int BLOCK_SIZE = 8192;
+
+  private final char[] buffer = new char[BLOCK_SIZE];
+  private int count = 0;
+
+  private Writer writer = null;
+
+  /** Encoded names of the key cache. */
+  private final char[][] names = new char[KEY_CACHE_SIZE][];
+
+  /**
+   * Prepares this emitter to write to the given writer.
+   */
+  void reset(Writer writer) {
+    this.writer = writer;
+    this.count = 0;
+  }
+
+  /**
+   * Releases the writer, discarding any text not flushed.
+   */
+  void release() {
+    this.writer = null;
+    this.count = 0;
+  }
+
+  @Override
+  void write(char c) throws IOException {
+    if (count == buffer.length) {
+      drain();
+    }
+
+    buffer[count++] = c;
+  }
+
+  @Override
+  void write(String string, int start, int end) throws IOException {
+    int length = end - start;
+    if (length > buffer.length - count) {
+      drain();
+
+      if (length > buffer.length) {
+        writer.write(string, start, length);
+        return;
+      }
+    }
+
+    string.getChars(start, end, buffer, count);
+    count += length;
+  }
+
+  @Override
+  void write(char[] chars, int start, int end) throws IOException {
+    int length = end - start;
+    if (length > buffer.length - count) {
+      drain();
+
+      if (length > buffer.length) {
+        writer.write(chars, start, length);
+        return;
+      }
+    }
+
+    System.arraycopy(chars, start, buffer, count, length);
+    count += length;
+  }
+
+  @Override
+  void cacheName(int slot, String text) {
+    names[slot] = text.toCharArray();
+  }
+
+  @Override
+  void writeCachedName(int slot) throws IOException {
+    char[] name = names[slot];
+    if (name.length > buffer.length - count) {
+      drain();
+    }
+
+    System.arraycopy(name, 0, buffer, count, name.length);
+    count += name.length;
+  }
+
+  @Override
+  void flush() throws IOException {
+    drain();
+    writer.flush();
+  }
+
+  private void drain() throws IOException {
+    if (count > 0) {
+      writer.write(buffer, 0, count);
+      count = 0;
+    }
+  }
+}
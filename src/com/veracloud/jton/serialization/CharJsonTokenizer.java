@@ -0,0 +1,509 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.veracloud.jton.serialization;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+import com.veracloud.jton.internal.LazilyParsedNumber;
+
+/**
+ * JSON tokenizer that reads a {@link Reader} in blocks into a reusable
+ * {@code char[]} buffer and scans it with index arithmetic.
+ */
+final class CharJsonTokenizer extends JsonTokenizer {
+  private Reader reader = null;
+  private boolean eof = true;
+
+  private char[] buffer;
+  private int pos = 0;
+  private int limit = 0;
+
+  /** Line terminators and column offset of the text discarded so far. */
+  private int discardedLines = 0;
+  private int discardedColumn = 0;
+  private boolean discardedCR = false;
+
+  private final StringBuilder stringBuilder = new StringBuilder();
+  private final byte[] numberBuffer = new byte[32];
+
+  CharJsonTokenizer() {
+    this.buffer = new char[BLOCK_SIZE];
+  }
+
+  /**
+   * Prepares this tokenizer to read from the given reader; a leading byte
+   * order mark is skipped.
+   */
+  void reset(Reader reader) throws IOException {
+    this.reader = reader;
+    this.eof = false;
+    this.pos = 0;
+    this.limit = 0;
+    this.discardedLines = 0;
+    this.discardedColumn = 0;
+    this.discardedCR = false;
+
+    if (fill(0) && buffer[0] == 0xFEFF) {
+      pos++;
+    }
+  }
+
+  /**
+   * Releases the reader; the buffer is kept for reuse.
+   */
+  void release() {
+    this.reader = null;
+    this.eof = true;
+  }
+
+  /**
+   * Discards the buffered text before {@code mark} and reads the next block.
+   * {@link #pos} is adjusted to the compacted buffer.
+   *
+   * @return {@code false} at the end of the input.
+   */
+  private boolean fill(int mark) throws IOException {
+    if (eof) {
+      return false;
+    }
+
+    if (mark > 0) {
+      account(mark);
+      System.arraycopy(buffer, mark, buffer, 0, limit - mark);
+      pos -= mark;
+      limit -= mark;
+    }
+
+    if (limit == buffer.length) {
+      buffer = Arrays.copyOf(buffer, buffer.length << 1);
+    }
+
+    int n = reader.read(buffer, limit, buffer.length - limit);
+    if (n == -1) {
+      eof = true;
+      return false;
+    }
+
+    limit += n;
+    return true;
+  }
+
+  private void account(int mark) {
+    for (int i = 0; i < mark; i++) {
+      char c = buffer[i];
+      if (c == '\n') {
+        if (!discardedCR) {
+          discardedLines++;
+        }
+        discardedColumn = 0;
+      } else if (c == '\r') {
+        discardedLines++;
+        discardedColumn = 0;
+      } else {
+        discardedColumn++;
+      }
+      discardedCR = (c == '\r');
+    }
+  }
+
+  private int peek() throws IOException {
+    return (pos < limit || fill(pos)) ? buffer[pos] : -1;
+  }
+
+  private int read() throws IOException {
+    return (pos < limit || fill(pos)) ? buffer[pos++] : -1;
+  }
+
+  @Override
+  int getLineNumber() {
+    int lines = discardedLines;
+    boolean cr = discardedCR;
+    for (int i = 0; i < pos; i++) {
+      char c = buffer[i];
+      if (c == '\r' || (c == '\n' && !cr)) {
+        lines++;
+      }
+      cr = (c == '\r');
+    }
+    return lines + 1;
+  }
+
+  @Override
+  int getColumnNumber() {
+    int column = discardedColumn;
+    for (int i = 0; i < pos; i++) {
+      char c = buffer[i];
+      column = (c == '\n' || c == '\r') ? 0 : column + 1;
+    }
+    return column + 1;
+  }
+
+  @Override
+  void consume() {
+    pos++;
+  }
+
+  @Override
+  int skipWhitespaceAndComments() throws IOException, SerializationException {
+    for (;;) {
+      if (pos == limit && !fill(pos)) {
+        return -1;
+      }
+
+      char c = buffer[pos];
+      if (c == '/') {
+        pos++;
+        skipComment();
+      } else if (isWhitespace(c)) {
+        pos++;
+      } else {
+        return c;
+      }
+    }
+  }
+
+  private void skipComment() throws IOException, SerializationException {
+    int c = read();
+
+    if (c == '/') {
+      // Single-line comment
+      while ((c = peek()) != -1 && c != '\n' && c != '\r') {
+        pos++;
+      }
+    } else if (c == '*') {
+      // Multi-line comment
+      boolean closed = false;
+
+      while (c != -1 && !closed) {
+        c = read();
+
+        if (c == '*') {
+          c = read();
+          closed = (c == '/');
+        }
+      }
+
+      if (!closed) {
+        throw new SerializationException("Unexpected end of input stream.");
+      }
+    } else {
+      throw new SerializationException("Unexpected character in input stream.");
+    }
+  }
+
+  @Override
+  int skipWhitespace() throws IOException {
+    for (;;) {
+      if (pos == limit && !fill(pos)) {
+        return -1;
+      }
+
+      char c = buffer[pos];
+      if (!isJsonWhitespace(c)) {
+        return c;
+      }
+
+      pos++;
+    }
+  }
+
+  @Override
+  String readStrictString(SymbolTable symbols) throws IOException, SerializationException {
+    int start = ++pos;
+
+    for (;;) {
+      if (pos == limit) {
+        int offset = pos - start;
+        boolean more = fill(start);
+        start = pos - offset;
+        if (!more) {
+          throw new SerializationException("Unterminated string in input stream.");
+        }
+      }
+
+      char c = buffer[pos];
+      if (c == '"') {
+        int length = pos - start;
+        pos++;
+        return (symbols != null) ? symbols.intern(buffer, start, length) : new String(buffer, start, length);
+      }
+
+      if (c == '\\' || c < 0x20) {
+        break;
+      }
+
+      pos++;
+    }
+
+    // Slow path: escape sequences
+    StringBuilder stringBuilder = this.stringBuilder;
+    stringBuilder.setLength(0);
+    stringBuilder.append(buffer, start, pos - start);
+
+    int c = read();
+    while (c != '"') {
+      if (c == -1) {
+        throw new SerializationException("Unterminated string in input stream.");
+      }
+
+      if (c < 0x20) {
+        throw new SerializationException("Unescaped control character in input stream.");
+      }
+
+      if (c == '\\') {
+        c = readStrictEscape();
+      }
+
+      stringBuilder.append((char) c);
+      c = read();
+    }
+
+    String string = stringBuilder.toString();
+    return (symbols != null) ? symbols.intern(string) : string;
+  }
+
+  private int readStrictEscape() throws IOException, SerializationException {
+    int c = read();
+
+    if (c == 'u') {
+      c = 0;
+      for (int i = 0; i < 4; i++) {
+        int digit = hexDigit(read());
+        if (digit == -1) {
+          throw new SerializationException("Invalid unicode escape sequence in input stream.");
+        }
+
+        c = (c << 4) | digit;
+      }
+
+      return c;
+    }
+
+    c = unescape(c);
+    if (c == -1) {
+      throw new SerializationException("Unsupported escape sequence in input stream.");
+    }
+
+    return c;
+  }
+
+  @Override
+  String readString() throws IOException, SerializationException {
+    return readString(null);
+  }
+
+  @Override
+  String readKey(int c) throws IOException, SerializationException {
+    return (c == '"' || c == '\'') ? readString(symbolTable) : readIdentifier(symbolTable);
+  }
+
+  private String readString(SymbolTable symbols) throws IOException, SerializationException {
+    // Use the same delimiter to close the string
+    char t = buffer[pos++];
+    int start = pos;
+
+    for (;;) {
+      if (pos == limit) {
+        int offset = pos - start;
+        boolean more = fill(start);
+        start = pos - offset;
+        if (!more) {
+          throw new SerializationException("Unterminated string in input stream.");
+        }
+      }
+
+      char c = buffer[pos];
+      if (c == t) {
+        int length = pos - start;
+        pos++;
+        return (symbols != null) ? symbols.intern(buffer, start, length) : new String(buffer, start, length);
+      }
+
+      if (c == '\\' || isISOControl(c)) {
+        break;
+      }
+
+      pos++;
+    }
+
+    // Slow path: escape sequences and control characters
+    StringBuilder stringBuilder = this.stringBuilder;
+    stringBuilder.setLength(0);
+    stringBuilder.append(buffer, start, pos - start);
+
+    int c = read();
+    while (c != -1 && c != t) {
+      if (!isISOControl(c)) {
+        if (c == '\\') {
+          c = readEscape(t);
+        }
+
+        stringBuilder.append((char) c);
+      }
+
+      c = read();
+    }
+
+    if (c != t) {
+      throw new SerializationException("Unterminated string in input stream.");
+    }
+
+    String string = stringBuilder.toString();
+    return (symbols != null) ? symbols.intern(string) : string;
+  }
+
+  private int readEscape(int t) throws IOException, SerializationException {
+    int c = read();
+
+    if (c == 'b') {
+      c = '\b';
+    } else if (c == 'f') {
+      c = '\f';
+    } else if (c == 'n') {
+      c = '\n';
+    } else if (c == 'r') {
+      c = '\r';
+    } else if (c == 't') {
+      c = '\t';
+    } else if (c == 'u') {
+      char[] unicode = new char[4];
+      for (int i = 0; i < 4; i++) {
+        unicode[i] = (char) read();
+      }
+
+      c = (char) Integer.parseInt(new String(unicode), 16);
+    } else if (!(c == '\\' || c == '/' || c == '\"' || c == '\'' || c == t)) {
+      throw new SerializationException("Unsupported escape sequence in input stream.");
+    }
+
+    return c;
+  }
+
+  @Override
+  String readIdentifier() throws IOException, SerializationException {
+    return readIdentifier(null);
+  }
+
+  private String readIdentifier(SymbolTable symbols) throws IOException, SerializationException {
+    if (!isIdentifierStart(buffer[pos])) {
+      throw new SerializationException("Illegal identifier start character.");
+    }
+
+    int start = pos;
+
+    for (;;) {
+      if (pos == limit) {
+        int offset = pos - start;
+        boolean more = fill(start);
+        start = pos - offset;
+        if (!more) {
+          throw new SerializationException("Unexpected end of input stream.");
+        }
+      }
+
+      char c = buffer[pos];
+      if (c == ':' || isWhitespace(c)) {
+        return (symbols != null) ? symbols.intern(buffer, start, pos - start) : new String(buffer, start, pos - start);
+      }
+
+      if (!isIdentifierPart(c)) {
+        throw new SerializationException("Illegal identifier character.");
+      }
+
+      pos++;
+    }
+  }
+
+  @Override
+  Number readNumber() throws IOException, SerializationException {
+    int start = pos;
+
+    for (;;) {
+      if (pos == limit) {
+        int offset = pos - start;
+        boolean more = fill(start);
+        start = pos - offset;
+        if (!more) {
+          break;
+        }
+      }
+
+      if (!isNumberPart(buffer[pos])) {
+        break;
+      }
+
+      pos++;
+    }
+
+    if (numberPolicy == NumberPolicy.LAZY) {
+      return new LazilyParsedNumber(new String(buffer, start, pos - start));
+    }
+
+    return NumberDecoder.decode(buffer, start, pos, numberBuffer, numberPolicy);
+  }
+
+  @Override
+  Number readStrictNumber() throws IOException, SerializationException {
+    int start = pos;
+    int state = 0;
+
+    for (;;) {
+      if (pos == limit) {
+        int offset = pos - start;
+        boolean more = fill(start);
+        start = pos - offset;
+        if (!more) {
+          break;
+        }
+      }
+
+      int next = nextNumberState(state, buffer[pos]);
+      if (next == -1) {
+        break;
+      }
+
+      state = next;
+      pos++;
+    }
+
+    if (!isNumberComplete(state)) {
+      throw new SerializationException("Invalid number in input stream.");
+    }
+
+    if (numberPolicy == NumberPolicy.LAZY) {
+      return new LazilyParsedNumber(new String(buffer, start, pos - start));
+    }
+
+    return NumberDecoder.decode(buffer, start, pos, numberBuffer, numberPolicy);
+  }
+
+  @Override
+  void readLiteral(String text, String incompleteMessage) throws IOException, SerializationException {
+    for (int i = 0, n = text.length(); i < n; i++) {
+      int c = peek();
+
+      if (c == -1) {
+        throw new SerializationException(incompleteMessage);
+      }
+
+      if (text.charAt(i) != c) {
+        throw new SerializationException("Unexpected character in input stream.");
+      }
+
+      pos++;
+    }
+  }
+}
@@ -0,0 +1,463 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.veracloud.jton.serialization;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Map;
+
+import com.veracloud.jton.JtonArray;
+import com.veracloud.jton.JtonElement;
+import com.veracloud.jton.JtonObject;
+import com.veracloud.jton.JtonPrimitive;
+
+/**
+ * Writes the JSON text of {@link JtonElement}s for {@link JsonSerializer}.
+ * <p>
+ * Subclasses buffer the output; the text is written in runs copied from the
+ * source strings, with escape sequences looked up in a table and indentation
+ * cut from a cached string of spaces.
+ */
+abstract class JsonEmitter {
+  /** Escape sequences of the ASCII characters escaped in strings, or null. */
+  private static final String[] ESCAPES = new String[128];
+
+  /**
+   * Escape sequences of the ASCII characters escaped in strict output: those
+   * of {@link #ESCAPES} and all control characters.
+   */
+  private static final String[] STRICT_ESCAPES = new String[128];
+
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  /** Number of slots of the key cache; a power of two. */
+  static final int KEY_CACHE_SIZE = 512;
+
+  /** Length of the longest keys kept in the key cache. */
+  private static final int MAX_CACHED_KEY_LENGTH = 64;
+
+  static {
+    ESCAPES['\t'] = "\\t";
+    ESCAPES['\n'] = "\\n";
+    ESCAPES['\\'] = "\\\\";
+    ESCAPES['"'] = "\\\"";
+
+    for (int c = 0; c < 0x20; c++) {
+      STRICT_ESCAPES[c] = String.format("\\u%04x", c);
+    }
+    STRICT_ESCAPES['\b'] = "\\b";
+    STRICT_ESCAPES['\f'] = "\\f";
+    STRICT_ESCAPES['\r'] = "\\r";
+    STRICT_ESCAPES['\t'] = "\\t";
+    STRICT_ESCAPES['\n'] = "\\n";
+    STRICT_ESCAPES['\\'] = "\\\\";
+    STRICT_ESCAPES['"'] = "\\\"";
+  }
+
+  private int indentFactor = 0;
+  private boolean alwaysDelimitMapKeys = false;
+
+  /** Whether characters above U+00FF are written as escape sequences. */
+  private boolean escapeNonLatin1 = false;
+
+  /** Whether strings and quoted keys are written as RFC 8259 requires. */
+  private boolean strictOutput = false;
+
+  private String[] escapes = ESCAPES;
+
+  /** Spaces from which indentation is cut, grown as needed. */
+  private String spaces = "";
+
+  /** Keys whose encoded names are held by the slots of the key cache. */
+  private final String[] cachedKeys = new String[KEY_CACHE_SIZE];
+
+  private final ValueFormatter formatter = new ValueFormatter();
+
+  /**
+   * Sets the options of the text written, as those of
+   * {@link JsonSerializer}.
+   *
+   * @param strictOutput
+   *          Whether all control characters in strings and backslashes and
+   *          control characters in quoted keys are escaped, as RFC 8259
+   *          requires; otherwise only tabs, line feeds, backslashes and quotes
+   *          are escaped in strings, and quotes in keys.
+   */
+  void setOptions(int indentFactor, boolean alwaysDelimitMapKeys, boolean strictOutput, Charset charset) {
+    if (alwaysDelimitMapKeys != this.alwaysDelimitMapKeys || strictOutput != this.strictOutput) {
+      Arrays.fill(cachedKeys, null);
+    }
+
+    this.indentFactor = indentFactor;
+    this.alwaysDelimitMapKeys = alwaysDelimitMapKeys;
+    this.strictOutput = strictOutput;
+    this.escapes = strictOutput ? STRICT_ESCAPES : ESCAPES;
+    this.escapeNonLatin1 = !charset.name().startsWith("UTF");
+  }
+
+  abstract void write(char c) throws IOException;
+
+  abstract void write(String string, int start, int end) throws IOException;
+
+  /**
+   * Writes ASCII characters from the given array.
+   */
+  abstract void write(char[] chars, int start, int end) throws IOException;
+
+  /**
+   * Writes the buffered text to the destination and flushes it.
+   */
+  abstract void flush() throws IOException;
+
+  void write(String string) throws IOException {
+    write(string, 0, string.length());
+  }
+
+  void writeElement(JtonElement object, int level) throws IOException, SerializationException {
+    if (object.isJtonNull()) {
+      write("null");
+    } else if (object.isJtonPrimitive()) {
+      writePrimitive(object.getAsJtonPrimitive());
+    } else if (object.isJtonArray()) {
+      writeArray(object.getAsJtonArray(), level);
+    } else {
+      writeObject(object.getAsJtonObject(), level);
+    }
+  }
+
+  private void writePrimitive(JtonPrimitive primitive) throws IOException, SerializationException {
+    if (primitive.isString()) {
+      writeString(primitive.getAsString());
+    } else if (primitive.isNumber()) {
+      writeNumber(primitive.getAsNumber());
+    } else if (primitive.isBoolean()) {
+      write(primitive.getAsBoolean() ? "true" : "false");
+    } else if (primitive.isDate()) {
+      // Dates are written as they are formatted, without escaping
+      write('"');
+
+      int length = formatter.formatDate(primitive.getAsDate());
+      if (length >= 0) {
+        write(formatter.chars(), 0, length);
+      } else {
+        write(primitive.getAsString());
+      }
+
+      write('"');
+    }
+  }
+
+  private void writeArray(JtonArray list, int level) throws IOException, SerializationException {
+    write('[');
+
+    Class<?> primitiveType = list.getPrimitiveType();
+    if (primitiveType != null) {
+      writePrimitives(list, primitiveType, level);
+    } else {
+      boolean first = true;
+      for (JtonElement item : list) {
+        beginElement(level, first);
+        writeElement(item, level + 1);
+        first = false;
+      }
+    }
+
+    endContainer(']', level, list.size() > 0);
+  }
+
+  /**
+   * Writes the elements of an array stored unboxed, without creating them.
+   */
+  private void writePrimitives(JtonArray list, Class<?> primitiveType, int level)
+      throws IOException, SerializationException {
+    for (int i = 0, n = list.size(); i < n; i++) {
+      beginElement(level, i == 0);
+
+      if (primitiveType == long.class) {
+        writeLong(list.getLong(i));
+      } else if (primitiveType == double.class) {
+        writeDouble(list.getDouble(i));
+      } else {
+        write(list.getBoolean(i) ? "true" : "false");
+      }
+    }
+  }
+
+  private void writeObject(JtonObject map, int level) throws IOException, SerializationException {
+    write('{');
+
+    boolean first = true;
+    for (Map.Entry<String, JtonElement> entry : map.entrySet()) {
+      JtonElement value = entry.getValue();
+      if (value.isTransient()) {
+        continue;
+      }
+
+      beginMember(entry.getKey(), level, first);
+      writeElement(value, level + 1);
+      first = false;
+    }
+
+    // The size includes transient members
+    endContainer('}', level, map.size() > 0);
+  }
+
+  /**
+   * Writes what precedes an element of an array at the given level: the
+   * separator and, if indenting, the line break and the indentation of the
+   * element.
+   */
+  void beginElement(int level, boolean first) throws IOException {
+    if (indentFactor > 0) {
+      if (!first) {
+        write(',');
+      }
+
+      write('\n');
+      writeSpaces((level + 1) * indentFactor);
+    } else if (!first) {
+      write(", ");
+    }
+  }
+
+  /**
+   * Writes what precedes the value of a member of an object at the given
+   * level: the separator, the line break and indentation if indenting, and
+   * the key.
+   */
+  void beginMember(String key, int level, boolean first) throws IOException {
+    if (!first) {
+      write(", ");
+    }
+
+    if (indentFactor > 0) {
+      write('\n');
+      writeSpaces((level + 1) * indentFactor);
+    }
+
+    writeName(key);
+  }
+
+  /**
+   * Closes an array or object at the given level, on a line of its own if
+   * indenting and the container is not empty.
+   */
+  void endContainer(char c, int level, boolean nonEmpty) throws IOException {
+    if (indentFactor > 0 && nonEmpty) {
+      write('\n');
+      writeSpaces(level * indentFactor);
+    }
+
+    write(c);
+  }
+
+  /**
+   * Writes a number; NaN and infinite floating point values are rejected.
+   */
+  void writeNumber(Number number) throws IOException, SerializationException {
+    if (number instanceof Float) {
+      Float f = (Float) number;
+      if (f.isNaN() || f.isInfinite()) {
+        throw new SerializationException(number + " is not a valid value.");
+      }
+    } else if (number instanceof Double) {
+      writeDouble(number.doubleValue());
+      return;
+    }
+
+    int length = formatter.formatNumber(number);
+    if (length >= 0) {
+      write(formatter.chars(), 0, length);
+    } else {
+      write(number.toString());
+    }
+  }
+
+  /**
+   * Writes a double; NaN and infinite values are rejected.
+   */
+  void writeDouble(double value) throws IOException, SerializationException {
+    if (Double.isNaN(value) || Double.isInfinite(value)) {
+      throw new SerializationException(value + " is not a valid value.");
+    }
+
+    int length = formatter.formatDouble(value);
+    if (length >= 0) {
+      write(formatter.chars(), 0, length);
+    } else {
+      write(Double.toString(value));
+    }
+  }
+
+  void writeLong(long value) throws IOException {
+    write(formatter.chars(), 0, formatter.formatLong(value));
+  }
+
+  /**
+   * Writes a string value, escaping tabs, line feeds, backslashes and quotes,
+   * or all control characters, backslashes and quotes in strict output (and,
+   * unless the character set is a UTF, characters above U+00FF).
+   */
+  void writeString(String string) throws IOException {
+    String[] escapes = this.escapes;
+    write('"');
+
+    int start = 0;
+    for (int i = 0, n = string.length(); i < n; i++) {
+      char c = string.charAt(i);
+
+      String escape;
+      if (c < 128) {
+        escape = escapes[c];
+        if (escape == null) {
+          continue;
+        }
+      } else if (c > 0xFF && escapeNonLatin1) {
+        escape = null;
+      } else {
+        continue;
+      }
+
+      if (i > start) {
+        write(string, start, i);
+      }
+
+      if (escape != null) {
+        write(escape);
+      } else {
+        write('\\');
+        write('u');
+        write(HEX_DIGITS[(c >> 12) & 0xF]);
+        write(HEX_DIGITS[(c >> 8) & 0xF]);
+        write(HEX_DIGITS[(c >> 4) & 0xF]);
+        write(HEX_DIGITS[c & 0xF]);
+      }
+
+      start = i + 1;
+    }
+
+    write(string, start, string.length());
+    write('"');
+  }
+
+  /**
+   * Writes an object key followed by the name separator. Keys are encoded
+   * once and kept in a direct-mapped cache, so a recurring key is written as
+   * a single copy of its encoded form.
+   */
+  private void writeName(String key) throws IOException {
+    if (key.length() > MAX_CACHED_KEY_LENGTH) {
+      write(encodeName(key));
+      return;
+    }
+
+    int slot = key.hashCode() & (KEY_CACHE_SIZE - 1);
+    String cachedKey = cachedKeys[slot];
+    if (cachedKey != key && !key.equals(cachedKey)) {
+      cacheName(slot, encodeName(key));
+      cachedKeys[slot] = key;
+    }
+
+    writeCachedName(slot);
+  }
+
+  /**
+   * Returns the text of an object key and the name separator; keys that are
+   * not Java identifiers are quote-delimited, with their quotes escaped (and,
+   * in strict output, backslashes and control characters too).
+   */
+  private String encodeName(String key) {
+    if (strictOutput) {
+      return encodeStrictName(key);
+    }
+
+    boolean identifier = true;
+    for (int i = 0, n = key.length(); i < n && identifier; i++) {
+      identifier = Character.isJavaIdentifierPart(key.charAt(i));
+    }
+
+    if (identifier) {
+      return alwaysDelimitMapKeys ? "\"" + key + "\": " : key + ": ";
+    }
+
+    StringBuilder stringBuilder = new StringBuilder(key.length() + 5);
+    stringBuilder.append('"');
+
+    int start = 0;
+    for (int i = key.indexOf('"'); i != -1; i = key.indexOf('"', i + 1)) {
+      stringBuilder.append(key, start, i);
+      stringBuilder.append('\\');
+      start = i;
+    }
+
+    stringBuilder.append(key, start, key.length());
+    stringBuilder.append("\": ");
+    return stringBuilder.toString();
+  }
+
+  /**
+   * Returns the text of an object key in strict output and the name
+   * separator. Keys are quote-delimited, with their quotes, backslashes and
+   * control characters escaped, unless keys may be written bare and the
+   * tokenizer reads the key back as an identifier.
+   */
+  private String encodeStrictName(String key) {
+    boolean identifier = !alwaysDelimitMapKeys && !key.isEmpty() && JsonTokenizer.isIdentifierStart(key.charAt(0));
+    for (int i = 1, n = key.length(); i < n && identifier; i++) {
+      identifier = JsonTokenizer.isIdentifierPart(key.charAt(i));
+    }
+
+    if (identifier) {
+      return key + ": ";
+    }
+
+    StringBuilder stringBuilder = new StringBuilder(key.length() + 5);
+    stringBuilder.append('"');
+
+    for (int i = 0, n = key.length(); i < n; i++) {
+      char c = key.charAt(i);
+      String escape = (c < 128) ? STRICT_ESCAPES[c] : null;
+      if (escape != null) {
+        stringBuilder.append(escape);
+      } else {
+        stringBuilder.append(c);
+      }
+    }
+
+    stringBuilder.append("\": ");
+    return stringBuilder.toString();
+  }
+
+  /**
+   * Stores the encoded form of the given name text in a slot of the key
+   * cache.
+   */
+  abstract void cacheName(int slot, String text);
+
+  /**
+   * Writes the name text cached in the given slot.
+   */
+  abstract void writeCachedName(int slot) throws IOException;
+
+  private void writeSpaces(int count) throws IOException {
+    if (spaces.length() < count) {
+      char[] chars = new char[Math.max(count, spaces.length() * 2)];
+      Arrays.fill(chars, ' ');
+      spaces = new String(chars);
+    }
+
+    write(spaces, 0, count);
+  }
+}
@@ -0,0 +1,587 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.veracloud.jton.serialization;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+import com.veracloud.jton.JtonElement;
+
+/**
+ * Non-blocking JSON parser that is fed UTF-8 encoded input in arbitrary
+ * pieces, e.g. as it is received from a non-blocking channel.
+ * <p>
+ * Each call to {@link #feed(ByteBuffer)} parses as far as the input allows and
+ * keeps the state of the values that are not complete yet; it never blocks.
+ * Completed top-level values are queued and returned by {@link #nextValue()},
+ * or, if the parser was created with a {@link JsonHandler}, the handler
+ * receives the parse events as soon as each token is complete. The input may
+ * contain several top-level values; the grammar is the same as that of
+ * {@link JsonSerializer}.
+ *
+ * <pre>
+ * JsonFeedParser parser = new JsonFeedParser();
+ * ...
+ * // When the channel is readable
+ * if (channel.read(buffer) == -1) {
+ *   parser.endOfInput();
+ * } else {
+ *   buffer.flip();
+ *   parser.feed(buffer);
+ *   buffer.clear();
+ * }
+ * JtonElement value;
+ * while ((value = parser.nextValue()) != null) {
+ *   process(value);
+ * }
+ * </pre>
+ *
+ * Instances are not thread-safe.
+ */
+public class JsonFeedParser {
+  /**
+   * The state of the parser after it has been fed.
+   */
+  public enum Status {
+    /** The current value is not complete; more input is needed. */
+    NEED_MORE_INPUT,
+
+    /** One or more top-level values have been completed. */
+    VALUE_AVAILABLE,
+
+    /** The end of the input has been reached and all values were read. */
+    END_OF_INPUT
+  }
+
+  private static final int INITIAL_CAPACITY = 1024;
+
+  /** Pending tokens longer than this are only retried once the input has grown by half. */
+  private static final int RETRY_THRESHOLD = 4096;
+
+  // Parse states
+  private static final int ARRAY_START = 0;
+  private static final int ARRAY_VALUE = 1;
+  private static final int OBJECT_START = 2;
+  private static final int OBJECT_KEY = 3;
+  private static final int OBJECT_COLON = 4;
+  private static final int OBJECT_VALUE = 5;
+
+  private JsonHandler handler;
+  private JtonTreeBuilder treeBuilder;
+  private final ArrayDeque<JtonElement> values = new ArrayDeque<>();
+
+  private NumberPolicy numberPolicy = NumberPolicy.LAZY;
+  private SymbolTable symbolTable = null;
+  private boolean internKeys = true;
+
+  private final Utf8JsonTokenizer tokenizer = new Utf8JsonTokenizer();
+
+  private byte[] buffer = new byte[INITIAL_CAPACITY];
+  private int start = 0;
+  private int limit = 0;
+  private int retryLimit = 0;
+
+  private boolean streamStart = true;
+  private boolean ended = false;
+  private boolean failed = false;
+
+  private int[] states = new int[16];
+  private int depth = 0;
+  private String key = null;
+
+  private int valueCount = 0;
+  private int completed = 0;
+
+  /**
+   * Creates a parser that builds the values it reads; they are returned by
+   * {@link #nextValue()}.
+   */
+  public JsonFeedParser() {
+    this.treeBuilder = new JtonTreeBuilder();
+    this.handler = treeBuilder;
+  }
+
+  /**
+   * Creates a parser that reports the values it reads to the given handler.
+   *
+   * @param handler
+   *          The handler that receives the parse events.
+   */
+  public JsonFeedParser(JsonHandler handler) {
+    if (handler == null) {
+      throw new IllegalArgumentException("handler is null.");
+    }
+
+    this.treeBuilder = null;
+    this.handler = handler;
+  }
+
+  public NumberPolicy getNumberPolicy() {
+    return numberPolicy;
+  }
+
+  /**
+   * @see JsonSerializer#setNumberPolicy(NumberPolicy)
+   */
+  public void setNumberPolicy(NumberPolicy numberPolicy) {
+    if (numberPolicy == null) {
+      throw new IllegalArgumentException("numberPolicy is null.");
+    }
+
+    this.numberPolicy = numberPolicy;
+  }
+
+  /**
+   * Returns the table map keys are shared through, or <tt>null</tt> if keys
+   * are not shared.
+   */
+  public SymbolTable getSymbolTable() {
+    if (symbolTable == null && internKeys) {
+      symbolTable = new SymbolTable();
+    }
+
+    return symbolTable;
+  }
+
+  /**
+   * Sets the table map keys are shared through; a table can be shared by
+   * many parsers, e.g. by all connections of a server.
+   *
+   * @see JsonSerializer#setSymbolTable(SymbolTable)
+   */
+  public void setSymbolTable(SymbolTable symbolTable) {
+    this.symbolTable = symbolTable;
+    this.internKeys = (symbolTable != null);
+  }
+
+  /**
+   * Parses the remaining bytes of the given buffer, which are all consumed.
+   *
+   * @param byteBuffer
+   *          The next piece of input.
+   *
+   * @return {@link Status#VALUE_AVAILABLE} if top-level values have been
+   *         completed (and, when building values, not yet taken), otherwise
+   *         {@link Status#NEED_MORE_INPUT}.
+   */
+  public Status feed(ByteBuffer byteBuffer) throws SerializationException {
+    if (byteBuffer == null) {
+      throw new IllegalArgumentException("byteBuffer is null.");
+    }
+
+    int length = byteBuffer.remaining();
+    byteBuffer.get(reserve(length), limit, length);
+    limit += length;
+
+    return parse();
+  }
+
+  /**
+   * Parses a range of bytes.
+   *
+   * @see #feed(ByteBuffer)
+   */
+  public Status feed(byte[] bytes, int offset, int length) throws SerializationException {
+    if (bytes == null) {
+      throw new IllegalArgumentException("bytes is null.");
+    }
+
+    if (offset < 0 || length < 0 || offset + length > bytes.length) {
+      throw new IndexOutOfBoundsException();
+    }
+
+    System.arraycopy(bytes, offset, reserve(length), limit, length);
+    limit += length;
+
+    return parse();
+  }
+
+  /**
+   * Signals the end of the input and completes the last value. As with
+   * {@link JsonSerializer}, a top-level array or object that is not closed is
+   * accepted if the input ends where a value or its end is expected.
+   *
+   * @return {@link Status#VALUE_AVAILABLE} if built values have not been
+   *         taken yet, otherwise {@link Status#END_OF_INPUT}.
+   */
+  public Status endOfInput() throws SerializationException {
+    ended = true;
+    parse();
+
+    return (values.isEmpty()) ? Status.END_OF_INPUT : Status.VALUE_AVAILABLE;
+  }
+
+  /**
+   * Returns the next completed top-level value, or <tt>null</tt> if there is
+   * none (or the parser reports to a handler).
+   */
+  public JtonElement nextValue() {
+    return values.poll();
+  }
+
+  /**
+   * Discards all input and state, so that the parser can read a new input.
+   */
+  public void reset() {
+    if (treeBuilder != null) {
+      treeBuilder = new JtonTreeBuilder();
+      handler = treeBuilder;
+    }
+
+    values.clear();
+    start = 0;
+    limit = 0;
+    retryLimit = 0;
+    streamStart = true;
+    ended = false;
+    failed = false;
+    depth = 0;
+    key = null;
+    valueCount = 0;
+    completed = 0;
+  }
+
+  /**
+   * Makes room for the given number of bytes after the unparsed input.
+   */
+  private byte[] reserve(int length) {
+    if (ended) {
+      throw new IllegalStateException("The end of the input has been signalled.");
+    }
+
+    if (start > 0 && limit + length > buffer.length) {
+      System.arraycopy(buffer, start, buffer, 0, limit - start);
+      limit -= start;
+      retryLimit -= start;
+      start = 0;
+    }
+
+    if (limit + length > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, limit + length));
+    }
+
+    return buffer;
+  }
+
+  private Status parse() throws SerializationException {
+    if (failed) {
+      throw new IllegalStateException("The parser has failed.");
+    }
+
+    completed = 0;
+    if (ended || limit >= retryLimit) {
+      try {
+        parseTokens();
+      } catch (SerializationException | RuntimeException exception) {
+        failed = true;
+        throw exception;
+      }
+    }
+
+    return (completed > 0 || !values.isEmpty()) ? Status.VALUE_AVAILABLE : Status.NEED_MORE_INPUT;
+  }
+
+  /**
+   * Reads tokens until the input is exhausted or ends within a token.
+   */
+  private void parseTokens() throws SerializationException {
+    if (streamStart) {
+      // A byte order mark may only start the input
+      if (limit - start < 3 && !ended && isPrefix(BOM, buffer, start, limit)) {
+        return;
+      }
+
+      if (limit - start >= 3 && isPrefix(BOM, buffer, start, start + 3)) {
+        start += 3;
+      }
+
+      streamStart = false;
+    }
+
+    if (limit - start >= 3 && isPrefix(BOM, buffer, start, start + 3)) {
+      throw new SerializationException("Unexpected character in input stream.");
+    }
+
+    tokenizer.symbolTable = getSymbolTable();
+    tokenizer.numberPolicy = numberPolicy;
+    tokenizer.reset(buffer, start, limit - start);
+
+    try {
+      for (;;) {
+        int c;
+        try {
+          c = tokenizer.skipWhitespaceAndComments();
+        } catch (SerializationException exception) {
+          if (isTruncated()) {
+            defer();
+            return;
+          }
+          throw exception;
+        }
+
+        if (c == -1) {
+          if (ended) {
+            end();
+          } else {
+            defer();
+          }
+          return;
+        }
+
+        // Whitespace and comments are complete
+        start = tokenizer.position();
+
+        if (c >= 0x80 && !ended && limit - start < 4) {
+          // The next character may not be complete
+          defer();
+          return;
+        }
+
+        boolean complete;
+        try {
+          complete = readToken(c);
+        } catch (SerializationException | NumberFormatException exception) {
+          if (isTruncated()) {
+            complete = false;
+          } else {
+            throw exception;
+          }
+        }
+
+        if (!complete) {
+          defer();
+          return;
+        }
+
+        start = tokenizer.position();
+      }
+    } catch (IOException exception) {
+      // Not thrown when reading a byte array
+      throw new SerializationException(exception);
+    } finally {
+      tokenizer.release();
+    }
+  }
+
+  /**
+   * Returns whether the tokenizer may have failed because it ran out of input,
+   * possibly within a multi-byte character. If not, the error persists when
+   * the token is read again with more input.
+   */
+  private boolean isTruncated() {
+    return !ended && tokenizer.position() > limit - 4;
+  }
+
+  /**
+   * Waits for more input before the current token is read again; long tokens
+   * are retried once the input has grown by half, so they are scanned a
+   * bounded number of times.
+   */
+  private void defer() {
+    int pending = limit - start;
+    retryLimit = (pending > RETRY_THRESHOLD) ? limit + pending / 2 : limit + 1;
+  }
+
+  /**
+   * Reads the token starting with <tt>c</tt> according to the current state.
+   *
+   * @return <tt>false</tt> if more input is needed to read the token.
+   */
+  private boolean readToken(int c) throws IOException, SerializationException {
+    int state = (depth == 0) ? -1 : states[depth - 1];
+
+    switch (state) {
+    case ARRAY_START:
+      if (c == ']') {
+        tokenizer.consume();
+        handler.endArray();
+        pop();
+        return true;
+      }
+      return readValue(c);
+
+    case ARRAY_VALUE:
+      if (c == ',') {
+        tokenizer.consume();
+        states[depth - 1] = ARRAY_START;
+      } else if (c == ']') {
+        tokenizer.consume();
+        handler.endArray();
+        pop();
+      } else {
+        throw new SerializationException("Unexpected character in input stream.");
+      }
+      return true;
+
+    case OBJECT_START:
+      if (c == '}') {
+        tokenizer.consume();
+        handler.endObject();
+        pop();
+        return true;
+      }
+
+      key = tokenizer.readKey(c);
+      if (key.length() == 0) {
+        throw new SerializationException("\"" + key + "\" is not a valid key.");
+      }
+      states[depth - 1] = OBJECT_KEY;
+      return true;
+
+    case OBJECT_KEY:
+      if (c != ':') {
+        throw new SerializationException("Unexpected character in input stream.");
+      }
+      tokenizer.consume();
+      handler.key(key);
+      key = null;
+      states[depth - 1] = OBJECT_COLON;
+      return true;
+
+    case OBJECT_COLON:
+      return readValue(c);
+
+    case OBJECT_VALUE:
+      if (c == ',') {
+        tokenizer.consume();
+        states[depth - 1] = OBJECT_START;
+      } else if (c == '}') {
+        tokenizer.consume();
+        handler.endObject();
+        pop();
+      } else {
+        throw new SerializationException("Unexpected character in input stream.");
+      }
+      return true;
+
+    default:
+      return readValue(c);
+    }
+  }
+
+  /**
+   * Reads a scalar value or the start of a container.
+   */
+  private boolean readValue(int c) throws IOException, SerializationException {
+    if (c == 'n') {
+      tokenizer.readLiteral("null", "Incomplete null value in input stream.");
+      handler.nullValue();
+    } else if (c == '"' || c == '\'') {
+      handler.value(tokenizer.readString());
+    } else if (c == '+' || c == '-' || JsonTokenizer.isDigit(c)) {
+      Number number = tokenizer.readNumber();
+
+      int position = tokenizer.position();
+      if (!ended && (position == limit || (buffer[position] < 0 && limit - position < 4))) {
+        // The number may continue
+        return false;
+      }
+
+      if (position == start) {
+        // A sign that does not start a number
+        throw new SerializationException("Unexpected character in input stream.");
+      }
+
+      handler.value(number);
+    } else if (c == 't') {
+      tokenizer.readLiteral("true", "Incomplete boolean value in input stream.");
+      handler.value(true);
+    } else if (c == 'f') {
+      tokenizer.readLiteral("false", "Incomplete boolean value in input stream.");
+      handler.value(false);
+    } else if (c == '[') {
+      tokenizer.consume();
+      handler.startArray();
+      push(ARRAY_START);
+      return true;
+    } else if (c == '{') {
+      tokenizer.consume();
+      handler.startObject();
+      push(OBJECT_START);
+      return true;
+    } else {
+      throw new SerializationException("Unexpected character in input stream.");
+    }
+
+    valueRead();
+    return true;
+  }
+
+  /**
+   * Handles the end of the input at the current state.
+   */
+  private void end() throws SerializationException {
+    while (depth > 0) {
+      int state = states[depth - 1];
+
+      if (state == ARRAY_START) {
+        handler.endArray();
+        pop();
+      } else if (state == OBJECT_START) {
+        handler.endObject();
+        pop();
+      } else if (state == OBJECT_KEY) {
+        throw new SerializationException("Unexpected character in input stream.");
+      } else {
+        throw new SerializationException("Unexpected end of input stream.");
+      }
+    }
+
+    if (valueCount == 0) {
+      throw new SerializationException("Unexpected end of input stream.");
+    }
+  }
+
+  private void push(int state) {
+    if (depth == states.length) {
+      states = Arrays.copyOf(states, depth * 2);
+    }
+    states[depth++] = state;
+  }
+
+  private void pop() {
+    depth--;
+    valueRead();
+  }
+
+  /**
+   * Updates the state after a value has been read.
+   */
+  private void valueRead() {
+    if (depth == 0) {
+      valueCount++;
+      completed++;
+      if (treeBuilder != null) {
+        values.add(treeBuilder.getResult());
+      }
+    } else if (states[depth - 1] == ARRAY_START) {
+      states[depth - 1] = ARRAY_VALUE;
+    } else {
+      states[depth - 1] = OBJECT_VALUE;
+    }
+  }
+
+  private static final byte[] BOM = { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF };
+
+  private static boolean isPrefix(byte[] prefix, byte[] bytes, int from, int to) {
+    for (int i = from; i < to; i++) {
+      if (bytes[i] != prefix[i - from]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
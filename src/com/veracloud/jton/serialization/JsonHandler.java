@@ -0,0 +1,78 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.veracloud.jton.serialization;
+
+/**
+ * Receives the structure of a JSON document as a sequence of events while
+ * {@link JsonSerializer} parses it, without any {@code JtonElement} being
+ * created.
+ * <p>
+ * Members of an object are reported as a {@link #key(String)} event followed
+ * by the events of the member value.
+ *
+ * @see JsonSerializer#readObject(java.io.InputStream, JsonHandler)
+ */
+public interface JsonHandler {
+
+  void startObject() throws SerializationException;
+
+  void key(String key) throws SerializationException;
+
+  void endObject() throws SerializationException;
+
+  void startArray() throws SerializationException;
+
+  void endArray() throws SerializationException;
+
+  void value(String value) throws SerializationException;
+
+  void value(long value) throws SerializationException;
+
+  void value(double value) throws SerializationException;
+
+  void value(boolean value) throws SerializationException;
+
+  void nullValue() throws SerializationException;
+
+  /**
+   * Called for every number in the input; the number is not converted until
+   * one of its accessors is called.
+   * <p>
+   * The default implementation calls {@link #value(long)} for integers that fit
+   * into a {@code long} and {@link #value(double)} otherwise.
+   *
+   * @throws NumberFormatException
+   *           if the number is not valid.
+   */
+  default void value(Number value) throws SerializationException {
+    if (value instanceof Long) {
+      value(value.longValue());
+      return;
+    } else if (value instanceof Double) {
+      value(value.doubleValue());
+      return;
+    }
+
+    String text = value.toString();
+    if (text.indexOf('.') == -1 && text.indexOf('e') == -1 && text.indexOf('E') == -1) {
+      try {
+        value(Long.parseLong(text));
+        return;
+      } catch (NumberFormatException exception) {
+        // Out of range; fall through
+      }
+    }
+    value(value.doubleValue());
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.veracloud.jton.serialization;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import com.veracloud.jton.JtonArray;
+import com.veracloud.jton.JtonObject;
+
+/**
+ * Checks that {@link JsonLinesSerializer} reads back, in strict mode, what it
+ * writes: records with carriage returns and other control characters in
+ * strings and backslashes and control characters in keys, each written on a
+ * line of its own.
+ * <p>
+ * Usage: {@code JsonLinesRoundTrip}; exits with an exception on the first
+ * record that does not round-trip.
+ */
+public class JsonLinesRoundTrip {
+
+  public static void main(String[] args) throws IOException, SerializationException {
+    StringBuilder controls = new StringBuilder();
+    for (char c = 0; c < 0x20; c++) {
+      controls.append(c);
+    }
+
+    check(new JtonObject().set("msg", "line1\rline2"));
+    check(new JtonObject().set("msg", "bell\u0007"));
+    check(new JtonObject().set("C:\\path", "value"));
+    check(new JtonObject().set("msg", controls.toString()).set("key" + controls, "\"quoted\" \\ \u00e9\u4e2d"));
+
+    System.out.println("JSON Lines round trip: OK");
+  }
+
+  private static void check(JtonObject record) throws IOException, SerializationException {
+    JtonArray values = new JtonArray();
+    values.add(record);
+
+    JsonLinesSerializer serializer = new JsonLinesSerializer();
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    serializer.writeObject(values, outputStream);
+
+    String text = new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+    if (text.indexOf('\n') != text.length() - 1 || text.indexOf('\r') != -1) {
+      throw new IllegalStateException("Record not written on a line of its own: " + text);
+    }
+
+    JtonArray result = serializer.readObject(new ByteArrayInputStream(outputStream.toByteArray()));
+    if (!values.equals(result)) {
+      throw new IllegalStateException("Record read back as " + result + ": " + text);
+    }
+  }
+}
@@ -0,0 +1,374 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.veracloud.jton.serialization;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+import com.veracloud.jton.JtonArray;
+import com.veracloud.jton.JtonElement;
+
+/**
+ * Implementation of the {@link Serializer} interface that reads and writes
+ * JSON Lines (newline delimited JSON) in parallel.
+ * <p>
+ * The input is cut into chunks between top-level values, which are parsed
+ * concurrently on a {@link ForkJoinPool}. Values need not be separated by
+ * newlines: concatenated values (<tt>{...}{...}</tt>) and values spanning
+ * several lines are read as well. Output records are serialized concurrently
+ * and written one per line.
+ * <p>
+ * JSON Lines is always UTF-8 encoded. Like {@link JsonSerializer}, instances
+ * are not thread-safe.
+ */
+public class JsonLinesSerializer implements Serializer<JtonArray> {
+  public static final String JSONL_EXTENSION = "jsonl";
+  public static final String MIME_TYPE = "application/x-ndjson";
+
+  /** Default minimum size of the chunks that are parsed as one task. */
+  public static final int DEFAULT_CHUNK_SIZE = ParallelParser.CHUNK_SIZE;
+
+  private final ForkJoinPool pool;
+
+  private boolean ordered = true;
+  private int chunkSize = DEFAULT_CHUNK_SIZE;
+  private boolean strict = true;
+  private NumberPolicy numberPolicy = NumberPolicy.LAZY;
+  private SymbolTable symbolTable = null;
+  private boolean internKeys = true;
+
+  private boolean alwaysDelimitMapKeys = true;
+
+  public JsonLinesSerializer() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  /**
+   * @param pool
+   *          The pool on which chunks are parsed and records serialized.
+   */
+  public JsonLinesSerializer(ForkJoinPool pool) {
+    if (pool == null) {
+      throw new IllegalArgumentException("pool is null.");
+    }
+
+    this.pool = pool;
+  }
+
+  public ForkJoinPool getPool() {
+    return pool;
+  }
+
+  /**
+   * Returns whether values are delivered in input order.
+   */
+  public boolean getOrdered() {
+    return ordered;
+  }
+
+  /**
+   * Sets whether values are delivered in input order (the default). When
+   * unordered, the values of a chunk are delivered as soon as it has been
+   * parsed, from the thread that parsed it; values within a chunk keep their
+   * order.
+   */
+  public void setOrdered(boolean ordered) {
+    this.ordered = ordered;
+  }
+
+  public int getChunkSize() {
+    return chunkSize;
+  }
+
+  /**
+   * Sets the minimum number of bytes parsed as one task. Chunks end at the
+   * first boundary between top-level values after that many bytes.
+   */
+  public void setChunkSize(int chunkSize) {
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("chunkSize must be positive.");
+    }
+
+    this.chunkSize = chunkSize;
+  }
+
+  public boolean getStrict() {
+    return strict;
+  }
+
+  /**
+   * Sets whether only standard JSON is accepted (the default), as JSON Lines
+   * requires. When lenient, records are read with the grammar of
+   * {@link JsonSerializer}.
+   * <p>
+   * Records written by this serializer are read back in strict mode, except
+   * those written with {@link #setAlwaysDelimitMapKeys(boolean)
+   * setAlwaysDelimitMapKeys(false)}, whose bare keys are only read when
+   * lenient.
+   *
+   * @see JsonSerializer#setStrict(boolean)
+   */
+  public void setStrict(boolean strict) {
+    this.strict = strict;
+  }
+
+  public NumberPolicy getNumberPolicy() {
+    return numberPolicy;
+  }
+
+  /**
+   * @see JsonSerializer#setNumberPolicy(NumberPolicy)
+   */
+  public void setNumberPolicy(NumberPolicy numberPolicy) {
+    if (numberPolicy == null) {
+      throw new IllegalArgumentException("numberPolicy is null.");
+    }
+
+    this.numberPolicy = numberPolicy;
+  }
+
+  /**
+   * Returns the table object keys are shared through by all chunks, or
+   * <tt>null</tt> if keys are not shared.
+   */
+  public SymbolTable getSymbolTable() {
+    if (symbolTable == null && internKeys) {
+      symbolTable = new SymbolTable();
+    }
+
+    return symbolTable;
+  }
+
+  /**
+   * @see JsonSerializer#setSymbolTable(SymbolTable)
+   */
+  public void setSymbolTable(SymbolTable symbolTable) {
+    this.symbolTable = symbolTable;
+    this.internKeys = (symbolTable != null);
+  }
+
+  public boolean getAlwaysDelimitMapKeys() {
+    return alwaysDelimitMapKeys;
+  }
+
+  /**
+   * Sets whether written map keys are always quoted (the default). Strings
+   * and quoted keys are always escaped as RFC 8259 requires, so with quoted
+   * keys every line is strict JSON. Keys written bare are not, and must be
+   * read with {@link #setStrict(boolean) setStrict(false)}.
+   */
+  public void setAlwaysDelimitMapKeys(boolean alwaysDelimitMapKeys) {
+    this.alwaysDelimitMapKeys = alwaysDelimitMapKeys;
+  }
+
+  /**
+   * Reads all values from a JSON Lines stream.
+   *
+   * @param inputStream
+   *          The input stream from which data will be read.
+   *
+   * @return An array of the values read.
+   */
+  @Override
+  public JtonArray readObject(InputStream inputStream) throws IOException, SerializationException {
+    JtonArray values = new JtonArray();
+    readObject(inputStream, collector(values));
+    return values;
+  }
+
+  /**
+   * Reads all values from a JSON Lines stream, passing each to the given
+   * consumer. Only a bounded number of chunks is read ahead of the consumer.
+   *
+   * @param inputStream
+   *          The input stream from which data will be read.
+   * @param consumer
+   *          The consumer of the values; it must be thread-safe if values are
+   *          not {@link #setOrdered(boolean) ordered}.
+   */
+  public void readObject(InputStream inputStream, Consumer<? super JtonElement> consumer)
+      throws IOException, SerializationException {
+    if (inputStream == null) {
+      throw new IllegalArgumentException("inputStream is null.");
+    }
+
+    if (consumer == null) {
+      throw new IllegalArgumentException("consumer is null.");
+    }
+
+    newParser().readValues(inputStream, consumer, ordered);
+  }
+
+  /**
+   * Reads all values from JSON Lines encoded bytes.
+   *
+   * @param bytes
+   *          The bytes to read; they must not change while they are read.
+   *
+   * @return An array of the values read.
+   */
+  public JtonArray readObject(byte[] bytes) throws IOException, SerializationException {
+    if (bytes == null) {
+      throw new IllegalArgumentException("bytes is null.");
+    }
+
+    return readObject(bytes, 0, bytes.length);
+  }
+
+  /**
+   * Reads all values from a range of JSON Lines encoded bytes.
+   *
+   * @see #readObject(byte[])
+   */
+  public JtonArray readObject(byte[] bytes, int offset, int length) throws IOException, SerializationException {
+    JtonArray values = new JtonArray();
+    readObject(bytes, offset, length, collector(values));
+    return values;
+  }
+
+  /**
+   * Reads all values from a range of JSON Lines encoded bytes, passing each to
+   * the given consumer. The chunks are parsed in place.
+   *
+   * @see #readObject(InputStream, Consumer)
+   */
+  public void readObject(byte[] bytes, int offset, int length, Consumer<? super JtonElement> consumer)
+      throws IOException, SerializationException {
+    if (bytes == null) {
+      throw new IllegalArgumentException("bytes is null.");
+    }
+
+    if (offset < 0 || length < 0 || offset + length > bytes.length) {
+      throw new IndexOutOfBoundsException();
+    }
+
+    if (consumer == null) {
+      throw new IllegalArgumentException("consumer is null.");
+    }
+
+    newParser().readValues(bytes, offset, length, consumer, ordered);
+  }
+
+  /**
+   * Reads all values from a JSON Lines file.
+   *
+   * @param path
+   *          The file from which data will be read.
+   *
+   * @return An array of the values read.
+   */
+  public JtonArray readObject(Path path) throws IOException, SerializationException {
+    if (path == null) {
+      throw new IllegalArgumentException("path is null.");
+    }
+
+    try (InputStream inputStream = Files.newInputStream(path)) {
+      return readObject(inputStream);
+    }
+  }
+
+  /**
+   * Writes the elements of an array as JSON Lines, one element per line.
+   * Elements are serialized concurrently and written in order.
+   *
+   * @param values
+   *          The elements to write.
+   * @param outputStream
+   *          The output stream to which data will be written.
+   */
+  @Override
+  public void writeObject(JtonArray values, OutputStream outputStream) throws IOException, SerializationException {
+    if (values == null) {
+      throw new IllegalArgumentException("values is null.");
+    }
+
+    if (outputStream == null) {
+      throw new IllegalArgumentException("outputStream is null.");
+    }
+
+    int size = values.size();
+    int batchSize = Math.max(1, Math.min(1024, size / (pool.getParallelism() * 8)));
+
+    ArrayDeque<ForkJoinTask<byte[]>> pending = new ArrayDeque<>();
+    try {
+      for (int from = 0; from < size; from += batchSize) {
+        List<JtonElement> batch = values.subList(from, Math.min(size, from + batchSize));
+        pending.add(pool.submit(() -> write(batch)));
+
+        if (pending.size() > Math.max(2, pool.getParallelism() * 2)) {
+          outputStream.write(ParallelParser.join(pending.remove()));
+        }
+      }
+
+      while (!pending.isEmpty()) {
+        outputStream.write(ParallelParser.join(pending.remove()));
+      }
+    } finally {
+      for (ForkJoinTask<byte[]> task : pending) {
+        task.cancel(false);
+      }
+    }
+
+    outputStream.flush();
+  }
+
+  @Override
+  public String getMIMEType(JtonArray object) {
+    return MIME_TYPE;
+  }
+
+  private byte[] write(List<JtonElement> batch) throws IOException, SerializationException {
+    JsonSerializer jsonSerializer = new JsonSerializer(StandardCharsets.UTF_8);
+    jsonSerializer.setAlwaysDelimitMapKeys(alwaysDelimitMapKeys);
+    jsonSerializer.setStrictOutput(true);
+
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream(batch.size() * 64);
+    Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+    for (JtonElement value : batch) {
+      jsonSerializer.writeObject(value, writer);
+      writer.write('\n');
+    }
+    writer.flush();
+
+    return outputStream.toByteArray();
+  }
+
+  private ParallelParser newParser() {
+    return new ParallelParser(pool, chunkSize, getSymbolTable(), numberPolicy, strict);
+  }
+
+  private Consumer<JtonElement> collector(JtonArray values) {
+    if (ordered) {
+      return values::add;
+    }
+
+    return value -> {
+      synchronized (values) {
+        values.add(value);
+      }
+    };
+  }
+}
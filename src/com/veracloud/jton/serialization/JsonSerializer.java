@@ -17,7 +17,8 @@
 package com.veracloud.jton.serialization;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -26,17 +27,27 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.StringReader;
-import java.io.StringWriter;
 import java.io.Writer;
 import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
-
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import com.veracloud.jton.JTON;
 import com.veracloud.jton.JtonArray;
 import com.veracloud.jton.JtonElement;
 import com.veracloud.jton.JtonIOException;
-import com.veracloud.jton.JtonNull;
 import com.veracloud.jton.JtonObject;
-import com.veracloud.jton.JtonPrimitive;
 import com.veracloud.jton.internal.LazilyParsedNumber;
 
 /**
@@ -60,6 +71,28 @@ public class JsonSerializer implements Serializer<JtonElement> {
   /** The number of spaces to add to each level of indentation. */
   private int indentFactor = 0;
 
+  /** A flag indicating that the buffered tokenizer should be used for reading. */
+  private boolean bufferedTokenizer = false;
+
+  /** A flag indicating that only standard JSON is accepted. */
+  private boolean strict = false;
+
+  /** A flag indicating that strings and keys are escaped as RFC 8259 requires. */
+  private boolean strictOutput = false;
+
+  /** Representation of the numbers read. */
+  private NumberPolicy numberPolicy = NumberPolicy.LAZY;
+
+  /** Canonical map keys; created on first use unless disabled. */
+  private SymbolTable symbolTable = null;
+  private boolean internKeys = true;
+
+  private CharJsonTokenizer charTokenizer = null;
+  private Utf8JsonTokenizer utf8Tokenizer = null;
+
+  private CharJsonEmitter charEmitter = null;
+  private Utf8JsonEmitter utf8Emitter = null;
+
   private int c = -1;
 
   public JsonSerializer() {
@@ -117,8 +150,118 @@ public class JsonSerializer implements Serializer<JtonElement> {
     this.indentFactor = intent;
   }
 
+  /**
+   * Returns a flag indicating whether or not the buffered tokenizer is used for
+   * reading.
+   */
+  public boolean getBufferedTokenizer() {
+    return bufferedTokenizer;
+  }
+
+  /**
+   * Sets a flag indicating that the buffered tokenizer should be used for
+   * reading. The buffered tokenizer reads the input in blocks and scans them
+   * with index arithmetic instead of pulling one character at a time through
+   * a {@link LineNumberReader}; it accepts the same grammar and produces the
+   * same elements.
+   *
+   * @param bufferedTokenizer
+   *          <tt>true</tt> to use the buffered tokenizer; <tt>false</tt> to use
+   *          the character reader.
+   */
+  public void setBufferedTokenizer(boolean bufferedTokenizer) {
+    this.bufferedTokenizer = bufferedTokenizer;
+  }
+
+  public boolean getStrict() {
+    return strict;
+  }
+
+  /**
+   * Sets a flag indicating that only standard JSON (RFC 8259) is accepted.
+   * Comments, single-quoted strings, unquoted keys, trailing commas,
+   * unterminated arrays and objects, unescaped control characters, numbers
+   * outside of the standard syntax and content after the root value are
+   * errors. Strict reads always use the buffered tokenizer and dispatch on
+   * ASCII tables only, which makes them faster than lenient reads; they suit
+   * machine-generated input.
+   * <p>
+   * Strict mode applies to {@link #readObject(InputStream) readObject()} and
+   * {@link #readParallel(byte[]) readParallel()}; lazy and projected reads
+   * are lenient.
+   *
+   * @param strict
+   *          <tt>true</tt> to accept standard JSON only; <tt>false</tt> (the
+   *          default) to accept the lenient grammar.
+   */
+  public void setStrict(boolean strict) {
+    this.strict = strict;
+  }
+
+  /**
+   * Sets whether all control characters in strings, and backslashes and
+   * control characters in quoted keys, are escaped, so that the text written
+   * can be read in strict mode. By default only tabs, line feeds, backslashes
+   * and quotes are escaped in strings, and quotes in keys.
+   */
+  void setStrictOutput(boolean strictOutput) {
+    this.strictOutput = strictOutput;
+  }
+
+  /**
+   * Returns the representation of the numbers read by this serializer.
+   */
+  public NumberPolicy getNumberPolicy() {
+    return numberPolicy;
+  }
+
+  /**
+   * Sets the representation of the numbers read by this serializer. With a
+   * policy other than {@link NumberPolicy#LAZY} numbers are converted while
+   * the input is read, and an invalid number is reported as an error.
+   *
+   * @param numberPolicy
+   *          The number policy.
+   */
+  public void setNumberPolicy(NumberPolicy numberPolicy) {
+    if (numberPolicy == null) {
+      throw new IllegalArgumentException("numberPolicy is null.");
+    }
+
+    this.numberPolicy = numberPolicy;
+  }
+
+  /**
+   * Returns the table used to share map key instances between the objects
+   * read by this serializer, or <tt>null</tt> if keys are not shared. Unless
+   * set explicitly, each serializer has its own table.
+   */
+  public SymbolTable getSymbolTable() {
+    if (symbolTable == null && internKeys) {
+      symbolTable = new SymbolTable();
+    }
+
+    return symbolTable;
+  }
+
+  /**
+   * Sets the table used to share map key instances between the objects read
+   * by this serializer. A table may be shared by several serializers.
+   *
+   * @param symbolTable
+   *          The table, or <tt>null</tt> to create a new string for every key.
+   */
+  public void setSymbolTable(SymbolTable symbolTable) {
+    this.symbolTable = symbolTable;
+    this.internKeys = (symbolTable != null);
+  }
+
   /**
    * Reads data from a JSON stream.
+   * <p>
+   * If the buffered tokenizer is enabled and the character set is UTF-8, the
+   * stream is scanned as UTF-8 bytes without being decoded to characters
+   * first.
    *
    * @param inputStream
    *          The input stream from which data will be read.
@@ -127,12 +270,541 @@ public class JsonSerializer implements Serializer<JtonElement> {
    */
   @Override
   public JtonElement readObject(InputStream inputStream) throws IOException, SerializationException {
+    JtonTreeBuilder treeBuilder = new JtonTreeBuilder();
+    readObject(inputStream, treeBuilder);
+    return treeBuilder.getResult();
+  }
+
+  /**
+   * Reads data from a JSON stream and reports it to the given handler.
+   *
+   * @param inputStream
+   *          The input stream from which data will be read.
+   * @param handler
+   *          The handler that receives the parse events.
+   *
+   * @see #readObject(InputStream)
+   */
+  public void readObject(InputStream inputStream, JsonHandler handler) throws IOException, SerializationException {
     if (inputStream == null) {
       throw new IllegalArgumentException("inputStream is null.");
     }
 
+    if ((bufferedTokenizer || strict) && isUTF8()) {
+      Utf8JsonTokenizer tokenizer = getUtf8Tokenizer();
+      tokenizer.reset(inputStream);
+      try {
+        readObject(tokenizer, handler);
+      } finally {
+        tokenizer.release();
+      }
+      return;
+    }
+
     Reader reader = new BufferedReader(new InputStreamReader(inputStream, charset), BUFFER_SIZE);
-    return readObject(reader);
+    readObject(reader, handler);
+  }
+
+  /**
+   * Reads data from a JSON encoded byte array.
+   *
+   * @param bytes
+   *          The bytes from which data will be read.
+   *
+   * @see #readObject(byte[], int, int)
+   */
+  public JtonElement readObject(byte[] bytes) throws IOException, SerializationException {
+    if (bytes == null) {
+      throw new IllegalArgumentException("bytes is null.");
+    }
+
+    return readObject(bytes, 0, bytes.length);
+  }
+
+  /**
+   * Reads data from a range of a JSON encoded byte array. If the character set
+   * is UTF-8 the bytes are scanned in place, without being decoded to
+   * characters first.
+   *
+   * @param bytes
+   *          The bytes from which data will be read.
+   * @param offset
+   *          The index of the first byte to read.
+   * @param length
+   *          The number of bytes to read.
+   */
+  public JtonElement readObject(byte[] bytes, int offset, int length) throws IOException, SerializationException {
+    JtonTreeBuilder treeBuilder = new JtonTreeBuilder();
+    readObject(bytes, offset, length, treeBuilder);
+    return treeBuilder.getResult();
+  }
+
+  /**
+   * Reads data from a range of a JSON encoded byte array and reports it to the
+   * given handler.
+   *
+   * @param bytes
+   *          The bytes from which data will be read.
+   * @param offset
+   *          The index of the first byte to read.
+   * @param length
+   *          The number of bytes to read.
+   * @param handler
+   *          The handler that receives the parse events.
+   *
+   * @see #readObject(byte[], int, int)
+   */
+  public void readObject(byte[] bytes, int offset, int length, JsonHandler handler)
+      throws IOException, SerializationException {
+    if (bytes == null) {
+      throw new IllegalArgumentException("bytes is null.");
+    }
+
+    if (offset < 0 || length < 0 || offset + length > bytes.length) {
+      throw new IndexOutOfBoundsException();
+    }
+
+    if (!isUTF8()) {
+      readObject(new InputStreamReader(new ByteArrayInputStream(bytes, offset, length), charset), handler);
+      return;
+    }
+
+    Utf8JsonTokenizer tokenizer = getUtf8Tokenizer();
+    tokenizer.reset(bytes, offset, length);
+    try {
+      readObject(tokenizer, handler);
+    } finally {
+      tokenizer.release();
+    }
+  }
+
+  /**
+   * Reads data from a JSON encoded byte array, returning elements that are
+   * decoded on demand.
+   *
+   * @param bytes
+   *          The bytes from which data will be read.
+   *
+   * @see #readLazy(byte[], int, int)
+   */
+  public JtonElement readLazy(byte[] bytes) throws IOException, SerializationException {
+    if (bytes == null) {
+      throw new IllegalArgumentException("bytes is null.");
+    }
+
+    return readLazy(bytes, 0, bytes.length);
+  }
+
+  /**
+   * Reads data from a range of a JSON encoded byte array, returning elements
+   * that are decoded on demand.
+   * <p>
+   * The input is scanned once to validate it and to build a structural index
+   * of its values. The returned arrays and objects are views on that index:
+   * strings and numbers are decoded from the input only when they are
+   * accessed, and members that are never read are never created. This is much
+   * cheaper than {@link #readObject(byte[], int, int)} when only a few members
+   * of a large document are used.
+   * <p>
+   * The returned elements refer to the byte array, which must not be modified
+   * while they are in use. Input in a character set other than UTF-8 is
+   * converted to UTF-8 first.
+   *
+   * @param bytes
+   *          The bytes from which data will be read.
+   * @param offset
+   *          The index of the first byte to read.
+   * @param length
+   *          The number of bytes to read.
+   */
+  public JtonElement readLazy(byte[] bytes, int offset, int length) throws IOException, SerializationException {
+    if (bytes == null) {
+      throw new IllegalArgumentException("bytes is null.");
+    }
+
+    if (offset < 0 || length < 0 || offset + length > bytes.length) {
+      throw new IndexOutOfBoundsException();
+    }
+
+    if (!isUTF8()) {
+      bytes = new String(bytes, offset, length, charset).getBytes(StandardCharsets.UTF_8);
+      offset = 0;
+      length = bytes.length;
+    }
+
+    JsonTape tape = new JsonTape(bytes, offset, length, getSymbolTable(), numberPolicy);
+    try {
+      tape.index();
+    } catch (SerializationException exception) {
+      System.err.println("An error occurred while processing input at line number " + tape.getLineNumber()
+          + ", column " + tape.getColumnNumber());
+
+      throw exception;
+    }
+
+    return tape.getRoot();
+  }
+
+  /**
+   * Reads the given branches of a JSON encoded byte array.
+   *
+   * @param bytes
+   *          The bytes from which data will be read.
+   * @param paths
+   *          The paths of the values to read.
+   *
+   * @see #readProjected(byte[], int, int, Collection)
+   */
+  public JtonElement readProjected(byte[] bytes, Collection<? extends List<String>> paths)
+      throws IOException, SerializationException {
+    if (bytes == null) {
+      throw new IllegalArgumentException("bytes is null.");
+    }
+
+    return readProjected(bytes, 0, bytes.length, paths);
+  }
+
+  /**
+   * Reads the given branches of a range of a JSON encoded byte array.
+   * <p>
+   * Paths are lists of object member names and bracketed array indices, as
+   * returned by {@link JTON#parse(String)}. Only the values at these paths and
+   * the objects and arrays leading to them are created: other object members
+   * are omitted and other array elements are read as <tt>null</tt>, so that
+   * {@link JTON#get(JtonObject, List)} returns the same values for the given
+   * paths as on the complete document. An empty path selects the whole
+   * document.
+   * <p>
+   * Unselected values are skipped by counting brackets, without creating
+   * their strings and numbers, which is much cheaper than
+   * {@link #readObject(byte[], int, int)} when only a small part of a large
+   * document is needed. The tokens of skipped values are checked, but the
+   * structure of skipped objects and arrays is not.
+   *
+   * @param bytes
+   *          The bytes from which data will be read.
+   * @param offset
+   *          The index of the first byte to read.
+   * @param length
+   *          The number of bytes to read.
+   * @param paths
+   *          The paths of the values to read.
+   */
+  public JtonElement readProjected(byte[] bytes, int offset, int length, Collection<? extends List<String>> paths)
+      throws IOException, SerializationException {
+    if (bytes == null) {
+      throw new IllegalArgumentException("bytes is null.");
+    }
+
+    if (offset < 0 || length < 0 || offset + length > bytes.length) {
+      throw new IndexOutOfBoundsException();
+    }
+
+    if (!isUTF8()) {
+      return readProjected(new InputStreamReader(new ByteArrayInputStream(bytes, offset, length), charset), paths);
+    }
+
+    Projection projection = Projection.of(paths);
+    JtonTreeBuilder treeBuilder = new JtonTreeBuilder();
+
+    Utf8JsonTokenizer tokenizer = getUtf8Tokenizer();
+    tokenizer.reset(bytes, offset, length);
+    try {
+      readObject(tokenizer, treeBuilder, projection);
+    } finally {
+      tokenizer.release();
+    }
+
+    return treeBuilder.getResult();
+  }
+
+  /**
+   * Reads the given branches of a JSON stream.
+   *
+   * @param inputStream
+   *          The input stream from which data will be read.
+   * @param paths
+   *          The paths of the values to read.
+   *
+   * @see #readProjected(byte[], int, int, Collection)
+   */
+  public JtonElement readProjected(InputStream inputStream, Collection<? extends List<String>> paths)
+      throws IOException, SerializationException {
+    if (inputStream == null) {
+      throw new IllegalArgumentException("inputStream is null.");
+    }
+
+    if (!isUTF8()) {
+      return readProjected(new InputStreamReader(inputStream, charset), paths);
+    }
+
+    Projection projection = Projection.of(paths);
+    JtonTreeBuilder treeBuilder = new JtonTreeBuilder();
+
+    Utf8JsonTokenizer tokenizer = getUtf8Tokenizer();
+    tokenizer.reset(inputStream);
+    try {
+      readObject(tokenizer, treeBuilder, projection);
+    } finally {
+      tokenizer.release();
+    }
+
+    return treeBuilder.getResult();
+  }
+
+  /**
+   * Reads the given branches of a JSON character stream.
+   *
+   * @param reader
+   *          The reader from which data will be read.
+   * @param paths
+   *          The paths of the values to read.
+   *
+   * @see #readProjected(byte[], int, int, Collection)
+   */
+  public JtonElement readProjected(Reader reader, Collection<? extends List<String>> paths)
+      throws IOException, SerializationException {
+    if (reader == null) {
+      throw new IllegalArgumentException("reader is null.");
+    }
+
+    Projection projection = Projection.of(paths);
+    JtonTreeBuilder treeBuilder = new JtonTreeBuilder();
+
+    if (charTokenizer == null) {
+      charTokenizer = new CharJsonTokenizer();
+    }
+
+    charTokenizer.reset(reader);
+    try {
+      readObject(charTokenizer, treeBuilder, projection);
+    } finally {
+      charTokenizer.release();
+    }
+
+    return treeBuilder.getResult();
+  }
+
+  /**
+   * Reads data from a JSON encoded byte array, parsing the elements of a
+   * top-level array concurrently on the common {@link ForkJoinPool}.
+   *
+   * @param bytes
+   *          The bytes from which data will be read.
+   *
+   * @see #readParallel(byte[], int, int, ForkJoinPool)
+   */
+  public JtonElement readParallel(byte[] bytes) throws IOException, SerializationException {
+    if (bytes == null) {
+      throw new IllegalArgumentException("bytes is null.");
+    }
+
+    return readParallel(bytes, 0, bytes.length, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Reads data from a range of a JSON encoded byte array, parsing the elements
+   * of a top-level array concurrently.
+   * <p>
+   * A sequential scan finds the boundaries between the elements, and chunks
+   * of elements are parsed on the given pool while the scan continues. The
+   * result is the same as that of {@link #readObject(byte[], int, int)}.
+   * Small inputs, other top-level values, input in a character set other than
+   * UTF-8 and input with errors are read sequentially.
+   *
+   * @param bytes
+   *          The bytes from which data will be read.
+   * @param offset
+   *          The index of the first byte to read.
+   * @param length
+   *          The number of bytes to read.
+   * @param pool
+   *          The pool on which the elements are parsed.
+   */
+  public JtonElement readParallel(byte[] bytes, int offset, int length, ForkJoinPool pool)
+      throws IOException, SerializationException {
+    if (bytes == null) {
+      throw new IllegalArgumentException("bytes is null.");
+    }
+
+    if (offset < 0 || length < 0 || offset + length > bytes.length) {
+      throw new IndexOutOfBoundsException();
+    }
+
+    if (pool == null) {
+      throw new IllegalArgumentException("pool is null.");
+    }
+
+    if (isUTF8() && length >= 2 * ParallelParser.CHUNK_SIZE) {
+      Utf8JsonTokenizer tokenizer = new Utf8JsonTokenizer();
+      tokenizer.reset(bytes, offset, length);
+
+      int c;
+      try {
+        c = strict ? tokenizer.skipWhitespace() : tokenizer.skipWhitespaceAndComments();
+      } catch (SerializationException exception) {
+        c = -1;
+      }
+
+      if (c == '[') {
+        ParallelParser parser = new ParallelParser(pool, ParallelParser.CHUNK_SIZE, getSymbolTable(), numberPolicy,
+            strict);
+        List<JtonElement> elements = parser.readElements(bytes, tokenizer.position() + 1, offset + length);
+        if (elements != null) {
+          return new JtonArray(elements);
+        }
+      }
+    }
+
+    return readObject(bytes, offset, length);
+  }
+
+  /**
+   * Reads data from a JSON file, parsing the elements of a top-level array
+   * concurrently on the common {@link ForkJoinPool}.
+   * <p>
+   * The file is not read onto the heap: it is scanned through a buffer of a
+   * few chunks, and the chunks are parsed from memory mapped regions of the
+   * file, so files larger than 2 GB can be read. Small files, other top-level
+   * values, files in a character set other than UTF-8 and files with errors
+   * are read sequentially, as by {@link #readObject(Path)}.
+   *
+   * @param path
+   *          The file from which data will be read.
+   *
+   * @see #readParallel(byte[], int, int, ForkJoinPool)
+   */
+  public JtonElement readParallel(Path path) throws IOException, SerializationException {
+    if (path == null) {
+      throw new IllegalArgumentException("path is null.");
+    }
+
+    if (isUTF8()) {
+      FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+      try {
+        if (channel.size() >= 2 * ParallelParser.CHUNK_SIZE) {
+          ParallelParser parser = new ParallelParser(ForkJoinPool.commonPool(), ParallelParser.CHUNK_SIZE,
+              getSymbolTable(), numberPolicy, strict);
+          List<JtonElement> elements = parser.readElements(channel);
+          if (elements != null) {
+            return new JtonArray(elements);
+          }
+        }
+      } finally {
+        channel.close();
+      }
+    }
+
+    return readObject(path);
+  }
+
+  /**
+   * Reads data from the remaining bytes of a JSON encoded byte buffer. If the
+   * character set is UTF-8 the bytes are scanned without being decoded to
+   * characters first. The position of the buffer is not modified.
+   *
+   * @param byteBuffer
+   *          The buffer from which data will be read.
+   */
+  public JtonElement readObject(ByteBuffer byteBuffer) throws IOException, SerializationException {
+    JtonTreeBuilder treeBuilder = new JtonTreeBuilder();
+    readObject(byteBuffer, treeBuilder);
+    return treeBuilder.getResult();
+  }
+
+  /**
+   * Reads data from the remaining bytes of a JSON encoded byte buffer and
+   * reports it to the given handler.
+   *
+   * @param byteBuffer
+   *          The buffer from which data will be read.
+   * @param handler
+   *          The handler that receives the parse events.
+   *
+   * @see #readObject(ByteBuffer)
+   */
+  public void readObject(ByteBuffer byteBuffer, JsonHandler handler) throws IOException, SerializationException {
+    if (byteBuffer == null) {
+      throw new IllegalArgumentException("byteBuffer is null.");
+    }
+
+    if (!isUTF8()) {
+      readObject(new StringReader(charset.decode(byteBuffer.duplicate()).toString()), handler);
+      return;
+    }
+
+    Utf8JsonTokenizer tokenizer = getUtf8Tokenizer();
+    tokenizer.reset(byteBuffer);
+    try {
+      readObject(tokenizer, handler);
+    } finally {
+      tokenizer.release();
+    }
+  }
+
+  /**
+   * Reads data from a JSON file. If the character set is UTF-8 the file is
+   * memory mapped and scanned directly from the mapped region (in windows, for
+   * files larger than 2 GB) instead of being copied through a stream.
+   *
+   * @param path
+   *          The file from which data will be read.
+   */
+  public JtonElement readObject(Path path) throws IOException, SerializationException {
+    JtonTreeBuilder treeBuilder = new JtonTreeBuilder();
+    readObject(path, treeBuilder);
+    return treeBuilder.getResult();
+  }
+
+  /**
+   * Reads data from a JSON file and reports it to the given handler.
+   *
+   * @param path
+   *          The file from which data will be read.
+   * @param handler
+   *          The handler that receives the parse events.
+   *
+   * @see #readObject(Path)
+   */
+  public void readObject(Path path, JsonHandler handler) throws IOException, SerializationException {
+    if (path == null) {
+      throw new IllegalArgumentException("path is null.");
+    }
+
+    if (!isUTF8()) {
+      InputStream inputStream = Files.newInputStream(path);
+      try {
+        readObject(inputStream, handler);
+      } finally {
+        inputStream.close();
+      }
+      return;
+    }
+
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      Utf8JsonTokenizer tokenizer = getUtf8Tokenizer();
+      tokenizer.reset(channel);
+      try {
+        readObject(tokenizer, handler);
+      } finally {
+        tokenizer.release();
+      }
+    } finally {
+      channel.close();
+    }
+  }
+
+  private boolean isUTF8() {
+    return StandardCharsets.UTF_8.equals(charset);
+  }
+
+  private Utf8JsonTokenizer getUtf8Tokenizer() {
+    if (utf8Tokenizer == null) {
+      utf8Tokenizer = new Utf8JsonTokenizer();
+    }
+
+    return utf8Tokenizer;
   }
 
   /**
@@ -155,10 +827,44 @@ public class JsonSerializer implements Serializer<JtonElement> {
    *         </ul>
    */
   public JtonElement readObject(Reader reader) throws IOException, SerializationException {
+    JtonTreeBuilder treeBuilder = new JtonTreeBuilder();
+    readObject(reader, treeBuilder);
+    return treeBuilder.getResult();
+  }
+
+  /**
+   * Reads data from a JSON stream and reports it to the given handler.
+   *
+   * @param reader
+   *          The reader from which data will be read.
+   * @param handler
+   *          The handler that receives the parse events.
+   *
+   * @see #readObject(Reader)
+   */
+  public void readObject(Reader reader, JsonHandler handler) throws IOException, SerializationException {
     if (reader == null) {
       throw new IllegalArgumentException("reader is null.");
     }
 
+    if (handler == null) {
+      throw new IllegalArgumentException("handler is null.");
+    }
+
+    if (bufferedTokenizer || strict) {
+      if (charTokenizer == null) {
+        charTokenizer = new CharJsonTokenizer();
+      }
+
+      charTokenizer.reset(reader);
+      try {
+        readObject(charTokenizer, handler);
+      } finally {
+        charTokenizer.release();
+      }
+      return;
+    }
+
     // Move to the first character
     LineNumberReader lineNumberReader = new LineNumberReader(reader);
     c = lineNumberReader.read();
@@ -169,21 +875,46 @@ public class JsonSerializer implements Serializer<JtonElement> {
     }
 
     // Read the root value
-    JtonElement object;
     try {
-      object = readValue(lineNumberReader);
+      readValue(lineNumberReader, handler);
     } catch (SerializationException exception) {
       System.err.println("An error occurred while processing input at line number " + (lineNumberReader.getLineNumber() + 1));
 
       throw exception;
     }
+  }
 
-    return object;
+  private void readObject(JsonTokenizer tokenizer, JsonHandler handler) throws IOException, SerializationException {
+    readObject(tokenizer, handler, null);
   }
 
-  private JtonElement readValue(Reader reader) throws IOException, SerializationException {
-    JtonElement object = null;
+  private void readObject(JsonTokenizer tokenizer, JsonHandler handler, Projection projection)
+      throws IOException, SerializationException {
+    if (handler == null) {
+      throw new IllegalArgumentException("handler is null.");
+    }
+
+    tokenizer.symbolTable = getSymbolTable();
+    tokenizer.numberPolicy = numberPolicy;
+    try {
+      if (strict && projection == null) {
+        tokenizer.readStrictValue(handler);
 
+        if (tokenizer.skipWhitespace() != -1) {
+          throw new SerializationException("Unexpected character in input stream.");
+        }
+      } else {
+        tokenizer.readValue(handler, projection);
+      }
+    } catch (SerializationException exception) {
+      System.err.println("An error occurred while processing input at line number " + tokenizer.getLineNumber()
+          + ", column " + tokenizer.getColumnNumber());
+
+      throw exception;
+    }
+  }
+
+  private void readValue(Reader reader, JsonHandler handler) throws IOException, SerializationException {
     skipWhitespaceAndComments(reader);
 
     if (c == -1) {
@@ -191,22 +922,21 @@ public class JsonSerializer implements Serializer<JtonElement> {
     }
 
     if (c == 'n') {
-      object = readNullValue(reader);
+      readNullValue(reader);
+      handler.nullValue();
     } else if (c == '"' || c == '\'') {
-      object = new JtonPrimitive((String) readStringValue(reader));
+      handler.value((String) readStringValue(reader));
     } else if (c == '+' || c == '-' || Character.isDigit(c)) {
-      object = new JtonPrimitive((Number) readNumberValue(reader));
+      handler.value((Number) readNumberValue(reader));
     } else if (c == 't' || c == 'f') {
-      object = new JtonPrimitive((Boolean) readBooleanValue(reader));
+      handler.value(((Boolean) readBooleanValue(reader)).booleanValue());
     } else if (c == '[') {
-      object = readListValue(reader);
+      readListValue(reader, handler);
     } else if (c == '{') {
-      object = readMapValue(reader);
+      readMapValue(reader, handler);
     } else {
       throw new SerializationException("Unexpected character in input stream.");
     }
-
-    return object;
   }
 
   private void skipWhitespaceAndComments(Reader reader) throws IOException, SerializationException {
@@ -249,7 +979,7 @@ public class JsonSerializer implements Serializer<JtonElement> {
     }
   }
 
-  private JtonNull readNullValue(Reader reader) throws IOException, SerializationException {
+  private void readNullValue(Reader reader) throws IOException, SerializationException {
     String nullString = "null";
 
     int n = nullString.length();
@@ -267,8 +997,6 @@ public class JsonSerializer implements Serializer<JtonElement> {
     if (i < n) {
       throw new SerializationException("Incomplete null value in input stream.");
     }
-
-    return JtonNull.INSTANCE;
   }
 
   private String readString(Reader reader) throws IOException, SerializationException {
@@ -339,7 +1067,11 @@ public class JsonSerializer implements Serializer<JtonElement> {
       c = reader.read();
     }
 
-    return new LazilyParsedNumber(stringBuilder.toString());
+    if (numberPolicy == NumberPolicy.LAZY) {
+      return new LazilyParsedNumber(stringBuilder.toString());
+    }
+
+    return NumberDecoder.decode(stringBuilder.toString(), numberPolicy);
   }
 
   private Object readBooleanValue(Reader reader) throws IOException, SerializationException {
@@ -366,18 +1098,15 @@ public class JsonSerializer implements Serializer<JtonElement> {
     // return BeanUtils.coerce(value, (Class<?>) typeArgument);
   }
 
-  private JtonArray readListValue(Reader reader) throws IOException, SerializationException {
-    JtonArray sequence = null;
-
-    // Return the default sequence and item types
-    sequence = new JtonArray();
+  private void readListValue(Reader reader, JsonHandler handler) throws IOException, SerializationException {
+    handler.startArray();
 
     // Move to the next character after '['
     c = reader.read();
     skipWhitespaceAndComments(reader);
 
     while (c != -1 && c != ']') {
-      sequence.add(readValue(reader));
+      readValue(reader, handler);
       skipWhitespaceAndComments(reader);
 
       if (c == ',') {
@@ -395,15 +1124,14 @@ public class JsonSerializer implements Serializer<JtonElement> {
     // Move to the next character after ']'
     c = reader.read();
 
-    return sequence;
+    handler.endArray();
   }
 
-  private JtonObject readMapValue(Reader reader) throws IOException, SerializationException {
-    JtonObject dictionary = null;
+  private void readMapValue(Reader reader, JsonHandler handler) throws IOException, SerializationException {
     Type valueType = null;
 
-    // Return the default dictionary and value types
-    dictionary = new JtonObject();
+    // Return the default value type
+    handler.startObject();
     valueType = Object.class;
 
     // Move to the next character after '{'
@@ -445,6 +1173,10 @@ public class JsonSerializer implements Serializer<JtonElement> {
         throw new SerializationException("\"" + key + "\" is not a valid key.");
       }
 
+      if (getSymbolTable() != null) {
+        key = symbolTable.intern(key);
+      }
+
       skipWhitespaceAndComments(reader);
 
       if (c != ':') {
@@ -468,7 +1200,8 @@ public class JsonSerializer implements Serializer<JtonElement> {
         // readValue(reader, Object.class);
         // }
       } else {
-        dictionary.add(key, readValue(reader));
+        handler.key(key);
+        readValue(reader, handler);
       }
 
       skipWhitespaceAndComments(reader);
@@ -490,7 +1223,7 @@ public class JsonSerializer implements Serializer<JtonElement> {
 
     // return (dictionary instanceof BeanAdapter) ?
     // ((BeanAdapter)dictionary).getBean() : dictionary;
-    return dictionary;
+    handler.endObject();
   }
 
   /**
@@ -509,9 +1242,93 @@ public class JsonSerializer implements Serializer<JtonElement> {
       throw new IllegalArgumentException("outputStream is null.");
     }
 
-    Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, charset), BUFFER_SIZE);
-    writeObject(object, writer);
-    writer.flush();
+    if (isUTF8()) {
+      Utf8JsonEmitter emitter = getUtf8Emitter();
+      emitter.reset(outputStream);
+
+      try {
+        emitter.writeElement(object, 0);
+        emitter.flush();
+      } finally {
+        emitter.release();
+      }
+    } else {
+      // The emitter buffers the text
+      Writer writer = new OutputStreamWriter(outputStream, charset);
+      writeObject(object, writer);
+    }
+  }
+
+  /**
+   * Writes data to a channel, such as a socket. The text is encoded to UTF-8
+   * without going through a {@link Writer}; other character sets are
+   * encoded by a writer over the channel.
+   *
+   * @param object
+   *
+   * @param channel
+   *          The blocking channel to which data will be written.
+   */
+  public void writeObject(JtonElement object, WritableByteChannel channel) throws IOException, SerializationException {
+    if (channel == null) {
+      throw new IllegalArgumentException("channel is null.");
+    }
+
+    if (isUTF8()) {
+      Utf8JsonEmitter emitter = getUtf8Emitter();
+      emitter.reset(channel);
+
+      try {
+        emitter.writeElement(object, 0);
+        emitter.flush();
+      } finally {
+        emitter.release();
+      }
+    } else {
+      writeObject(object, Channels.newOutputStream(channel));
+    }
+  }
+
+  /**
+   * Converts a object to JSON encoded in the character set of this
+   * serializer. UTF-8 is encoded straight into the returned array, without an
+   * intermediate string.
+   *
+   * @param object
+   *          The object to convert.
+   *
+   * @return The encoded JSON text.
+   */
+  public byte[] toByteArray(JtonElement object) throws SerializationException {
+    try {
+      if (!isUTF8()) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(BUFFER_SIZE);
+        writeObject(object, outputStream);
+        return outputStream.toByteArray();
+      }
+
+      Utf8JsonEmitter emitter = getUtf8Emitter();
+      emitter.reset();
+
+      try {
+        emitter.writeElement(object, 0);
+        return emitter.toByteArray();
+      } finally {
+        emitter.release();
+      }
+    } catch (IOException exception) {
+      throw new JtonIOException(exception);
+    }
+  }
+
+  private Utf8JsonEmitter getUtf8Emitter() {
+    Utf8JsonEmitter emitter = utf8Emitter;
+    if (emitter == null) {
+      emitter = utf8Emitter = new Utf8JsonEmitter();
+    }
+
+    emitter.setOptions(indentFactor, alwaysDelimitMapKeys, strictOutput, charset);
+    return emitter;
   }
 
   /**
@@ -533,252 +1350,24 @@ public class JsonSerializer implements Serializer<JtonElement> {
    *          The writer to which data will be written.
    */
   public void writeObject(JtonElement object, Writer writer) throws IOException, SerializationException {
-    writeObject(object, writer, 0);
-  }
-
-  private void writeObject(JtonElement object, Writer writer, int level) throws IOException, SerializationException {
     if (writer == null) {
       throw new IllegalArgumentException("writer is null.");
     }
 
-    if (object.isJtonNull()) {
-      writer.append("null");
-    } else if (object.isJtonPrimitive()) {
-      JtonPrimitive o = object.getAsJtonPrimitive();
-      if (o.isString()) {
-        String string = object.getAsString();
-        StringBuilder stringBuilder = new StringBuilder();
-
-        for (int i = 0, n = string.length(); i < n; i++) {
-          char ci = string.charAt(i);
-
-          switch (ci) {
-          case '\t': {
-            stringBuilder.append("\\t");
-            break;
-          }
-
-          case '\n': {
-            stringBuilder.append("\\n");
-            break;
-          }
-
-          case '\\':
-          case '\"':
-          // XXX case '\'':
-          {
-            stringBuilder.append("\\" + ci);
-            break;
-          }
-
-          default: {
-            if (charset.name().startsWith("UTF") || ci <= 0xFF) {
-              stringBuilder.append(ci);
-            } else {
-              stringBuilder.append("\\u");
-              stringBuilder.append(String.format("%04x", (short) ci));
-            }
-          }
-          }
-
-        }
-
-        writer.append("\"" + stringBuilder.toString() + "\"");
-
-      } else if (o.isNumber()) {
-        Number number = object.getAsNumber();
-
-        if (number instanceof Float) {
-          Float f = (Float) number;
-          if (f.isNaN() || f.isInfinite()) {
-            throw new SerializationException(number + " is not a valid value.");
-          }
-        } else if (number instanceof Double) {
-          Double d = (Double) number;
-          if (d.isNaN() || d.isInfinite()) {
-            throw new SerializationException(number + " is not a valid value.");
-          }
-        }
-
-        writer.append(number.toString());
-      } else if (o.isBoolean()) {
-        writer.append(String.valueOf(object.getAsBoolean()));
-      } else if (o.isDate()) {
-        writer.append("\"" + object.getAsString() + "\"");
-      } else if (o.isSqlDate()) {
-        writer.append("\"" + object.getAsString() + "\"");
-      } else if (o.isSqlTime()) {
-        writer.append("\"" + object.getAsString() + "\"");
-      } else if (o.isSqlTimestamp()) {
-        writer.append("\"" + object.getAsString() + "\"");
-      }
-
-    } else if (object.isJtonArray()) {
-      JtonArray list = object.getAsJtonArray();
-      writer.append("[");
-
-      if (indentFactor > 0) {
-        final String childPadding = padding((level + 1) * indentFactor);
-
-        int i = 0;
-        for (JtonElement item : list) {
-          if (i > 0) {
-            writer.append(',');
-          }
-
-          writer.append('\n');
-          writer.append(childPadding);
-
-          writeObject(item, writer, level + 1);
-          i++;
-        }
-
-        if (list.size() > 0) {
-          writer.append('\n');
-          writer.append(padding(level * indentFactor));
-        }
-
-        writer.append("]");
-
-      } else {
-        int i = 0;
-        for (JtonElement item : list) {
-          if (i > 0) {
-            writer.append(", ");
-          }
-
-          writeObject(item, writer, level++);
-          i++;
-        }
-
-        writer.append("]");
-      }
-
-    } else {
-
-      JtonObject map = object.getAsJtonObject();
-      writer.append("{");
-
-      if (indentFactor > 0) {
-        final String childPadding = padding((level + 1) * indentFactor);
-
-        int i = 0;
-        for (String key : map.keySet()) {
-          JtonElement value = map.get(key);
-          if (value.isTransient()) {
-            continue;
-          }
-
-          boolean identifier = true;
-          StringBuilder keyStringBuilder = new StringBuilder();
-
-          for (int j = 0, n = key.length(); j < n; j++) {
-            char cj = key.charAt(j);
-            identifier &= Character.isJavaIdentifierPart(cj);
-
-            if (cj == '"') {
-              keyStringBuilder.append('\\');
-            }
-
-            keyStringBuilder.append(cj);
-          }
-
-          key = keyStringBuilder.toString();
-
-          if (i > 0) {
-            writer.append(", ");
-          }
-
-          writer.append('\n');
-          writer.append(childPadding);
-
-          // Write the key
-          if (!identifier || alwaysDelimitMapKeys) {
-            writer.append('"');
-          }
-
-          writer.append(key);
-
-          if (!identifier || alwaysDelimitMapKeys) {
-            writer.append('"');
-          }
-
-          writer.append(": ");
-
-          // Write the value
-          writeObject(value, writer, level + 1);
-
-          i++;
-        }
-
-        if (map.size() > 0) {
-          writer.append('\n');
-          writer.append(padding(level * indentFactor));
-        }
-
-        writer.append("}");
-
-      } else {
-
-        int i = 0;
-        for (String key : map.keySet()) {
-          JtonElement value = map.get(key);
-          if (value.isTransient()) {
-            continue;
-          }
-
-          boolean identifier = true;
-          StringBuilder keyStringBuilder = new StringBuilder();
-
-          for (int j = 0, n = key.length(); j < n; j++) {
-            char cj = key.charAt(j);
-            identifier &= Character.isJavaIdentifierPart(cj);
-
-            if (cj == '"') {
-              keyStringBuilder.append('\\');
-            }
-
-            keyStringBuilder.append(cj);
-          }
-
-          key = keyStringBuilder.toString();
-
-          if (i > 0) {
-            writer.append(", ");
-          }
-
-          // Write the key
-          if (!identifier || alwaysDelimitMapKeys) {
-            writer.append('"');
-          }
-
-          writer.append(key);
-
-          if (!identifier || alwaysDelimitMapKeys) {
-            writer.append('"');
-          }
-
-          writer.append(": ");
-
-          // Write the value
-          writeObject(value, writer, level++);
-
-          i++;
-        }
-
-        writer.append("}");
-      }
+    CharJsonEmitter emitter = charEmitter;
+    if (emitter == null) {
+      emitter = charEmitter = new CharJsonEmitter();
     }
 
-    writer.flush();
-  }
+    emitter.setOptions(indentFactor, alwaysDelimitMapKeys, strictOutput, charset);
+    emitter.reset(writer);
 
-  private String padding(int padding) {
-    StringBuilder sb = new StringBuilder();
-    for (int i = 0; i < padding; i++) {
-      sb.append(' ');
+    try {
+      emitter.writeElement(object, 0);
+      emitter.flush();
+    } finally {
+      emitter.release();
     }
-    return sb.toString();
   }
 
   @Override
@@ -789,6 +1378,9 @@ public class JsonSerializer implements Serializer<JtonElement> {
   //
   // Static helpers
   //
+  // The helpers borrow their serializers from JsonSerializerPool.getDefault()
+  // instead of creating one per call.
+  //
 
   /**
    * Converts a JSON value to a Java object.
@@ -799,33 +1391,53 @@ public class JsonSerializer implements Serializer<JtonElement> {
    * @return The parsed object.
    */
   public static JtonElement parse(String json) throws SerializationException {
-    JsonSerializer jsonSerializer = new JsonSerializer();
+    return JsonSerializerPool.getDefault().parse(json);
+  }
 
-    try {
-      return jsonSerializer.readObject(new StringReader(json));
-    } catch (IOException exception) {
-      throw new JtonIOException(exception);
-    }
+  public static JtonElement parse(byte[] json) throws SerializationException {
+    return JsonSerializerPool.getDefault().parse(json);
   }
 
-  public static JtonElement parse(InputStream json) throws SerializationException {
-    JsonSerializer jsonSerializer = new JsonSerializer();
+  /**
+   * Parses a UTF-8 encoded JSON document into elements that are decoded on
+   * demand.
+   *
+   * @see #readLazy(byte[], int, int)
+   */
+  public static JtonElement parseLazy(byte[] json) throws SerializationException {
+    return JsonSerializerPool.getDefault().parseLazy(json);
+  }
 
-    try {
-      return jsonSerializer.readObject(json);
-    } catch (IOException exception) {
-      throw new JtonIOException(exception);
+  /**
+   * Parses the given branches of a UTF-8 encoded JSON document.
+   *
+   * @param json
+   *          The JSON document.
+   * @param paths
+   *          The paths of the values to read, in the syntax of
+   *          {@link JTON#parse(String)}.
+   *
+   * @see #readProjected(byte[], int, int, Collection)
+   */
+  public static JtonElement parseProjected(byte[] json, String... paths) throws SerializationException {
+    List<List<String>> projection = new ArrayList<>(paths.length);
+    for (String path : paths) {
+      projection.add(JTON.parse(path));
     }
+
+    return JsonSerializerPool.getDefault().parseProjected(json, projection);
   }
 
-  public static JtonElement parse(Reader json) throws SerializationException {
-    JsonSerializer jsonSerializer = new JsonSerializer();
+  public static JtonElement parse(Path json) throws SerializationException {
+    return JsonSerializerPool.getDefault().parse(json);
+  }
 
-    try {
-      return jsonSerializer.readObject(json);
-    } catch (IOException exception) {
-      throw new JtonIOException(exception);
-    }
+  public static JtonElement parse(InputStream json) throws SerializationException {
+    return JsonSerializerPool.getDefault().parse(json);
+  }
+
+  public static JtonElement parse(Reader json) throws SerializationException {
+    return JsonSerializerPool.getDefault().parse(json);
   }
 
   /**
@@ -841,18 +1453,7 @@ public class JsonSerializer implements Serializer<JtonElement> {
    * @return The resulting JSON string.
    */
   public static String toString(JtonElement value, boolean alwaysDelimitMapKeys) throws SerializationException {
-    JsonSerializer jsonSerializer = new JsonSerializer();
-    jsonSerializer.setAlwaysDelimitMapKeys(alwaysDelimitMapKeys);
-
-    StringWriter writer = new StringWriter();
-
-    try {
-      jsonSerializer.writeObject(value, writer);
-    } catch (IOException exception) {
-      throw new JtonIOException(exception);
-    }
-
-    return writer.toString();
+    return JsonSerializerPool.getDefault().toString(value, alwaysDelimitMapKeys, 0);
   }
 
   /**
@@ -869,18 +1470,6 @@ public class JsonSerializer implements Serializer<JtonElement> {
    * @throws SerializationException
    */
   public static String toString(JtonElement value, boolean alwaysDelimitMapKeys, int intentFactor) throws SerializationException {
-    JsonSerializer jsonSerializer = new JsonSerializer();
-    jsonSerializer.setAlwaysDelimitMapKeys(alwaysDelimitMapKeys);
-    jsonSerializer.setIntentFactor(intentFactor);
-
-    StringWriter writer = new StringWriter();
-
-    try {
-      jsonSerializer.writeObject(value, writer);
-    } catch (IOException exception) {
-      throw new JtonIOException(exception);
-    }
-
-    return writer.toString();
+    return JsonSerializerPool.getDefault().toString(value, alwaysDelimitMapKeys, intentFactor);
   }
 }
\ No newline at end of file
@@ -0,0 +1,419 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.veracloud.jton.serialization;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+import com.veracloud.jton.JtonElement;
+import com.veracloud.jton.JtonIOException;
+
+/**
+ * Thread-safe facade that reads and writes JSON with pooled
+ * {@link JsonSerializer} instances.
+ * <p>
+ * Each call borrows a context from the pool: a serializer, whose tokenizers,
+ * emitters, buffers and symbol table are reused from call to call, and the
+ * string buffer used for writing strings. Contexts are kept in a small array of slots that
+ * threads claim and return with a single compare-and-set, starting at a slot
+ * derived from the thread id, so threads rarely touch the same slot. When no
+ * context is available a new one is created, and contexts returned to a full
+ * pool are dropped. Unlike thread-local caching, the number of retained
+ * contexts is bounded by the capacity of the pool however many threads use
+ * it.
+ */
+public final class JsonSerializerPool {
+  /** Number of slots tried when a context is borrowed or returned. */
+  private static final int PROBES = 2;
+
+  /** Size above which output buffers are not kept for reuse. */
+  private static final int MAX_RETAINED_SIZE = 64 * 1024;
+
+  private static final JsonSerializerPool DEFAULT = new JsonSerializerPool();
+
+  private final Supplier<? extends JsonSerializer> factory;
+  private final AtomicReferenceArray<Context> slots;
+  private final int mask;
+
+  /**
+   * Creates a pool of UTF-8 serializers using the buffered tokenizer.
+   */
+  public JsonSerializerPool() {
+    this(JsonSerializerPool::newSerializer);
+  }
+
+  /**
+   * @param factory
+   *          Creates the serializers of the pool; they must not be configured
+   *          any further once created.
+   */
+  public JsonSerializerPool(Supplier<? extends JsonSerializer> factory) {
+    this(factory, 4 * Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * @param factory
+   *          Creates the serializers of the pool; they must not be configured
+   *          any further once created.
+   * @param capacity
+   *          The maximum number of idle serializers kept; it is rounded up to
+   *          a power of two.
+   */
+  public JsonSerializerPool(Supplier<? extends JsonSerializer> factory, int capacity) {
+    if (factory == null) {
+      throw new IllegalArgumentException("factory is null.");
+    }
+
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be positive.");
+    }
+
+    int size = Integer.highestOneBit(Math.min(capacity, 1 << 16) * 2 - 1);
+
+    this.factory = factory;
+    this.slots = new AtomicReferenceArray<>(size);
+    this.mask = size - 1;
+  }
+
+  /**
+   * Returns the pool used by the static helpers of {@link JsonSerializer}.
+   */
+  public static JsonSerializerPool getDefault() {
+    return DEFAULT;
+  }
+
+  private static JsonSerializer newSerializer() {
+    JsonSerializer jsonSerializer = new JsonSerializer();
+    jsonSerializer.setBufferedTokenizer(true);
+    return jsonSerializer;
+  }
+
+  /**
+   * Converts a JSON value to a Java object.
+   */
+  public JtonElement parse(String json) throws SerializationException {
+    if (json == null) {
+      throw new IllegalArgumentException("json is null.");
+    }
+
+    return parse(new StringReader(json));
+  }
+
+  public JtonElement parse(byte[] json) throws SerializationException {
+    if (json == null) {
+      throw new IllegalArgumentException("json is null.");
+    }
+
+    return parse(json, 0, json.length);
+  }
+
+  public JtonElement parse(byte[] json, int offset, int length) throws SerializationException {
+    Context context = acquire();
+
+    try {
+      return context.serializer.readObject(json, offset, length);
+    } catch (IOException exception) {
+      throw new JtonIOException(exception);
+    } finally {
+      release(context);
+    }
+  }
+
+  /**
+   * Reads a JSON file.
+   *
+   * @see JsonSerializer#readObject(Path)
+   */
+  public JtonElement parse(Path json) throws SerializationException {
+    Context context = acquire();
+
+    try {
+      return context.serializer.readObject(json);
+    } catch (IOException exception) {
+      throw new JtonIOException(exception);
+    } finally {
+      release(context);
+    }
+  }
+
+  /**
+   * Parses a JSON document into elements that are decoded on demand; they do
+   * not use the pooled serializer once returned.
+   *
+   * @see JsonSerializer#readLazy(byte[])
+   */
+  public JtonElement parseLazy(byte[] json) throws SerializationException {
+    Context context = acquire();
+
+    try {
+      return context.serializer.readLazy(json);
+    } catch (IOException exception) {
+      throw new JtonIOException(exception);
+    } finally {
+      release(context);
+    }
+  }
+
+  /**
+   * Parses the given branches of a JSON document.
+   *
+   * @see JsonSerializer#readProjected(byte[], Collection)
+   */
+  public JtonElement parseProjected(byte[] json, Collection<? extends List<String>> paths)
+      throws SerializationException {
+    Context context = acquire();
+
+    try {
+      return context.serializer.readProjected(json, paths);
+    } catch (IOException exception) {
+      throw new JtonIOException(exception);
+    } finally {
+      release(context);
+    }
+  }
+
+  public JtonElement parse(InputStream json) throws SerializationException {
+    Context context = acquire();
+
+    try {
+      return context.serializer.readObject(json);
+    } catch (IOException exception) {
+      throw new JtonIOException(exception);
+    } finally {
+      release(context);
+    }
+  }
+
+  public JtonElement parse(Reader json) throws SerializationException {
+    Context context = acquire();
+
+    try {
+      return context.serializer.readObject(json);
+    } catch (IOException exception) {
+      throw new JtonIOException(exception);
+    } finally {
+      release(context);
+    }
+  }
+
+  /**
+   * Converts a object to a JSON string representation.
+   */
+  public String toString(JtonElement value) throws SerializationException {
+    Context context = acquire();
+
+    try {
+      return context.toString(value);
+    } catch (IOException exception) {
+      throw new JtonIOException(exception);
+    } finally {
+      release(context);
+    }
+  }
+
+  /**
+   * Converts a object to a JSON string representation, overriding the key
+   * delimiting and indentation settings of the pooled serializer.
+   */
+  String toString(JtonElement value, boolean alwaysDelimitMapKeys, int intentFactor) throws SerializationException {
+    Context context = acquire();
+    JsonSerializer jsonSerializer = context.serializer;
+
+    boolean previousAlwaysDelimitMapKeys = jsonSerializer.getAlwaysDelimitMapKeys();
+    int previousIntentFactor = jsonSerializer.getIntentFactor();
+    jsonSerializer.setAlwaysDelimitMapKeys(alwaysDelimitMapKeys);
+    jsonSerializer.setIntentFactor(intentFactor);
+
+    try {
+      return context.toString(value);
+    } catch (IOException exception) {
+      throw new JtonIOException(exception);
+    } finally {
+      jsonSerializer.setAlwaysDelimitMapKeys(previousAlwaysDelimitMapKeys);
+      jsonSerializer.setIntentFactor(previousIntentFactor);
+      release(context);
+    }
+  }
+
+  /**
+   * Converts a object to JSON encoded in the character set of the pooled
+   * serializers.
+   */
+  public byte[] toBytes(JtonElement value) throws SerializationException {
+    Context context = acquire();
+
+    try {
+      return context.serializer.toByteArray(value);
+    } finally {
+      release(context);
+    }
+  }
+
+  /**
+   * Writes a object to a JSON stream, encoded in the character set of the
+   * pooled serializers. The stream is flushed but not closed.
+   */
+  public void write(JtonElement value, OutputStream outputStream) throws IOException, SerializationException {
+    if (outputStream == null) {
+      throw new IllegalArgumentException("outputStream is null.");
+    }
+
+    Context context = acquire();
+
+    try {
+      context.serializer.writeObject(value, outputStream);
+    } finally {
+      release(context);
+    }
+  }
+
+  /**
+   * Writes a object to a JSON character stream. The stream is neither flushed
+   * nor closed.
+   */
+  public void write(JtonElement value, Writer writer) throws IOException, SerializationException {
+    Context context = acquire();
+
+    try {
+      context.serializer.writeObject(value, writer);
+    } finally {
+      release(context);
+    }
+  }
+
+  private int slot() {
+    long id = Thread.currentThread().getId();
+    return (int) ((id * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+  }
+
+  private Context acquire() {
+    int slot = slot();
+
+    for (int i = 0; i < PROBES; i++) {
+      int index = (slot + i) & mask;
+      Context context = slots.get(index);
+
+      if (context != null && slots.compareAndSet(index, context, null)) {
+        return context;
+      }
+    }
+
+    JsonSerializer jsonSerializer = factory.get();
+    if (jsonSerializer == null) {
+      throw new IllegalStateException("factory returned null.");
+    }
+
+    return new Context(jsonSerializer);
+  }
+
+  private void release(Context context) {
+    context.recycle();
+
+    int slot = slot();
+
+    for (int i = 0; i < PROBES; i++) {
+      int index = (slot + i) & mask;
+
+      if (slots.get(index) == null && slots.compareAndSet(index, null, context)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * A pooled serializer with its string buffer.
+   */
+  private static final class Context {
+    final JsonSerializer serializer;
+
+    private final StringBuilderWriter writer = new StringBuilderWriter();
+
+    Context(JsonSerializer serializer) {
+      this.serializer = serializer;
+    }
+
+    String toString(JtonElement value) throws IOException, SerializationException {
+      serializer.writeObject(value, writer);
+      return writer.builder.toString();
+    }
+
+    /**
+     * Prepares this context for the next call, dropping the string buffer if
+     * it has grown too large to be kept.
+     */
+    void recycle() {
+      if (writer.builder.capacity() > MAX_RETAINED_SIZE) {
+        writer.builder = new StringBuilder();
+      } else {
+        writer.builder.setLength(0);
+      }
+    }
+  }
+
+  /**
+   * Unsynchronized writer that appends to a string builder.
+   */
+  private static final class StringBuilderWriter extends Writer {
+    StringBuilder builder = new StringBuilder();
+
+    @Override
+    public void write(int c) {
+      builder.append((char) c);
+    }
+
+    @Override
+    public void write(char[] buffer, int offset, int length) {
+      builder.append(buffer, offset, length);
+    }
+
+    @Override
+    public void write(String string) {
+      builder.append(string);
+    }
+
+    @Override
+    public void write(String string, int offset, int length) {
+      builder.append(string, offset, offset + length);
+    }
+
+    @Override
+    public Writer append(CharSequence sequence) {
+      builder.append(sequence);
+      return this;
+    }
+
+    @Override
+    public Writer append(char c) {
+      builder.append(c);
+      return this;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
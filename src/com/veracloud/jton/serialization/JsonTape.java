@@ -0,0 +1,551 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.veracloud.jton.serialization;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+
+import com.veracloud.jton.JtonArray;
+import com.veracloud.jton.JtonElement;
+import com.veracloud.jton.JtonNull;
+import com.veracloud.jton.JtonObject;
+import com.veracloud.jton.JtonParseException;
+import com.veracloud.jton.JtonPrimitive;
+import com.veracloud.jton.internal.LinkedArrayMap;
+
+/**
+ * Structural index of a UTF-8 encoded JSON document held in a byte array.
+ * <p>
+ * The document is scanned once, recording the kind and source offset of every
+ * value and key on an {@code int[]} tape; arrays and objects also record the
+ * end of their contents on the tape and the number of their elements (or
+ * members), so they can be skipped without being walked. The elements returned
+ * by {@link #getRoot()} are views on the tape: strings and numbers are decoded
+ * from the source when they are first accessed, and arrays and objects only
+ * create elements for the members that are actually read.
+ */
+final class JsonTape {
+  private static final int ARRAY = 1;
+  private static final int OBJECT = 2;
+  private static final int STRING = 3;
+  private static final int NUMBER = 4;
+  private static final int TRUE = 5;
+  private static final int FALSE = 6;
+  private static final int NULL = 7;
+  private static final int KEY = 8;
+
+  /** Number of ints of a value or key entry: kind and source offset. */
+  private static final int ENTRY = 2;
+
+  /** Number of ints of an array or object entry: also end and count. */
+  private static final int CONTAINER_ENTRY = 4;
+
+  private final byte[] bytes;
+  private final int limit;
+
+  private int[] tape;
+  private int size = 0;
+
+  /** Shape of the maps of the objects, which share the keys of alike objects. */
+  private final LinkedArrayMap.Shape shape = new LinkedArrayMap.Shape();
+
+  /** Scans the document and, afterwards, decodes values on demand. */
+  private final Utf8JsonTokenizer tokenizer = new Utf8JsonTokenizer();
+
+  JsonTape(byte[] bytes, int offset, int length, SymbolTable symbolTable, NumberPolicy numberPolicy) {
+    this.bytes = bytes;
+    this.limit = offset + length;
+    this.tape = new int[Math.min(Math.max(length >> 1, 64), 1 << 20)];
+    tokenizer.reset(bytes, offset, length);
+    tokenizer.symbolTable = symbolTable;
+    tokenizer.numberPolicy = numberPolicy;
+  }
+
+  /**
+   * Scans the root value; the tokenizer is positioned on the first character
+   * after it.
+   */
+  void index() throws IOException, SerializationException {
+    indexValue();
+  }
+
+  int getLineNumber() {
+    return tokenizer.getLineNumber();
+  }
+
+  int getColumnNumber() {
+    return tokenizer.getColumnNumber();
+  }
+
+  /**
+   * Returns the element for the root value.
+   */
+  JtonElement getRoot() {
+    return element(0);
+  }
+
+  private int append(int kind, int offset, int length) {
+    if (size + length > tape.length) {
+      tape = Arrays.copyOf(tape, tape.length << 1);
+    }
+
+    int entry = size;
+    tape[entry] = kind;
+    tape[entry + 1] = offset;
+    size += length;
+
+    return entry;
+  }
+
+  private void indexValue() throws IOException, SerializationException {
+    int c = tokenizer.skipWhitespaceAndComments();
+
+    if (c == -1) {
+      throw new SerializationException("Unexpected end of input stream.");
+    }
+
+    int offset = tokenizer.position();
+
+    if (c == 'n') {
+      tokenizer.readLiteral("null", "Incomplete null value in input stream.");
+      append(NULL, offset, ENTRY);
+    } else if (c == '"' || c == '\'') {
+      tokenizer.skipString();
+      append(STRING, offset, ENTRY);
+    } else if (c == '+' || c == '-' || JsonTokenizer.isDigit(c)) {
+      if (tokenizer.numberPolicy == NumberPolicy.LAZY) {
+        tokenizer.skipNumber();
+      } else {
+        // Report invalid numbers now rather than when they are accessed
+        tokenizer.readNumber();
+      }
+      append(NUMBER, offset, ENTRY);
+    } else if (c == 't') {
+      tokenizer.readLiteral("true", "Incomplete boolean value in input stream.");
+      append(TRUE, offset, ENTRY);
+    } else if (c == 'f') {
+      tokenizer.readLiteral("false", "Incomplete boolean value in input stream.");
+      append(FALSE, offset, ENTRY);
+    } else if (c == '[') {
+      indexListValue(append(ARRAY, offset, CONTAINER_ENTRY));
+    } else if (c == '{') {
+      indexMapValue(append(OBJECT, offset, CONTAINER_ENTRY));
+    } else {
+      throw new SerializationException("Unexpected character in input stream.");
+    }
+  }
+
+  private void indexListValue(int entry) throws IOException, SerializationException {
+    int count = 0;
+
+    // Move to the next character after '['
+    tokenizer.consume();
+    int c = tokenizer.skipWhitespaceAndComments();
+
+    while (c != -1 && c != ']') {
+      indexValue();
+      count++;
+      c = tokenizer.skipWhitespaceAndComments();
+
+      if (c == ',') {
+        tokenizer.consume();
+        c = tokenizer.skipWhitespaceAndComments();
+      } else if (c == -1) {
+        throw new SerializationException("Unexpected end of input stream.");
+      } else if (c != ']') {
+        throw new SerializationException("Unexpected character in input stream.");
+      }
+    }
+
+    // Move to the next character after ']'
+    if (c != -1) {
+      tokenizer.consume();
+    }
+
+    tape[entry + 2] = size;
+    tape[entry + 3] = count;
+  }
+
+  private void indexMapValue(int entry) throws IOException, SerializationException {
+    int count = 0;
+
+    // Move to the next character after '{'
+    tokenizer.consume();
+    int c = tokenizer.skipWhitespaceAndComments();
+
+    while (c != -1 && c != '}') {
+      int offset = tokenizer.position();
+
+      if (c == '"' || c == '\'') {
+        if (!tokenizer.skipString()) {
+          throw new SerializationException("\"\" is not a valid key.");
+        }
+      } else {
+        tokenizer.skipIdentifier();
+      }
+
+      append(KEY, offset, ENTRY);
+
+      if (tokenizer.skipWhitespaceAndComments() != ':') {
+        throw new SerializationException("Unexpected character in input stream.");
+      }
+
+      // Move to the first character after ':'
+      tokenizer.consume();
+
+      indexValue();
+      count++;
+      c = tokenizer.skipWhitespaceAndComments();
+
+      if (c == ',') {
+        tokenizer.consume();
+        c = tokenizer.skipWhitespaceAndComments();
+      } else if (c == -1) {
+        throw new SerializationException("Unexpected end of input stream.");
+      } else if (c != '}') {
+        throw new SerializationException("Unexpected character in input stream.");
+      }
+    }
+
+    // Move to the first character after '}'
+    if (c != -1) {
+      tokenizer.consume();
+    }
+
+    tape[entry + 2] = size;
+    tape[entry + 3] = count;
+  }
+
+  // ---
+
+  /**
+   * Creates the element for the value at the given tape entry.
+   */
+  JtonElement element(int entry) {
+    switch (tape[entry]) {
+    case ARRAY:
+      return new JtonArray(new TapeList(this, entry));
+    case OBJECT:
+      return JtonObject.wrap(new TapeMap(this, entry));
+    case STRING:
+      return JtonPrimitive.valueOf(decodeString(entry));
+    case NUMBER:
+      return JtonPrimitive.valueOf(decodeNumber(entry));
+    case TRUE:
+      return JtonPrimitive.valueOf(true);
+    case FALSE:
+      return JtonPrimitive.valueOf(false);
+    default:
+      return JtonNull.INSTANCE;
+    }
+  }
+
+  private synchronized String decodeString(int entry) {
+    int offset = tape[entry + 1];
+    tokenizer.reset(bytes, offset, limit - offset);
+    try {
+      return tokenizer.readString();
+    } catch (IOException | SerializationException exception) {
+      throw new JtonParseException(exception);
+    }
+  }
+
+  private synchronized Number decodeNumber(int entry) {
+    int offset = tape[entry + 1];
+    tokenizer.reset(bytes, offset, limit - offset);
+    try {
+      return tokenizer.readNumber();
+    } catch (IOException | SerializationException exception) {
+      throw new JtonParseException(exception);
+    }
+  }
+
+  private synchronized String decodeKey(int entry) {
+    int offset = tape[entry + 1];
+    tokenizer.reset(bytes, offset, limit - offset);
+    try {
+      return tokenizer.readKey(bytes[offset]);
+    } catch (IOException | SerializationException exception) {
+      throw new JtonParseException(exception);
+    }
+  }
+
+  /**
+   * Compares the key at the given tape entry with a string, in place if the
+   * key consists of plain ASCII characters.
+   */
+  private boolean keyEquals(int entry, String key) {
+    int i = tape[entry + 1];
+    byte t = bytes[i];
+    boolean delimited = (t == '"' || t == '\'');
+    if (delimited) {
+      i++;
+    }
+
+    for (int j = 0, n = key.length();; i++, j++) {
+      byte b = bytes[i];
+      if (delimited ? b == t : (b == ':' || (b >= 0 && JsonTokenizer.isWhitespace(b)))) {
+        return j == n;
+      }
+
+      if (b < 0x20 || b == 0x7F || b == '\\') {
+        // Escape sequences, control and non-ASCII characters
+        return decodeKey(entry).equals(key);
+      }
+
+      if (j == n || key.charAt(j) != b) {
+        return false;
+      }
+    }
+  }
+
+  private boolean isNull(int entry) {
+    return tape[entry] == NULL;
+  }
+
+  private int first(int entry) {
+    return entry + CONTAINER_ENTRY;
+  }
+
+  private int next(int entry) {
+    int kind = tape[entry];
+    return (kind == ARRAY || kind == OBJECT) ? tape[entry + 2] : entry + ENTRY;
+  }
+
+  private int count(int entry) {
+    return tape[entry + 3];
+  }
+
+  // ---
+
+  /**
+   * Elements of an array on the tape. The list is copied into an
+   * {@link ArrayList} when it is first modified.
+   */
+  private static final class TapeList extends AbstractList<JtonElement> implements RandomAccess {
+    private final JsonTape tape;
+    private final int entry;
+
+    private int[] entries = null;
+    private JtonElement[] elements = null;
+
+    private List<JtonElement> list = null;
+
+    TapeList(JsonTape tape, int entry) {
+      this.tape = tape;
+      this.entry = entry;
+    }
+
+    private void index() {
+      int n = tape.count(entry);
+      int[] entries = new int[n];
+      for (int i = 0, e = tape.first(entry); i < n; i++, e = tape.next(e)) {
+        entries[i] = e;
+      }
+      this.elements = new JtonElement[n];
+      this.entries = entries;
+    }
+
+    private List<JtonElement> list() {
+      if (list == null) {
+        int n = size();
+        List<JtonElement> list = new ArrayList<JtonElement>(Math.max(n, 10));
+        for (int i = 0; i < n; i++) {
+          list.add(get(i));
+        }
+        this.list = list;
+      }
+      return list;
+    }
+
+    @Override
+    public JtonElement get(int index) {
+      if (list != null) {
+        return list.get(index);
+      }
+
+      if (index < 0 || index >= tape.count(entry)) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + tape.count(entry));
+      }
+
+      if (entries == null) {
+        index();
+      }
+
+      JtonElement element = elements[index];
+      if (element == null) {
+        element = tape.element(entries[index]);
+        elements[index] = element;
+      }
+      return element;
+    }
+
+    @Override
+    public int size() {
+      return (list != null) ? list.size() : tape.count(entry);
+    }
+
+    @Override
+    public JtonElement set(int index, JtonElement element) {
+      return list().set(index, element);
+    }
+
+    @Override
+    public void add(int index, JtonElement element) {
+      list().add(index, element);
+      modCount++;
+    }
+
+    @Override
+    public JtonElement remove(int index) {
+      JtonElement element = list().remove(index);
+      modCount++;
+      return element;
+    }
+
+    @Override
+    public void clear() {
+      list = new ArrayList<JtonElement>();
+      modCount++;
+    }
+  }
+
+  /**
+   * Members of an object on the tape. Lookups compare the keys on the tape in
+   * place; the members are copied into a {@link LinkedArrayMap} when the map is
+   * iterated or modified.
+   * <p>
+   * As in a parsed {@link JtonObject}, members with a {@code null} value are
+   * omitted and a repeated key replaces the value of the earlier member.
+   */
+  private static final class TapeMap extends AbstractMap<String, JtonElement> {
+    private final JsonTape tape;
+    private final int entry;
+
+    private JtonElement[] values = null;
+
+    private Map<String, JtonElement> map = null;
+
+    TapeMap(JsonTape tape, int entry) {
+      this.tape = tape;
+      this.entry = entry;
+    }
+
+    private JtonElement value(int index, int valueEntry) {
+      if (values == null) {
+        values = new JtonElement[tape.count(entry)];
+      }
+
+      JtonElement value = values[index];
+      if (value == null) {
+        value = tape.element(valueEntry);
+        values[index] = value;
+      }
+      return value;
+    }
+
+    private Map<String, JtonElement> map() {
+      if (map == null) {
+        Map<String, JtonElement> map = new LinkedArrayMap<String, JtonElement>(tape.shape, tape.count(entry));
+        int n = tape.count(entry);
+        for (int i = 0, e = tape.first(entry); i < n; i++) {
+          int valueEntry = e + ENTRY;
+          if (!tape.isNull(valueEntry)) {
+            map.put(tape.decodeKey(e), value(i, valueEntry));
+          }
+          e = tape.next(valueEntry);
+        }
+        this.map = map;
+      }
+      return map;
+    }
+
+    /**
+     * Returns the value of the last non-null member with the given key, or
+     * {@code null}.
+     */
+    private JtonElement find(String key) {
+      int index = -1;
+      int valueEntry = -1;
+
+      int n = tape.count(entry);
+      for (int i = 0, e = tape.first(entry); i < n; i++) {
+        int v = e + ENTRY;
+        if (!tape.isNull(v) && tape.keyEquals(e, key)) {
+          index = i;
+          valueEntry = v;
+        }
+        e = tape.next(v);
+      }
+
+      return (index == -1) ? null : value(index, valueEntry);
+    }
+
+    @Override
+    public JtonElement get(Object key) {
+      if (map != null) {
+        return map.get(key);
+      }
+      return (key instanceof String) ? find((String) key) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+      return map().size();
+    }
+
+    @Override
+    public JtonElement put(String key, JtonElement value) {
+      return map().put(key, value);
+    }
+
+    @Override
+    public JtonElement remove(Object key) {
+      return map().remove(key);
+    }
+
+    @Override
+    public void clear() {
+      map().clear();
+    }
+
+    @Override
+    public Set<String> keySet() {
+      return map().keySet();
+    }
+
+    @Override
+    public Collection<JtonElement> values() {
+      return map().values();
+    }
+
+    @Override
+    public Set<Map.Entry<String, JtonElement>> entrySet() {
+      return map().entrySet();
+    }
+  }
+}
@@ -0,0 +1,643 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.veracloud.jton.serialization;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import com.veracloud.jton.JtonElement;
+
+/**
+ * Base class of the block buffered JSON tokenizers used by
+ * {@link JsonSerializer}.
+ * <p>
+ * This class implements the (lenient) grammar accepted by
+ * {@link JsonSerializer}; subclasses scan a specific kind of input buffer and
+ * only have to provide the token level primitives. Line and column numbers
+ * are not tracked while scanning, they are computed on demand when an error is
+ * reported.
+ */
+abstract class JsonTokenizer {
+  /** Size of the blocks read from the underlying input. */
+  static final int BLOCK_SIZE = 8192;
+
+  private static final boolean[] WHITESPACE = new boolean[128];
+  private static final boolean[] IDENTIFIER_START = new boolean[128];
+  private static final boolean[] IDENTIFIER_PART = new boolean[128];
+
+  /** Whitespace of standard JSON, indexed by unsigned byte value. */
+  private static final boolean[] JSON_WHITESPACE = new boolean[256];
+
+  /** Characters denoted by the escape sequences of standard JSON, or 0. */
+  private static final char[] ESCAPES = new char[128];
+
+  /** Values of the hexadecimal digits, or -1. */
+  private static final byte[] HEX_DIGITS = new byte[128];
+
+  /**
+   * Transitions of the recognizer of standard JSON numbers, indexed by
+   * {@code state * 8 + class}; -1 ends the number.
+   */
+  private static final byte[] NUMBER_STATES = {
+      // other, 0, 1-9, '.', e/E, '+', '-', (unused)
+      -1, 2, 3, -1, -1, -1, 1, -1, // start
+      -1, 2, 3, -1, -1, -1, -1, -1, // after '-'
+      -1, -1, -1, 4, 6, -1, -1, -1, // after leading 0
+      -1, 3, 3, 4, 6, -1, -1, -1, // integer digits
+      -1, 5, 5, -1, -1, -1, -1, -1, // after '.'
+      -1, 5, 5, -1, 6, -1, -1, -1, // fraction digits
+      -1, 8, 8, -1, -1, 7, 7, -1, // after exponent mark
+      -1, 8, 8, -1, -1, -1, -1, -1, // after exponent sign
+      -1, 8, 8, -1, -1, -1, -1, -1 // exponent digits
+  };
+
+  private static final byte[] NUMBER_CLASSES = new byte[128];
+
+  static {
+    for (int i = 0; i < 128; i++) {
+      WHITESPACE[i] = Character.isWhitespace(i);
+      IDENTIFIER_START[i] = Character.isJavaIdentifierStart(i);
+      IDENTIFIER_PART[i] = Character.isJavaIdentifierPart(i);
+    }
+
+    JSON_WHITESPACE[' '] = true;
+    JSON_WHITESPACE['\n'] = true;
+    JSON_WHITESPACE['\r'] = true;
+    JSON_WHITESPACE['\t'] = true;
+
+    ESCAPES['"'] = '"';
+    ESCAPES['\\'] = '\\';
+    ESCAPES['/'] = '/';
+    ESCAPES['b'] = '\b';
+    ESCAPES['f'] = '\f';
+    ESCAPES['n'] = '\n';
+    ESCAPES['r'] = '\r';
+    ESCAPES['t'] = '\t';
+
+    Arrays.fill(HEX_DIGITS, (byte) -1);
+    for (int i = 0; i < 10; i++) {
+      HEX_DIGITS['0' + i] = (byte) i;
+    }
+    for (int i = 0; i < 6; i++) {
+      HEX_DIGITS['a' + i] = (byte) (10 + i);
+      HEX_DIGITS['A' + i] = (byte) (10 + i);
+    }
+
+    NUMBER_CLASSES['0'] = 1;
+    for (int i = '1'; i <= '9'; i++) {
+      NUMBER_CLASSES[i] = 2;
+    }
+    NUMBER_CLASSES['.'] = 3;
+    NUMBER_CLASSES['e'] = 4;
+    NUMBER_CLASSES['E'] = 4;
+    NUMBER_CLASSES['+'] = 5;
+    NUMBER_CLASSES['-'] = 6;
+  }
+
+  static boolean isWhitespace(int c) {
+    return (c < 128) ? (c >= 0 && WHITESPACE[c]) : Character.isWhitespace(c);
+  }
+
+  static boolean isIdentifierStart(int c) {
+    return (c < 128) ? (c >= 0 && IDENTIFIER_START[c]) : Character.isJavaIdentifierStart(c);
+  }
+
+  static boolean isIdentifierPart(int c) {
+    return (c < 128) ? (c >= 0 && IDENTIFIER_PART[c]) : Character.isJavaIdentifierPart(c);
+  }
+
+  static boolean isDigit(int c) {
+    return (c < 128) ? (c >= '0' && c <= '9') : Character.isDigit(c);
+  }
+
+  static boolean isNumberPart(int c) {
+    return isDigit(c) || c == '.' || c == 'e' || c == 'E' || c == '-';
+  }
+
+  /**
+   * Returns whether {@code c} is whitespace in standard JSON.
+   */
+  static boolean isJsonWhitespace(int c) {
+    return c >= 0 && c < 256 && JSON_WHITESPACE[c];
+  }
+
+  /**
+   * Returns whether the byte {@code b} is whitespace in standard JSON.
+   */
+  static boolean isJsonWhitespace(byte b) {
+    return JSON_WHITESPACE[b & 0xFF];
+  }
+
+  /**
+   * Returns the character denoted by the escape sequence <tt>\c</tt> of
+   * standard JSON (other than a unicode escape), or -1.
+   */
+  static int unescape(int c) {
+    return (c >= 0 && c < 128 && ESCAPES[c] != 0) ? ESCAPES[c] : -1;
+  }
+
+  /**
+   * Returns the value of the hexadecimal digit {@code c}, or -1.
+   */
+  static int hexDigit(int c) {
+    return (c >= 0 && c < 128) ? HEX_DIGITS[c] : -1;
+  }
+
+  /**
+   * Returns the state of the number recognizer after {@code c}, or -1 if
+   * {@code c} ends the number; the initial state is 0.
+   */
+  static int nextNumberState(int state, int c) {
+    return NUMBER_STATES[(state << 3) | ((c >= 0 && c < 128) ? NUMBER_CLASSES[c] : 0)];
+  }
+
+  /**
+   * Returns whether a number ending in the given state is complete.
+   */
+  static boolean isNumberComplete(int state) {
+    return state == 2 || state == 3 || state == 5 || state == 8;
+  }
+
+  /**
+   * Characters silently dropped from string values.
+   */
+  static boolean isISOControl(int c) {
+    return c <= 0x9F && (c < 0x20 || c >= 0x7F);
+  }
+
+  /** Table of canonical key instances, or {@code null}. */
+  SymbolTable symbolTable = null;
+
+  /** Representation of the numbers returned by {@link #readNumber()}. */
+  NumberPolicy numberPolicy = NumberPolicy.LAZY;
+
+  /** Kinds of the containers open in {@link #skipValue()}. */
+  private boolean[] skippedObjects = new boolean[32];
+
+  // ---
+
+  /**
+   * Skips whitespace and comments and returns the next character without
+   * consuming it, or {@code -1} at the end of the input.
+   */
+  abstract int skipWhitespaceAndComments() throws IOException, SerializationException;
+
+  /**
+   * Consumes the current (structural) character.
+   */
+  abstract void consume();
+
+  /**
+   * Reads a quote-delimited string; the current character is the delimiter.
+   */
+  abstract String readString() throws IOException, SerializationException;
+
+  /**
+   * Reads an undelimited map key; it must adhere to Java identifier syntax.
+   */
+  abstract String readIdentifier() throws IOException, SerializationException;
+
+  /**
+   * Reads a map key, delimited or not; the current character is {@code c}.
+   * Keys are interned in the {@link #symbolTable}, if any.
+   */
+  String readKey(int c) throws IOException, SerializationException {
+    String key = (c == '"' || c == '\'') ? readString() : readIdentifier();
+    return (symbolTable != null) ? symbolTable.intern(key) : key;
+  }
+
+  /**
+   * Reads a number; the current character is its first character.
+   */
+  abstract Number readNumber() throws IOException, SerializationException;
+
+  /**
+   * Skips a quote-delimited string without creating it; the current character
+   * is the delimiter.
+   *
+   * @return {@code false} if the string is empty.
+   */
+  boolean skipString() throws IOException, SerializationException {
+    return readString().length() > 0;
+  }
+
+  /**
+   * Skips an undelimited map key without creating it.
+   */
+  void skipIdentifier() throws IOException, SerializationException {
+    readIdentifier();
+  }
+
+  /**
+   * Skips a number without creating it.
+   */
+  void skipNumber() throws IOException, SerializationException {
+    readNumber();
+  }
+
+  /**
+   * Skips the whitespace of standard JSON and returns the next character
+   * without consuming it, or {@code -1} at the end of the input.
+   */
+  abstract int skipWhitespace() throws IOException;
+
+  /**
+   * Reads a string of standard JSON; the current character is the opening
+   * double quote. The string is interned in {@code symbols}, if not
+   * {@code null}.
+   */
+  abstract String readStrictString(SymbolTable symbols) throws IOException, SerializationException;
+
+  /**
+   * Reads a number of standard JSON; the current character is its first
+   * character.
+   */
+  abstract Number readStrictNumber() throws IOException, SerializationException;
+
+  /**
+   * Matches the given literal against the input.
+   */
+  abstract void readLiteral(String text, String incompleteMessage) throws IOException, SerializationException;
+
+  /**
+   * Returns the (1-based) line number of the current position.
+   */
+  abstract int getLineNumber();
+
+  /**
+   * Returns the (1-based) column number of the current position.
+   */
+  abstract int getColumnNumber();
+
+  // ---
+
+  /**
+   * Reads the next value and returns it as a tree of {@link JtonElement}s.
+   */
+  JtonElement readValue() throws IOException, SerializationException {
+    JtonTreeBuilder treeBuilder = new JtonTreeBuilder();
+    readValue(treeBuilder);
+    return treeBuilder.getResult();
+  }
+
+  /**
+   * Reads the next value and reports it to the given handler.
+   */
+  void readValue(JsonHandler handler) throws IOException, SerializationException {
+    readValue(handler, null);
+  }
+
+  /**
+   * Reads the next value and reports the branches selected by the given
+   * projection to the handler; <tt>null</tt> selects the whole value.
+   * Unselected object members are omitted and unselected array elements are
+   * reported as <tt>null</tt>, so that selected elements keep their indices.
+   * Unselected values are passed over by {@link #skipValue()}.
+   */
+  void readValue(JsonHandler handler, Projection projection) throws IOException, SerializationException {
+    int c = skipWhitespaceAndComments();
+
+    if (c == -1) {
+      throw new SerializationException("Unexpected end of input stream.");
+    }
+
+    if (c == 'n') {
+      readLiteral("null", "Incomplete null value in input stream.");
+      handler.nullValue();
+    } else if (c == '"' || c == '\'') {
+      handler.value(readString());
+    } else if (c == '+' || c == '-' || isDigit(c)) {
+      handler.value(readNumber());
+    } else if (c == 't') {
+      readLiteral("true", "Incomplete boolean value in input stream.");
+      handler.value(true);
+    } else if (c == 'f') {
+      readLiteral("false", "Incomplete boolean value in input stream.");
+      handler.value(false);
+    } else if (c == '[') {
+      readListValue(handler, (projection == null || projection.isComplete()) ? null : projection);
+    } else if (c == '{') {
+      readMapValue(handler, (projection == null || projection.isComplete()) ? null : projection);
+    } else {
+      throw new SerializationException("Unexpected character in input stream.");
+    }
+  }
+
+  private void readListValue(JsonHandler handler, Projection projection) throws IOException, SerializationException {
+    handler.startArray();
+
+    // Move to the next character after '['
+    consume();
+    int c = skipWhitespaceAndComments();
+    int index = 0;
+
+    while (c != -1 && c != ']') {
+      if (projection == null) {
+        readValue(handler, null);
+      } else {
+        Projection element = projection.element(index++);
+
+        if (element != null) {
+          readValue(handler, element);
+        } else {
+          skipValue();
+          handler.nullValue();
+        }
+      }
+
+      c = skipWhitespaceAndComments();
+
+      if (c == ',') {
+        consume();
+        c = skipWhitespaceAndComments();
+      } else if (c == -1) {
+        throw new SerializationException("Unexpected end of input stream.");
+      } else if (c != ']') {
+        throw new SerializationException("Unexpected character in input stream.");
+      }
+    }
+
+    // Move to the next character after ']'
+    if (c != -1) {
+      consume();
+    }
+
+    handler.endArray();
+  }
+
+  private void readMapValue(JsonHandler handler, Projection projection) throws IOException, SerializationException {
+    handler.startObject();
+
+    // Move to the next character after '{'
+    consume();
+    int c = skipWhitespaceAndComments();
+
+    while (c != -1 && c != '}') {
+      String key = readKey(c);
+
+      if (key.length() == 0) {
+        throw new SerializationException("\"" + key + "\" is not a valid key.");
+      }
+
+      if (skipWhitespaceAndComments() != ':') {
+        throw new SerializationException("Unexpected character in input stream.");
+      }
+
+      // Move to the first character after ':'
+      consume();
+
+      if (projection == null) {
+        handler.key(key);
+        readValue(handler, null);
+      } else {
+        Projection member = projection.member(key);
+
+        if (member != null) {
+          handler.key(key);
+          readValue(handler, member);
+        } else {
+          skipValue();
+        }
+      }
+
+      c = skipWhitespaceAndComments();
+
+      if (c == ',') {
+        consume();
+        c = skipWhitespaceAndComments();
+      } else if (c == -1) {
+        throw new SerializationException("Unexpected end of input stream.");
+      } else if (c != '}') {
+        throw new SerializationException("Unexpected character in input stream.");
+      }
+    }
+
+    // Move to the first character after '}'
+    if (c != -1) {
+      consume();
+    }
+
+    handler.endObject();
+  }
+
+  /**
+   * Reads the next value as standard JSON (RFC 8259) and returns it as a tree
+   * of {@link JtonElement}s.
+   */
+  JtonElement readStrictValue() throws IOException, SerializationException {
+    JtonTreeBuilder treeBuilder = new JtonTreeBuilder();
+    readStrictValue(treeBuilder);
+    return treeBuilder.getResult();
+  }
+
+  /**
+   * Reads the next value as standard JSON (RFC 8259) and reports it to the
+   * given handler. Comments, single-quoted strings, unquoted keys, trailing
+   * commas, unterminated containers, control characters in strings and
+   * numbers outside of the standard syntax are errors.
+   */
+  void readStrictValue(JsonHandler handler) throws IOException, SerializationException {
+    int c = skipWhitespace();
+
+    switch (c) {
+    case '"':
+      handler.value(readStrictString(null));
+      break;
+    case '{':
+      readStrictMapValue(handler);
+      break;
+    case '[':
+      readStrictListValue(handler);
+      break;
+    case '-':
+    case '0':
+    case '1':
+    case '2':
+    case '3':
+    case '4':
+    case '5':
+    case '6':
+    case '7':
+    case '8':
+    case '9':
+      handler.value(readStrictNumber());
+      break;
+    case 't':
+      readLiteral("true", "Incomplete boolean value in input stream.");
+      handler.value(true);
+      break;
+    case 'f':
+      readLiteral("false", "Incomplete boolean value in input stream.");
+      handler.value(false);
+      break;
+    case 'n':
+      readLiteral("null", "Incomplete null value in input stream.");
+      handler.nullValue();
+      break;
+    case -1:
+      throw new SerializationException("Unexpected end of input stream.");
+    default:
+      throw new SerializationException("Unexpected character in input stream.");
+    }
+  }
+
+  private void readStrictListValue(JsonHandler handler) throws IOException, SerializationException {
+    handler.startArray();
+
+    // Move to the next character after '['
+    consume();
+    int c = skipWhitespace();
+
+    if (c != ']') {
+      for (;;) {
+        readStrictValue(handler);
+        c = skipWhitespace();
+
+        if (c == ']') {
+          break;
+        }
+
+        if (c != ',') {
+          throw unexpected(c);
+        }
+
+        consume();
+      }
+    }
+
+    // Move to the next character after ']'
+    consume();
+
+    handler.endArray();
+  }
+
+  private void readStrictMapValue(JsonHandler handler) throws IOException, SerializationException {
+    handler.startObject();
+
+    // Move to the next character after '{'
+    consume();
+    int c = skipWhitespace();
+
+    if (c != '}') {
+      for (;;) {
+        if (c != '"') {
+          throw unexpected(c);
+        }
+
+        String key = readStrictString(symbolTable);
+
+        c = skipWhitespace();
+        if (c != ':') {
+          throw unexpected(c);
+        }
+
+        // Move to the first character after ':'
+        consume();
+
+        handler.key(key);
+        readStrictValue(handler);
+        c = skipWhitespace();
+
+        if (c == '}') {
+          break;
+        }
+
+        if (c != ',') {
+          throw unexpected(c);
+        }
+
+        consume();
+        c = skipWhitespace();
+      }
+    }
+
+    // Move to the first character after '}'
+    consume();
+
+    handler.endObject();
+  }
+
+  private static SerializationException unexpected(int c) {
+    return new SerializationException((c == -1) ? "Unexpected end of input stream."
+        : "Unexpected character in input stream.");
+  }
+
+  /**
+   * Skips the next value without creating its strings and numbers.
+   * <p>
+   * Containers are passed over by counting their nesting depth: the tokens
+   * within them are checked, but the order of values and separators is not.
+   */
+  void skipValue() throws IOException, SerializationException {
+    boolean[] objects = skippedObjects;
+    int depth = 0;
+    boolean key = false;
+
+    do {
+      int c = skipWhitespaceAndComments();
+
+      if (c == -1) {
+        throw new SerializationException("Unexpected end of input stream.");
+      }
+
+      if (c == '[' || c == '{') {
+        consume();
+
+        if (depth == objects.length) {
+          objects = skippedObjects = Arrays.copyOf(objects, depth << 1);
+        }
+
+        key = (c == '{');
+        objects[depth++] = key;
+      } else if (c == ']' || c == '}') {
+        if (depth == 0 || (c == '}') != objects[depth - 1]) {
+          throw new SerializationException("Unexpected character in input stream.");
+        }
+
+        consume();
+        depth--;
+        key = false;
+      } else if (c == ',' && depth > 0) {
+        consume();
+        key = objects[depth - 1];
+      } else if (c == ':' && depth > 0) {
+        consume();
+      } else if (key) {
+        if (c == '"' || c == '\'') {
+          if (!skipString()) {
+            throw new SerializationException("\"\" is not a valid key.");
+          }
+        } else {
+          skipIdentifier();
+        }
+
+        key = false;
+      } else if (c == '"' || c == '\'') {
+        skipString();
+      } else if (c == '-' || isDigit(c)) {
+        // A leading '+' reads as an empty number, which can only be followed
+        // by an unexpected character
+        skipNumber();
+      } else if (c == 'n') {
+        readLiteral("null", "Incomplete null value in input stream.");
+      } else if (c == 't') {
+        readLiteral("true", "Incomplete boolean value in input stream.");
+      } else if (c == 'f') {
+        readLiteral("false", "Incomplete boolean value in input stream.");
+      } else {
+        throw new SerializationException("Unexpected character in input stream.");
+      }
+    } while (depth > 0);
+  }
+}
@@ -0,0 +1,511 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.veracloud.jton.serialization;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import com.veracloud.jton.JtonElement;
+import com.veracloud.jton.internal.LazilyParsedNumber;
+
+/**
+ * Reads a JSON document as a stream of tokens, without materializing it as a
+ * tree of {@link JtonElement}s.
+ * <p>
+ * The reader accepts the same (lenient) grammar as {@link JsonSerializer}.
+ * Values of interest can still be read as a tree with {@link #readElement()}.
+ * A stream of several top-level values (such as JSON lines) can be read by
+ * calling {@link #peek()} until it returns {@link Token#END_DOCUMENT}.
+ *
+ * <pre>
+ * JtonReader reader = new JtonReader(inputStream);
+ * reader.beginArray();
+ * while (reader.hasNext()) {
+ *   reader.beginObject();
+ *   while (reader.hasNext()) {
+ *     String name = reader.nextName();
+ *     if (name.equals("id")) {
+ *       long id = reader.nextLong();
+ *     } else {
+ *       reader.skipValue();
+ *     }
+ *   }
+ *   reader.endObject();
+ * }
+ * reader.endArray();
+ * </pre>
+ */
+public class JtonReader implements Closeable {
+
+  /**
+   * The kinds of tokens returned by {@link JtonReader#peek()}.
+   */
+  public enum Token {
+    BEGIN_ARRAY, END_ARRAY, BEGIN_OBJECT, END_OBJECT, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+  }
+
+  private static final int EMPTY_DOCUMENT = 0;
+  private static final int NONEMPTY_DOCUMENT = 1;
+  private static final int EMPTY_ARRAY = 2;
+  private static final int NONEMPTY_ARRAY = 3;
+  private static final int EMPTY_OBJECT = 4;
+  private static final int NONEMPTY_OBJECT = 5;
+  private static final int DANGLING_NAME = 6;
+
+  private final JsonTokenizer tokenizer;
+  private final Closeable closeable;
+
+  private int[] stack = new int[32];
+  private int stackSize = 0;
+
+  /** The peeked token, or {@code null}. */
+  private Token peeked = null;
+
+  /** The character the peeked token starts with, or {@code -1}. */
+  private int peekedChar = -1;
+
+  /**
+   * Creates a reader for the given character stream.
+   */
+  public JtonReader(Reader reader) throws IOException {
+    if (reader == null) {
+      throw new IllegalArgumentException("reader is null.");
+    }
+
+    CharJsonTokenizer tokenizer = new CharJsonTokenizer();
+    tokenizer.reset(reader);
+    tokenizer.symbolTable = new SymbolTable();
+
+    this.tokenizer = tokenizer;
+    this.closeable = reader;
+    push(EMPTY_DOCUMENT);
+  }
+
+  /**
+   * Creates a reader for the given UTF-8 encoded byte stream.
+   */
+  public JtonReader(InputStream inputStream) throws IOException {
+    if (inputStream == null) {
+      throw new IllegalArgumentException("inputStream is null.");
+    }
+
+    Utf8JsonTokenizer tokenizer = new Utf8JsonTokenizer();
+    tokenizer.reset(inputStream);
+    tokenizer.symbolTable = new SymbolTable();
+
+    this.tokenizer = tokenizer;
+    this.closeable = inputStream;
+    push(EMPTY_DOCUMENT);
+  }
+
+  /**
+   * Creates a reader for the given UTF-8 encoded bytes.
+   */
+  public JtonReader(byte[] bytes) {
+    if (bytes == null) {
+      throw new IllegalArgumentException("bytes is null.");
+    }
+
+    Utf8JsonTokenizer tokenizer = new Utf8JsonTokenizer();
+    tokenizer.reset(bytes, 0, bytes.length);
+    tokenizer.symbolTable = new SymbolTable();
+
+    this.tokenizer = tokenizer;
+    this.closeable = null;
+    push(EMPTY_DOCUMENT);
+  }
+
+  /**
+   * Creates a reader for the given UTF-8 encoded file; the file is memory
+   * mapped.
+   */
+  public JtonReader(Path path) throws IOException {
+    if (path == null) {
+      throw new IllegalArgumentException("path is null.");
+    }
+
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+    Utf8JsonTokenizer tokenizer = new Utf8JsonTokenizer();
+    try {
+      tokenizer.reset(channel);
+    } catch (IOException exception) {
+      channel.close();
+      throw exception;
+    }
+    tokenizer.symbolTable = new SymbolTable();
+
+    this.tokenizer = tokenizer;
+    this.closeable = channel;
+    push(EMPTY_DOCUMENT);
+  }
+
+  private void push(int scope) {
+    if (stackSize == stack.length) {
+      stack = Arrays.copyOf(stack, stackSize << 1);
+    }
+    stack[stackSize++] = scope;
+  }
+
+  /**
+   * Returns the type of the next token without consuming it.
+   */
+  public Token peek() throws IOException, SerializationException {
+    if (peeked != null) {
+      return peeked;
+    }
+
+    int c = tokenizer.skipWhitespaceAndComments();
+
+    switch (stack[stackSize - 1]) {
+    case EMPTY_DOCUMENT:
+      stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+      return peekValue(c);
+
+    case NONEMPTY_DOCUMENT:
+      return (c == -1) ? peeked(Token.END_DOCUMENT, c) : peekValue(c);
+
+    case EMPTY_ARRAY:
+      stack[stackSize - 1] = NONEMPTY_ARRAY;
+      return (c == -1 || c == ']') ? peeked(Token.END_ARRAY, c) : peekValue(c);
+
+    case NONEMPTY_ARRAY:
+      if (c == ',') {
+        tokenizer.consume();
+        c = tokenizer.skipWhitespaceAndComments();
+        return (c == -1 || c == ']') ? peeked(Token.END_ARRAY, c) : peekValue(c);
+      }
+      return peekEnd(c, ']', Token.END_ARRAY);
+
+    case EMPTY_OBJECT:
+      stack[stackSize - 1] = NONEMPTY_OBJECT;
+      return (c == -1 || c == '}') ? peeked(Token.END_OBJECT, c) : peeked(Token.NAME, c);
+
+    case NONEMPTY_OBJECT:
+      if (c == ',') {
+        tokenizer.consume();
+        c = tokenizer.skipWhitespaceAndComments();
+        return (c == -1 || c == '}') ? peeked(Token.END_OBJECT, c) : peeked(Token.NAME, c);
+      }
+      return peekEnd(c, '}', Token.END_OBJECT);
+
+    case DANGLING_NAME:
+      stack[stackSize - 1] = NONEMPTY_OBJECT;
+      return peekValue(c);
+
+    default:
+      throw new IllegalStateException("JtonReader is closed.");
+    }
+  }
+
+  private Token peekEnd(int c, int end, Token token) throws SerializationException {
+    if (c == -1) {
+      throw new SerializationException("Unexpected end of input stream.");
+    }
+
+    if (c != end) {
+      throw new SerializationException("Unexpected character in input stream.");
+    }
+
+    return peeked(token, c);
+  }
+
+  private Token peekValue(int c) throws SerializationException {
+    if (c == -1) {
+      throw new SerializationException("Unexpected end of input stream.");
+    }
+
+    if (c == 'n') {
+      return peeked(Token.NULL, c);
+    } else if (c == '"' || c == '\'') {
+      return peeked(Token.STRING, c);
+    } else if (c == '+' || c == '-' || JsonTokenizer.isDigit(c)) {
+      return peeked(Token.NUMBER, c);
+    } else if (c == 't' || c == 'f') {
+      return peeked(Token.BOOLEAN, c);
+    } else if (c == '[') {
+      return peeked(Token.BEGIN_ARRAY, c);
+    } else if (c == '{') {
+      return peeked(Token.BEGIN_OBJECT, c);
+    } else {
+      throw new SerializationException("Unexpected character in input stream.");
+    }
+  }
+
+  private Token peeked(Token token, int c) {
+    this.peeked = token;
+    this.peekedChar = c;
+    return token;
+  }
+
+  private void expect(Token token) throws IOException, SerializationException {
+    Token next = peek();
+    if (next != token) {
+      throw new IllegalStateException("Expected " + token + " but was " + next + ".");
+    }
+    peeked = null;
+  }
+
+  /**
+   * Returns {@code true} if the current array or object has another element.
+   */
+  public boolean hasNext() throws IOException, SerializationException {
+    Token token = peek();
+    return token != Token.END_ARRAY && token != Token.END_OBJECT && token != Token.END_DOCUMENT;
+  }
+
+  /**
+   * Consumes the next token, which must be the beginning of an array.
+   */
+  public void beginArray() throws IOException, SerializationException {
+    expect(Token.BEGIN_ARRAY);
+    tokenizer.consume();
+    push(EMPTY_ARRAY);
+  }
+
+  /**
+   * Consumes the next token, which must be the end of the current array.
+   */
+  public void endArray() throws IOException, SerializationException {
+    expect(Token.END_ARRAY);
+    end();
+  }
+
+  /**
+   * Consumes the next token, which must be the beginning of an object.
+   */
+  public void beginObject() throws IOException, SerializationException {
+    expect(Token.BEGIN_OBJECT);
+    tokenizer.consume();
+    push(EMPTY_OBJECT);
+  }
+
+  /**
+   * Consumes the next token, which must be the end of the current object.
+   */
+  public void endObject() throws IOException, SerializationException {
+    expect(Token.END_OBJECT);
+    end();
+  }
+
+  private void end() {
+    // Arrays and objects are implicitly closed at the end of the input
+    if (peekedChar != -1) {
+      tokenizer.consume();
+    }
+    stackSize--;
+  }
+
+  /**
+   * Consumes the next token, which must be a member name, and returns it.
+   */
+  public String nextName() throws IOException, SerializationException {
+    expect(Token.NAME);
+
+    String key = tokenizer.readKey(peekedChar);
+
+    if (key.length() == 0) {
+      throw new SerializationException("\"" + key + "\" is not a valid key.");
+    }
+
+    if (tokenizer.skipWhitespaceAndComments() != ':') {
+      throw new SerializationException("Unexpected character in input stream.");
+    }
+
+    // Move to the first character after ':'
+    tokenizer.consume();
+    stack[stackSize - 1] = DANGLING_NAME;
+
+    return key;
+  }
+
+  /**
+   * Consumes the next token, which must be a string or a number, and returns
+   * it as a string.
+   */
+  public String nextString() throws IOException, SerializationException {
+    Token token = peek();
+    if (token == Token.STRING) {
+      peeked = null;
+      return tokenizer.readString();
+    } else if (token == Token.NUMBER) {
+      peeked = null;
+      return tokenizer.readNumber().toString();
+    }
+    throw new IllegalStateException("Expected " + Token.STRING + " but was " + token + ".");
+  }
+
+  /**
+   * Consumes the next token, which must be a boolean, and returns it.
+   */
+  public boolean nextBoolean() throws IOException, SerializationException {
+    expect(Token.BOOLEAN);
+
+    if (peekedChar == 't') {
+      tokenizer.readLiteral("true", "Incomplete boolean value in input stream.");
+      return true;
+    } else {
+      tokenizer.readLiteral("false", "Incomplete boolean value in input stream.");
+      return false;
+    }
+  }
+
+  /**
+   * Consumes the next token, which must be a {@code null} literal.
+   */
+  public void nextNull() throws IOException, SerializationException {
+    expect(Token.NULL);
+    tokenizer.readLiteral("null", "Incomplete null value in input stream.");
+  }
+
+  /**
+   * Consumes the next token, which must be a number (or a string containing a
+   * number), and returns it.
+   */
+  public Number nextNumber() throws IOException, SerializationException {
+    Token token = peek();
+    if (token == Token.NUMBER) {
+      peeked = null;
+      return tokenizer.readNumber();
+    } else if (token == Token.STRING) {
+      peeked = null;
+      return new LazilyParsedNumber(tokenizer.readString());
+    }
+    throw new IllegalStateException("Expected " + Token.NUMBER + " but was " + token + ".");
+  }
+
+  /**
+   * Consumes the next token as a {@code long}.
+   *
+   * @throws NumberFormatException
+   *           if the token is not a valid number.
+   */
+  public long nextLong() throws IOException, SerializationException {
+    return nextNumber().longValue();
+  }
+
+  /**
+   * Consumes the next token as an {@code int}.
+   *
+   * @throws NumberFormatException
+   *           if the token is not a valid number.
+   */
+  public int nextInt() throws IOException, SerializationException {
+    return nextNumber().intValue();
+  }
+
+  /**
+   * Consumes the next token as a {@code double}.
+   *
+   * @throws NumberFormatException
+   *           if the token is not a valid number.
+   */
+  public double nextDouble() throws IOException, SerializationException {
+    return nextNumber().doubleValue();
+  }
+
+  /**
+   * Consumes the next value and returns it as a tree of {@link JtonElement}s.
+   */
+  public JtonElement readElement() throws IOException, SerializationException {
+    Token token = peek();
+    if (token == Token.NAME || token == Token.END_ARRAY || token == Token.END_OBJECT
+        || token == Token.END_DOCUMENT) {
+      throw new IllegalStateException("Expected a value but was " + token + ".");
+    }
+
+    peeked = null;
+    return tokenizer.readValue();
+  }
+
+  /**
+   * Skips the next value; if the next token is a member name, the name and its
+   * value are skipped.
+   */
+  public void skipValue() throws IOException, SerializationException {
+    int depth = 0;
+
+    do {
+      switch (peek()) {
+      case BEGIN_ARRAY:
+        beginArray();
+        depth++;
+        break;
+      case BEGIN_OBJECT:
+        beginObject();
+        depth++;
+        break;
+      case END_ARRAY:
+        endArray();
+        depth--;
+        break;
+      case END_OBJECT:
+        endObject();
+        depth--;
+        break;
+      case NAME:
+        nextName();
+        skipValue();
+        break;
+      case STRING:
+        nextString();
+        break;
+      case NUMBER:
+        nextNumber();
+        break;
+      case BOOLEAN:
+        nextBoolean();
+        break;
+      case NULL:
+        nextNull();
+        break;
+      case END_DOCUMENT:
+        throw new IllegalStateException("Expected a value but was " + Token.END_DOCUMENT + ".");
+      }
+    } while (depth > 0);
+  }
+
+  /**
+   * Returns the (1-based) line number of the current position.
+   */
+  public int getLineNumber() {
+    return tokenizer.getLineNumber();
+  }
+
+  /**
+   * Returns the (1-based) column number of the current position.
+   */
+  public int getColumnNumber() {
+    return tokenizer.getColumnNumber();
+  }
+
+  /**
+   * Closes this reader and the underlying input.
+   */
+  @Override
+  public void close() throws IOException {
+    peeked = null;
+    stackSize = 1;
+    stack[0] = -1;
+
+    if (closeable != null) {
+      closeable.close();
+    }
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.veracloud.jton.serialization;
+
+import java.util.Arrays;
+
+import com.veracloud.jton.JtonArray;
+import com.veracloud.jton.JtonElement;
+import com.veracloud.jton.JtonNull;
+import com.veracloud.jton.JtonObject;
+import com.veracloud.jton.JtonPrimitive;
+import com.veracloud.jton.internal.LinkedArrayMap;
+
+/**
+ * {@link JsonHandler} that builds a tree of {@link JtonElement}s.
+ * <p>
+ * The objects of a document share the keys of those with the same keys in the
+ * same order, through the {@link LinkedArrayMap.Shape shapes} of the builder.
+ */
+final class JtonTreeBuilder implements JsonHandler {
+  private JtonElement[] containers = new JtonElement[16];
+  private String[] keys = new String[16];
+  private int depth = 0;
+
+  /** Members of the objects being built, trimmed when they end. */
+  private LinkedArrayMap<?, ?>[] members = new LinkedArrayMap<?, ?>[16];
+
+  private final LinkedArrayMap.Shape shape = new LinkedArrayMap.Shape();
+
+  private JtonElement result = null;
+
+  /**
+   * Returns the root element of the last document, or {@code null}.
+   */
+  JtonElement getResult() {
+    return result;
+  }
+
+  private void push(JtonElement container) {
+    if (depth == containers.length) {
+      containers = Arrays.copyOf(containers, depth << 1);
+      keys = Arrays.copyOf(keys, depth << 1);
+      members = Arrays.copyOf(members, depth << 1);
+    }
+    containers[depth++] = container;
+  }
+
+  private void add(JtonElement element) {
+    if (depth == 0) {
+      result = element;
+      return;
+    }
+
+    JtonElement container = containers[depth - 1];
+    if (container instanceof JtonArray) {
+      ((JtonArray) container).add(element);
+    } else {
+      ((JtonObject) container).add(keys[depth - 1], element);
+    }
+  }
+
+  private void pop() {
+    JtonElement container = containers[--depth];
+    containers[depth] = null;
+    keys[depth] = null;
+    add(container);
+  }
+
+  @Override
+  public void startObject() {
+    LinkedArrayMap<String, JtonElement> map = new LinkedArrayMap<String, JtonElement>(shape, 0);
+    push(JtonObject.wrap(map));
+    members[depth - 1] = map;
+  }
+
+  @Override
+  public void key(String key) {
+    keys[depth - 1] = key;
+  }
+
+  @Override
+  public void endObject() {
+    members[depth - 1].trimToSize();
+    members[depth - 1] = null;
+    pop();
+  }
+
+  @Override
+  public void startArray() {
+    push(new JtonArray());
+  }
+
+  @Override
+  public void endArray() {
+    ((JtonArray) containers[depth - 1]).trimToSize();
+    pop();
+  }
+
+  @Override
+  public void value(String value) {
+    add(JtonPrimitive.valueOf(value));
+  }
+
+  @Override
+  public void value(Number value) {
+    add(JtonPrimitive.valueOf(value));
+  }
+
+  @Override
+  public void value(long value) {
+    add(JtonPrimitive.valueOf(value));
+  }
+
+  @Override
+  public void value(double value) {
+    add(JtonPrimitive.valueOf(value));
+  }
+
+  @Override
+  public void value(boolean value) {
+    add(JtonPrimitive.valueOf(value));
+  }
+
+  @Override
+  public void nullValue() {
+    add(JtonNull.INSTANCE);
+  }
+}
@@ -0,0 +1,385 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.veracloud.jton.serialization;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.veracloud.jton.JtonElement;
+
+/**
+ * Writes a JSON document as a stream of tokens, without building it as a tree
+ * of {@link JtonElement}s.
+ * <p>
+ * The text is formatted as by {@link JsonSerializer} with the same indent
+ * factor and key delimiting settings, and subtrees can be embedded with
+ * {@link #writeElement(JtonElement)}. Output is buffered a block at a time,
+ * so documents of any size are written in constant memory. Several top-level
+ * values are written on separate lines, as JSON lines.
+ *
+ * <pre>
+ * JtonWriter writer = new JtonWriter(outputStream);
+ * writer.beginArray();
+ * for (Row row : rows) {
+ *   writer.beginObject();
+ *   writer.name("id").value(row.getId());
+ *   writer.name("name").value(row.getName());
+ *   writer.endObject();
+ * }
+ * writer.endArray();
+ * writer.close();
+ * </pre>
+ */
+public class JtonWriter implements Closeable, Flushable {
+  private static final int CLOSED = -1;
+  private static final int EMPTY_DOCUMENT = 0;
+  private static final int NONEMPTY_DOCUMENT = 1;
+  private static final int EMPTY_ARRAY = 2;
+  private static final int NONEMPTY_ARRAY = 3;
+  private static final int EMPTY_OBJECT = 4;
+  private static final int NONEMPTY_OBJECT = 5;
+  private static final int DANGLING_NAME = 6;
+
+  private final JsonEmitter emitter;
+  private final Closeable closeable;
+
+  private boolean alwaysDelimitMapKeys = false;
+  private int indentFactor = 0;
+
+  private int[] stack = new int[32];
+  private int stackSize = 0;
+
+  /**
+   * Creates a writer for the given character stream.
+   */
+  public JtonWriter(Writer writer) {
+    if (writer == null) {
+      throw new IllegalArgumentException("writer is null.");
+    }
+
+    CharJsonEmitter emitter = new CharJsonEmitter();
+    emitter.reset(writer);
+
+    this.emitter = emitter;
+    this.closeable = writer;
+    initialize();
+  }
+
+  /**
+   * Creates a writer that encodes the document to UTF-8 on the given byte
+   * stream.
+   */
+  public JtonWriter(OutputStream outputStream) {
+    if (outputStream == null) {
+      throw new IllegalArgumentException("outputStream is null.");
+    }
+
+    Utf8JsonEmitter emitter = new Utf8JsonEmitter();
+    emitter.reset(outputStream);
+
+    this.emitter = emitter;
+    this.closeable = outputStream;
+    initialize();
+  }
+
+  /**
+   * Creates a writer that encodes the document to UTF-8 on the given
+   * blocking channel.
+   */
+  public JtonWriter(WritableByteChannel channel) {
+    if (channel == null) {
+      throw new IllegalArgumentException("channel is null.");
+    }
+
+    Utf8JsonEmitter emitter = new Utf8JsonEmitter();
+    emitter.reset(channel);
+
+    this.emitter = emitter;
+    this.closeable = channel;
+    initialize();
+  }
+
+  private void initialize() {
+    updateOptions();
+    push(EMPTY_DOCUMENT);
+  }
+
+  private void updateOptions() {
+    emitter.setOptions(indentFactor, alwaysDelimitMapKeys, false, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Returns a flag indicating whether or not map keys will always be
+   * quote-delimited.
+   */
+  public boolean getAlwaysDelimitMapKeys() {
+    return alwaysDelimitMapKeys;
+  }
+
+  /**
+   * Sets a flag indicating that map keys should always be quote-delimited.
+   *
+   * @see JsonSerializer#setAlwaysDelimitMapKeys(boolean)
+   */
+  public void setAlwaysDelimitMapKeys(boolean alwaysDelimitMapKeys) {
+    this.alwaysDelimitMapKeys = alwaysDelimitMapKeys;
+    updateOptions();
+  }
+
+  /**
+   * Returns the number of spaces added to each level of indentation.
+   */
+  public int getIntentFactor() {
+    return indentFactor;
+  }
+
+  /**
+   * Sets the number of spaces to add to each level of indentation; 0 writes
+   * the document on a single line.
+   *
+   * @see JsonSerializer#setIntentFactor(int)
+   */
+  public void setIntentFactor(int indentFactor) {
+    this.indentFactor = indentFactor;
+    updateOptions();
+  }
+
+  private void push(int scope) {
+    if (stackSize == stack.length) {
+      stack = Arrays.copyOf(stack, stackSize << 1);
+    }
+    stack[stackSize++] = scope;
+  }
+
+  private int peek() {
+    int scope = stack[stackSize - 1];
+    if (scope == CLOSED) {
+      throw new IllegalStateException("JtonWriter is closed.");
+    }
+
+    return scope;
+  }
+
+  /**
+   * Writes what precedes a value in the current scope.
+   */
+  private void beforeValue() throws IOException {
+    switch (peek()) {
+    case EMPTY_DOCUMENT:
+      stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+      break;
+
+    case NONEMPTY_DOCUMENT:
+      emitter.write('\n');
+      break;
+
+    case EMPTY_ARRAY:
+    case NONEMPTY_ARRAY:
+      emitter.beginElement(stackSize - 2, stack[stackSize - 1] == EMPTY_ARRAY);
+      stack[stackSize - 1] = NONEMPTY_ARRAY;
+      break;
+
+    case DANGLING_NAME:
+      stack[stackSize - 1] = NONEMPTY_OBJECT;
+      break;
+
+    default:
+      throw new IllegalStateException("Expected a name.");
+    }
+  }
+
+  /**
+   * Begins a new array.
+   */
+  public JtonWriter beginArray() throws IOException {
+    beforeValue();
+    emitter.write('[');
+    push(EMPTY_ARRAY);
+    return this;
+  }
+
+  /**
+   * Ends the current array.
+   */
+  public JtonWriter endArray() throws IOException {
+    int scope = peek();
+    if (scope != EMPTY_ARRAY && scope != NONEMPTY_ARRAY) {
+      throw new IllegalStateException("Not in an array.");
+    }
+
+    emitter.endContainer(']', stackSize - 2, scope == NONEMPTY_ARRAY);
+    stackSize--;
+    return this;
+  }
+
+  /**
+   * Begins a new object.
+   */
+  public JtonWriter beginObject() throws IOException {
+    beforeValue();
+    emitter.write('{');
+    push(EMPTY_OBJECT);
+    return this;
+  }
+
+  /**
+   * Ends the current object.
+   */
+  public JtonWriter endObject() throws IOException {
+    int scope = peek();
+    if (scope != EMPTY_OBJECT && scope != NONEMPTY_OBJECT) {
+      throw new IllegalStateException(scope == DANGLING_NAME ? "Expected a value." : "Not in an object.");
+    }
+
+    emitter.endContainer('}', stackSize - 2, scope == NONEMPTY_OBJECT);
+    stackSize--;
+    return this;
+  }
+
+  /**
+   * Writes the name of the next member of the current object.
+   */
+  public JtonWriter name(String name) throws IOException {
+    if (name == null) {
+      throw new IllegalArgumentException("name is null.");
+    }
+
+    int scope = peek();
+    if (scope != EMPTY_OBJECT && scope != NONEMPTY_OBJECT) {
+      throw new IllegalStateException(scope == DANGLING_NAME ? "Expected a value." : "Not in an object.");
+    }
+
+    emitter.beginMember(name, stackSize - 2, scope == EMPTY_OBJECT);
+    stack[stackSize - 1] = DANGLING_NAME;
+    return this;
+  }
+
+  /**
+   * Writes a string value, or <tt>null</tt>.
+   */
+  public JtonWriter value(String value) throws IOException {
+    if (value == null) {
+      return nullValue();
+    }
+
+    beforeValue();
+    emitter.writeString(value);
+    return this;
+  }
+
+  public JtonWriter value(boolean value) throws IOException {
+    beforeValue();
+    emitter.write(value ? "true" : "false");
+    return this;
+  }
+
+  public JtonWriter value(long value) throws IOException {
+    beforeValue();
+    emitter.writeLong(value);
+    return this;
+  }
+
+  /**
+   * Writes a number; NaN and infinite values are rejected.
+   */
+  public JtonWriter value(double value) throws IOException, SerializationException {
+    if (!Double.isFinite(value)) {
+      throw new SerializationException(value + " is not a valid value.");
+    }
+
+    beforeValue();
+    emitter.writeDouble(value);
+    return this;
+  }
+
+  /**
+   * Writes a number, or <tt>null</tt>; NaN and infinite values are rejected.
+   */
+  public JtonWriter value(Number value) throws IOException, SerializationException {
+    if (value == null) {
+      return nullValue();
+    }
+
+    if ((value instanceof Double && !Double.isFinite(value.doubleValue()))
+        || (value instanceof Float && !Float.isFinite(value.floatValue()))) {
+      throw new SerializationException(value + " is not a valid value.");
+    }
+
+    beforeValue();
+    emitter.writeNumber(value);
+    return this;
+  }
+
+  public JtonWriter nullValue() throws IOException {
+    beforeValue();
+    emitter.write("null");
+    return this;
+  }
+
+  /**
+   * Writes a tree as the next value, formatted as by
+   * {@link JsonSerializer#writeObject(JtonElement, Writer)}.
+   */
+  public JtonWriter writeElement(JtonElement element) throws IOException, SerializationException {
+    if (element == null) {
+      return nullValue();
+    }
+
+    beforeValue();
+    emitter.writeElement(element, stackSize - 1);
+    return this;
+  }
+
+  /**
+   * Writes the buffered text to the destination and flushes it.
+   */
+  @Override
+  public void flush() throws IOException {
+    peek();
+    emitter.flush();
+  }
+
+  /**
+   * Flushes and closes this writer and the underlying output.
+   *
+   * @throws IOException
+   *           If the document is incomplete; the output is closed anyway.
+   */
+  @Override
+  public void close() throws IOException {
+    if (stack[stackSize - 1] == CLOSED) {
+      return;
+    }
+
+    boolean complete = (stackSize == 1 && stack[0] == NONEMPTY_DOCUMENT);
+
+    try {
+      emitter.flush();
+    } finally {
+      stackSize = 1;
+      stack[0] = CLOSED;
+      closeable.close();
+    }
+
+    if (!complete) {
+      throw new IOException("Incomplete document.");
+    }
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.veracloud.jton.serialization;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import com.veracloud.jton.JtonElement;
+
+/**
+ * Compares parsing a large JSON file through
+ * {@link JsonSerializer#parse(InputStream)} with the memory mapped
+ * {@link JsonSerializer#readObject(Path)}.
+ * <p>
+ * Usage: {@code MappedFileBenchmark [file] [size in MB] [iterations]}. The
+ * file is generated if it does not exist; the default is a 2 GB file, which
+ * needs a correspondingly large heap ({@code -Xmx}) to hold the parsed tree.
+ */
+public class MappedFileBenchmark {
+
+  public static void main(String[] args) throws IOException, SerializationException {
+    Path path = Paths.get(args.length > 0 ? args[0] : "test-files/benchmark-large.json");
+    long size = (args.length > 1 ? Long.parseLong(args[1]) : 2048L) << 20;
+    int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+    if (!Files.exists(path)) {
+      System.out.println("Generating " + path + " (" + (size >> 20) + " MB)...");
+      generate(path, size);
+    }
+
+    long length = Files.size(path);
+    System.out.println("File: " + path + " (" + (length >> 20) + " MB)");
+
+    for (int i = 0; i < iterations; i++) {
+      long t = System.nanoTime();
+      InputStream inputStream = Files.newInputStream(path);
+      JtonElement e;
+      try {
+        e = JsonSerializer.parse(inputStream);
+      } finally {
+        inputStream.close();
+      }
+      report("parse(InputStream)", length, System.nanoTime() - t, e);
+      e = null;
+
+      t = System.nanoTime();
+      e = new JsonSerializer().readObject(path);
+      report("readObject(Path)  ", length, System.nanoTime() - t, e);
+      e = null;
+    }
+  }
+
+  private static void report(String name, long length, long nanos, JtonElement e) {
+    double seconds = nanos / 1e9;
+    System.out.printf("%s %8.2f s %8.1f MB/s (%d elements)%n", name, seconds, (length / 1048576.0) / seconds,
+        e.getAsJtonArray().size());
+  }
+
+  private static void generate(Path path, long size) throws IOException {
+    OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(path), 1 << 16);
+    try {
+      long written = 1;
+      outputStream.write('[');
+
+      for (long i = 0; written < size; i++) {
+        String item = (i > 0 ? ",\n" : "\n") + "{\"id\": " + i + ", \"name\": \"item-" + i
+            + "\", \"price\": " + (i % 10000) / 100.0 + ", \"active\": " + (i % 3 == 0)
+            + ", \"tags\": [\"alpha\", \"beta\", \"gamma\"], \"parent\": null, \"note\": \"caf\u00e9 \\\"quoted\\\"\"}";
+        byte[] bytes = item.getBytes(StandardCharsets.UTF_8);
+        outputStream.write(bytes);
+        written += bytes.length;
+      }
+
+      outputStream.write("\n]\n".getBytes(StandardCharsets.UTF_8));
+    } finally {
+      outputStream.close();
+    }
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.veracloud.jton.serialization;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Converts number tokens according to a {@link NumberPolicy}.
+ * <p>
+ * Tokens of up to 18 digits are decoded straight from the scan buffer:
+ * integers into a {@code long}, decimals into a {@code double} with Clinger's
+ * fast path (exact when the digits fit into 53 bits and the decimal exponent
+ * is at most 22) or into a {@link BigDecimal} from the digits and the scale.
+ * Everything else is converted by the JDK parsers, so the results are the
+ * same as those of {@link Long#parseLong(String)},
+ * {@link Double#parseDouble(String)} and {@link BigDecimal#BigDecimal(String)}.
+ */
+final class NumberDecoder {
+  private static final double[] POWERS_OF_TEN = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+      1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+  private static final int MAX_DIGITS = 18;
+  private static final int MAX_EXPONENT = 9999;
+
+  private NumberDecoder() {
+  }
+
+  /**
+   * Converts a token of ASCII bytes.
+   */
+  static Number decode(byte[] bytes, int start, int end, NumberPolicy numberPolicy) throws SerializationException {
+    int i = start;
+
+    boolean negative = (i < end && bytes[i] == '-');
+    if (negative) {
+      i++;
+    }
+
+    long mantissa = 0;
+    int exponent = 0;
+
+    int digitsStart = i;
+    int d;
+    while (i < end && (d = bytes[i] - '0') >= 0 && d <= 9) {
+      mantissa = 10 * mantissa + d;
+      i++;
+    }
+    int digits = i - digitsStart;
+
+    boolean integral = true;
+
+    if (digits > 0 && i < end && bytes[i] == '.') {
+      integral = false;
+      i++;
+
+      int fractionStart = i;
+      while (i < end && (d = bytes[i] - '0') >= 0 && d <= 9) {
+        mantissa = 10 * mantissa + d;
+        i++;
+      }
+
+      exponent = fractionStart - i;
+      digits += i - fractionStart;
+      if (i == fractionStart) {
+        digits = 0;
+      }
+    }
+
+    if (digits > 0 && i < end && (bytes[i] == 'e' || bytes[i] == 'E')) {
+      integral = false;
+      i++;
+
+      boolean negativeExponent = (i < end && bytes[i] == '-');
+      if (negativeExponent || (i < end && bytes[i] == '+')) {
+        i++;
+      }
+
+      int exponentStart = i;
+      int e = 0;
+      while (i < end && (d = bytes[i] - '0') >= 0 && d <= 9 && e <= MAX_EXPONENT) {
+        e = 10 * e + d;
+        i++;
+      }
+
+      exponent += negativeExponent ? -e : e;
+      if (i == exponentStart) {
+        digits = 0;
+      }
+    }
+
+    if (digits == 0 || digits > MAX_DIGITS || i != end) {
+      // Invalid, long or unusual numbers
+      return decode(new String(bytes, start, end - start, StandardCharsets.ISO_8859_1), numberPolicy);
+    }
+
+    if (integral) {
+      return Long.valueOf(negative ? -mantissa : mantissa);
+    }
+
+    if (numberPolicy == NumberPolicy.BIG_DECIMAL) {
+      return BigDecimal.valueOf(negative ? -mantissa : mantissa, -exponent);
+    }
+
+    if (mantissa < (1L << 53) && exponent >= -22 && exponent <= 22) {
+      double value = (double) mantissa;
+      value = (exponent < 0) ? value / POWERS_OF_TEN[-exponent] : value * POWERS_OF_TEN[exponent];
+      return Double.valueOf(negative ? -value : value);
+    }
+
+    return decode(new String(bytes, start, end - start, StandardCharsets.ISO_8859_1), numberPolicy);
+  }
+
+  /**
+   * Converts a token of characters; tokens that are long or contain non-ASCII
+   * digits are converted by the JDK parsers.
+   *
+   * @param scratch
+   *          Buffer the characters are copied into.
+   */
+  static Number decode(char[] chars, int start, int end, byte[] scratch, NumberPolicy numberPolicy)
+      throws SerializationException {
+    int length = end - start;
+    if (length <= scratch.length) {
+      int i = 0;
+      while (i < length && chars[start + i] < 0x80) {
+        scratch[i] = (byte) chars[start + i];
+        i++;
+      }
+
+      if (i == length) {
+        return decode(scratch, 0, length, numberPolicy);
+      }
+    }
+
+    return decode(new String(chars, start, length), numberPolicy);
+  }
+
+  /**
+   * Converts a token with the JDK parsers.
+   */
+  static Number decode(String text, NumberPolicy numberPolicy) throws SerializationException {
+    try {
+      if (text.indexOf('.') == -1 && text.indexOf('e') == -1 && text.indexOf('E') == -1) {
+        try {
+          return Long.valueOf(Long.parseLong(text));
+        } catch (NumberFormatException exception) {
+          return new BigInteger(text);
+        }
+      }
+
+      if (numberPolicy == NumberPolicy.BIG_DECIMAL) {
+        return new BigDecimal(text);
+      }
+
+      return Double.valueOf(Double.parseDouble(text));
+    } catch (NumberFormatException exception) {
+      throw new SerializationException("Invalid number in input stream.", exception);
+    }
+  }
+}
@@ -0,0 +1,40 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.veracloud.jton.serialization;
+
+/**
+ * Determines how {@link JsonSerializer} represents the numbers it reads.
+ *
+ * @see JsonSerializer#setNumberPolicy(NumberPolicy)
+ */
+public enum NumberPolicy {
+  /**
+   * Numbers keep their text and are converted when they are accessed
+   * ({@link com.veracloud.jton.internal.LazilyParsedNumber}); invalid numbers
+   * are only detected then. This is the default.
+   */
+  LAZY,
+
+  /**
+   * Integers are read as {@link Long} ({@link java.math.BigInteger} if they do
+   * not fit), other numbers as {@link Double}.
+   */
+  DOUBLE,
+
+  /**
+   * Integers are read as {@link Long} ({@link java.math.BigInteger} if they do
+   * not fit), other numbers as exact {@link java.math.BigDecimal}s.
+   */
+  BIG_DECIMAL
+}
@@ -0,0 +1,789 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.veracloud.jton.serialization;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+import com.veracloud.jton.JtonElement;
+
+/**
+ * Parses UTF-8 encoded JSON concurrently.
+ * <p>
+ * A sequential scan tracks nesting, strings and comments to cut the input
+ * into chunks of complete values, which are parsed on a {@link ForkJoinPool}
+ * while the scan continues. Two layouts are supported: a sequence of
+ * top-level values (JSON Lines) and the elements of a top-level array, in a
+ * byte array or in a file.
+ */
+final class ParallelParser {
+  /** Default minimum size of the chunks that are parsed as one task. */
+  static final int CHUNK_SIZE = 256 * 1024;
+
+  private final ForkJoinPool pool;
+  private final int chunkSize;
+  private final SymbolTable symbolTable;
+  private final NumberPolicy numberPolicy;
+  private final boolean strict;
+
+  /**
+   * @param strict
+   *          Whether only standard JSON is accepted.
+   */
+  ParallelParser(ForkJoinPool pool, int chunkSize, SymbolTable symbolTable, NumberPolicy numberPolicy,
+      boolean strict) {
+    this.pool = pool;
+    this.chunkSize = chunkSize;
+    this.symbolTable = symbolTable;
+    this.numberPolicy = numberPolicy;
+    this.strict = strict;
+  }
+
+  /**
+   * Reads a sequence of top-level values from a stream, keeping a bounded
+   * number of chunks in flight.
+   *
+   * @param ordered
+   *          If <tt>false</tt>, the values of each chunk are passed to the
+   *          consumer from the thread that parsed it, as soon as it is parsed.
+   */
+  void readValues(InputStream inputStream, Consumer<? super JtonElement> consumer, boolean ordered)
+      throws IOException, SerializationException {
+    Splitter splitter = new Splitter(false);
+    Pipeline pipeline = new Pipeline(consumer, ordered);
+    try {
+      byte[] buffer = new byte[chunkSize * 2];
+      int start = 0;
+      int limit = 0;
+
+      for (;;) {
+        if (limit == buffer.length) {
+          if (start > 0) {
+            System.arraycopy(buffer, start, buffer, 0, limit - start);
+            splitter.scanned -= start;
+            limit -= start;
+            start = 0;
+          } else {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+          }
+        }
+
+        int count = inputStream.read(buffer, limit, buffer.length - limit);
+        if (count == -1) {
+          break;
+        }
+        limit += count;
+
+        int end;
+        while ((end = splitter.split(buffer, start, limit, chunkSize)) != -1) {
+          pipeline.submit(Arrays.copyOfRange(buffer, start, end), 0, end - start, splitter.chunkLine);
+          start = end;
+        }
+      }
+
+      if (start < limit) {
+        pipeline.submit(Arrays.copyOfRange(buffer, start, limit), 0, limit - start, splitter.chunkLine);
+      }
+
+      pipeline.finish();
+    } finally {
+      pipeline.cancel();
+    }
+  }
+
+  /**
+   * Reads a sequence of top-level values from bytes, parsing the chunks in
+   * place.
+   *
+   * @see #readValues(InputStream, Consumer, boolean)
+   */
+  void readValues(byte[] bytes, int offset, int length, Consumer<? super JtonElement> consumer, boolean ordered)
+      throws IOException, SerializationException {
+    Splitter splitter = new Splitter(false);
+    Pipeline pipeline = new Pipeline(consumer, ordered);
+    try {
+      int start = offset;
+      int limit = offset + length;
+
+      int end;
+      while ((end = splitter.split(bytes, start, limit, chunkSize)) != -1) {
+        pipeline.submit(bytes, start, end - start, splitter.chunkLine);
+        start = end;
+      }
+
+      if (start < limit) {
+        pipeline.submit(bytes, start, limit - start, splitter.chunkLine);
+      }
+
+      pipeline.finish();
+    } finally {
+      pipeline.cancel();
+    }
+  }
+
+  /**
+   * Reads the elements of an array in place.
+   *
+   * @param start
+   *          The index of the first byte after the opening bracket.
+   * @param limit
+   *          The end of the input.
+   *
+   * @return The elements in order, or <tt>null</tt> if the array is not
+   *         closed or any element cannot be read; the input must then be read
+   *         sequentially to report the error as usual.
+   */
+  List<JtonElement> readElements(byte[] bytes, int start, int limit) throws IOException {
+    Splitter splitter = new Splitter(true);
+    ArrayDeque<ForkJoinTask<List<JtonElement>>> tasks = new ArrayDeque<>();
+    try {
+      int end;
+      while ((end = splitter.split(bytes, start, limit, chunkSize)) != -1) {
+        int offset = start;
+        int length = end - start;
+        boolean first = tasks.isEmpty();
+        boolean last = splitter.closed;
+        tasks.add(pool.submit(() -> readElementChunk(newTokenizer(bytes, offset, length, false), first, last)));
+        start = end;
+
+        if (last) {
+          break;
+        }
+      }
+
+      if (!splitter.closed) {
+        return null;
+      }
+
+      if (strict) {
+        // Only whitespace may follow the closing bracket
+        for (int i = end + 1; i < limit; i++) {
+          if (!JsonTokenizer.isJsonWhitespace(bytes[i])) {
+            return null;
+          }
+        }
+      }
+
+      return collect(tasks);
+    } catch (SerializationException | RuntimeException exception) {
+      return null;
+    } finally {
+      for (ForkJoinTask<List<JtonElement>> task : tasks) {
+        task.cancel(false);
+      }
+    }
+  }
+
+  /**
+   * Reads the elements of an array that makes up a file. The file is scanned
+   * through a buffer of a few chunks, and each chunk is parsed from a mapped
+   * region of the file, so the input is not copied onto the heap as a whole
+   * and the file may be larger than 2 GB.
+   *
+   * @return The elements in order, or <tt>null</tt> if the file does not hold
+   *         an array, the array is not closed or any element cannot be read;
+   *         the file must then be read sequentially.
+   *
+   * @see #readElements(byte[], int, int)
+   */
+  List<JtonElement> readElements(FileChannel channel) throws IOException {
+    byte[] buffer = new byte[chunkSize * 2];
+    int limit = Math.max(channel.read(ByteBuffer.wrap(buffer), 0), 0);
+
+    // The array must start in the first buffer
+    Utf8JsonTokenizer tokenizer = new Utf8JsonTokenizer();
+    tokenizer.reset(buffer, 0, limit);
+
+    int c;
+    try {
+      c = strict ? tokenizer.skipWhitespace() : tokenizer.skipWhitespaceAndComments();
+    } catch (SerializationException exception) {
+      c = -1;
+    }
+
+    if (c != '[') {
+      return null;
+    }
+
+    Splitter splitter = new Splitter(true);
+    MappedRegions regions = new MappedRegions(channel);
+    ArrayDeque<ForkJoinTask<List<JtonElement>>> tasks = new ArrayDeque<>();
+    try {
+      // File position of the start of the buffer
+      long base = 0;
+      int start = tokenizer.position() + 1;
+      int end = -1;
+
+      while (!splitter.closed) {
+        while ((end = splitter.split(buffer, start, limit, chunkSize)) != -1) {
+          ByteBuffer chunk = regions.map(base + start, end - start);
+          boolean first = tasks.isEmpty();
+          boolean last = splitter.closed;
+          tasks.add(pool.submit(() -> readElementChunk(newTokenizer(chunk), first, last)));
+          start = end;
+
+          if (last) {
+            break;
+          }
+        }
+
+        if (splitter.closed) {
+          break;
+        }
+
+        if (splitter.depth == 0) {
+          // A brace closed the array
+          return null;
+        }
+
+        if (limit == buffer.length) {
+          if (start > 0) {
+            System.arraycopy(buffer, start, buffer, 0, limit - start);
+            splitter.scanned -= start;
+            base += start;
+            limit -= start;
+            start = 0;
+          } else {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+          }
+        }
+
+        int count = channel.read(ByteBuffer.wrap(buffer, limit, buffer.length - limit), base + limit);
+        if (count == -1) {
+          return null;
+        }
+        limit += count;
+      }
+
+      if (strict) {
+        // Only whitespace may follow the closing bracket
+        for (int i = end + 1; i != -1;) {
+          for (; i < limit; i++) {
+            if (!JsonTokenizer.isJsonWhitespace(buffer[i])) {
+              return null;
+            }
+          }
+
+          base += limit;
+          limit = channel.read(ByteBuffer.wrap(buffer), base);
+          i = (limit == -1) ? -1 : 0;
+        }
+      }
+
+      return collect(tasks);
+    } catch (SerializationException | RuntimeException exception) {
+      return null;
+    } finally {
+      for (ForkJoinTask<List<JtonElement>> task : tasks) {
+        task.cancel(false);
+      }
+    }
+  }
+
+  /**
+   * Waits for the tasks reading the chunks of an array and returns their
+   * elements in order.
+   */
+  private static List<JtonElement> collect(ArrayDeque<ForkJoinTask<List<JtonElement>>> tasks)
+      throws IOException, SerializationException {
+    int size = 0;
+    for (ForkJoinTask<List<JtonElement>> task : tasks) {
+      size += join(task).size();
+    }
+
+    ArrayList<JtonElement> elements = new ArrayList<>(size);
+    for (ForkJoinTask<List<JtonElement>> task : tasks) {
+      elements.addAll(task.join());
+    }
+    tasks.clear();
+
+    return elements;
+  }
+
+  /**
+   * Waits for a task and rethrows its failure.
+   */
+  static <T> T join(ForkJoinTask<T> task) throws IOException, SerializationException {
+    try {
+      return task.get();
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    } catch (ExecutionException exception) {
+      Throwable cause = exception.getCause();
+      while (cause != null && cause.getClass() == RuntimeException.class && cause.getCause() != null) {
+        // Checked exceptions of submitted callables are wrapped by the pool
+        cause = cause.getCause();
+      }
+
+      if (cause instanceof SerializationException) {
+        throw (SerializationException) cause;
+      } else if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new SerializationException(cause);
+    }
+  }
+
+  /**
+   * Creates a tokenizer for a chunk. Only the first chunk of the input may
+   * start with a byte order mark.
+   */
+  private Utf8JsonTokenizer newTokenizer(byte[] bytes, int offset, int length, boolean first)
+      throws SerializationException {
+    if (!first && length >= 3
+        && bytes[offset] == (byte) 0xEF && bytes[offset + 1] == (byte) 0xBB && bytes[offset + 2] == (byte) 0xBF) {
+      throw new SerializationException("Unexpected character in input stream.");
+    }
+
+    Utf8JsonTokenizer tokenizer = new Utf8JsonTokenizer();
+    tokenizer.symbolTable = symbolTable;
+    tokenizer.numberPolicy = numberPolicy;
+    tokenizer.reset(bytes, offset, length);
+    return tokenizer;
+  }
+
+  /**
+   * Creates a tokenizer for a chunk of an array in a file, which cannot start
+   * with a byte order mark.
+   */
+  private Utf8JsonTokenizer newTokenizer(ByteBuffer chunk) throws IOException, SerializationException {
+    int position = chunk.position();
+    if (chunk.remaining() >= 3
+        && chunk.get(position) == (byte) 0xEF && chunk.get(position + 1) == (byte) 0xBB
+        && chunk.get(position + 2) == (byte) 0xBF) {
+      throw new SerializationException("Unexpected character in input stream.");
+    }
+
+    Utf8JsonTokenizer tokenizer = new Utf8JsonTokenizer();
+    tokenizer.symbolTable = symbolTable;
+    tokenizer.numberPolicy = numberPolicy;
+    tokenizer.reset(chunk);
+    return tokenizer;
+  }
+
+  private List<JtonElement> readValueChunk(byte[] bytes, int offset, int length, int line, boolean first)
+      throws IOException, SerializationException {
+    Utf8JsonTokenizer tokenizer = newTokenizer(bytes, offset, length, first);
+
+    ArrayList<JtonElement> values = new ArrayList<>();
+    try {
+      if (strict) {
+        while (tokenizer.skipWhitespace() != -1) {
+          values.add(tokenizer.readStrictValue());
+        }
+
+        return values;
+      }
+
+      while (tokenizer.skipWhitespaceAndComments() != -1) {
+        int position = tokenizer.position();
+        values.add(tokenizer.readValue());
+
+        if (tokenizer.position() == position) {
+          // A sign that does not start a number
+          throw new SerializationException("Unexpected character in input stream.");
+        }
+      }
+    } catch (SerializationException exception) {
+      System.err.println("An error occurred while processing input at line number "
+          + (line + tokenizer.getLineNumber() - 1) + ", column " + tokenizer.getColumnNumber());
+      throw exception;
+    }
+
+    return values;
+  }
+
+  /**
+   * Reads the elements of a chunk of an array, as standard JSON if strict.
+   */
+  private List<JtonElement> readElementChunk(Utf8JsonTokenizer tokenizer, boolean first, boolean last)
+      throws IOException, SerializationException {
+    return strict ? readStrictElementChunk(tokenizer, first, last) : readElementChunk(tokenizer);
+  }
+
+  /**
+   * Reads comma separated elements; a trailing comma is allowed.
+   */
+  private List<JtonElement> readElementChunk(Utf8JsonTokenizer tokenizer) throws IOException, SerializationException {
+    ArrayList<JtonElement> elements = new ArrayList<>();
+    int c = tokenizer.skipWhitespaceAndComments();
+    while (c != -1) {
+      elements.add(tokenizer.readValue());
+      c = tokenizer.skipWhitespaceAndComments();
+
+      if (c == ',') {
+        tokenizer.consume();
+        c = tokenizer.skipWhitespaceAndComments();
+      } else if (c != -1) {
+        throw new SerializationException("Unexpected character in input stream.");
+      }
+    }
+
+    return elements;
+  }
+  /**
+   * Reads the elements of a chunk as standard JSON. Every element but the last
+   * of the array is followed by a comma, and only an array without elements
+   * has an empty chunk.
+   */
+  private List<JtonElement> readStrictElementChunk(Utf8JsonTokenizer tokenizer, boolean first, boolean last)
+      throws IOException, SerializationException {
+    ArrayList<JtonElement> elements = new ArrayList<>();
+    int c = tokenizer.skipWhitespace();
+    if (c == -1 && first && last) {
+      return elements;
+    }
+
+    for (;;) {
+      elements.add(tokenizer.readStrictValue());
+      c = tokenizer.skipWhitespace();
+
+      if (c == -1 && last) {
+        return elements;
+      }
+
+      if (c != ',') {
+        throw new SerializationException("Unexpected character in input stream.");
+      }
+
+      tokenizer.consume();
+      if (tokenizer.skipWhitespace() == -1) {
+        if (last) {
+          throw new SerializationException("Unexpected character in input stream.");
+        }
+
+        return elements;
+      }
+    }
+  }
+
+
+  /**
+   * Maps the chunks of a file as regions of windows of
+   * {@link Utf8JsonTokenizer#MAPPED_WINDOW_SIZE} bytes, so that they do not
+   * take a mapping each; a chunk that does not fit in a window is mapped by
+   * itself. Chunks are mapped in order.
+   */
+  private static final class MappedRegions {
+    private final FileChannel channel;
+
+    private ByteBuffer window = null;
+    private long windowStart = 0;
+    private long windowEnd = 0;
+
+    MappedRegions(FileChannel channel) {
+      this.channel = channel;
+    }
+
+    ByteBuffer map(long position, int length) throws IOException {
+      if (position + length > windowEnd) {
+        long size = Math.min(Utf8JsonTokenizer.MAPPED_WINDOW_SIZE, channel.size() - position);
+        if (position < windowEnd || size < length) {
+          return channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        }
+
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        windowStart = position;
+        windowEnd = position + size;
+      }
+
+      ByteBuffer region = window.duplicate();
+      region.limit((int) (position + length - windowStart));
+      region.position((int) (position - windowStart));
+      return region;
+    }
+  }
+
+  /**
+   * Parses chunks of top-level values and delivers their values, keeping a
+   * bounded number of chunks in flight.
+   */
+  private final class Pipeline {
+    private final Consumer<? super JtonElement> consumer;
+    private final boolean ordered;
+    private final int maxPending = Math.max(2, pool.getParallelism() * 2);
+    private final ArrayDeque<ForkJoinTask<List<JtonElement>>> pending = new ArrayDeque<>();
+    private boolean first = true;
+
+    Pipeline(Consumer<? super JtonElement> consumer, boolean ordered) {
+      this.consumer = consumer;
+      this.ordered = ordered;
+    }
+
+    void submit(byte[] bytes, int offset, int length, int line) throws IOException, SerializationException {
+      boolean first = this.first;
+      this.first = false;
+
+      pending.add(pool.submit(() -> {
+        List<JtonElement> values = readValueChunk(bytes, offset, length, line, first);
+        if (!ordered) {
+          values.forEach(consumer);
+        }
+        return values;
+      }));
+
+      if (pending.size() > maxPending) {
+        deliver(join(pending.remove()));
+      }
+    }
+
+    void finish() throws IOException, SerializationException {
+      while (!pending.isEmpty()) {
+        deliver(join(pending.remove()));
+      }
+    }
+
+    void cancel() {
+      for (ForkJoinTask<List<JtonElement>> task : pending) {
+        task.cancel(false);
+      }
+      pending.clear();
+    }
+
+    private void deliver(List<JtonElement> values) {
+      if (ordered) {
+        values.forEach(consumer);
+      }
+    }
+  }
+
+  /**
+   * Finds the boundaries between values outside of any string or comment.
+   * <p>
+   * For top-level values, boundaries follow a line feed or a closing bracket
+   * outside of any container. For array elements, they follow a comma at the
+   * first level; the closing bracket of the array ends the last chunk.
+   * Scanning state is kept between calls, so input can be supplied
+   * incrementally.
+   */
+  static final class Splitter {
+    private static final int CODE = 0;
+    private static final int STRING = 1;
+    private static final int ESCAPE = 2;
+    private static final int SLASH = 3;
+    private static final int LINE_COMMENT = 4;
+    private static final int BLOCK_COMMENT = 5;
+    private static final int BLOCK_COMMENT_STAR = 6;
+
+    /** Characters that change the state in code. */
+    private static final boolean[] STRUCTURAL = new boolean[256];
+
+    static {
+      for (char c : "\"'[]{},/\n".toCharArray()) {
+        STRUCTURAL[c] = true;
+      }
+    }
+
+    private final boolean elements;
+
+    /** Index up to which the input has been scanned. */
+    int scanned = -1;
+
+    /** Whether the closing bracket of the array has been found. */
+    boolean closed = false;
+
+    /** Line number of the chunk returned last. */
+    int chunkLine = 1;
+    private int nextLine = 1;
+
+    private int line = 1;
+
+    private int state = CODE;
+    private int quote = 0;
+    private int depth;
+
+    Splitter(boolean elements) {
+      this.elements = elements;
+      this.depth = elements ? 1 : 0;
+    }
+
+    /**
+     * Returns the end of the next chunk starting at <tt>start</tt>, i.e. the
+     * first boundary at least <tt>chunkSize</tt> bytes after it, or -1 if
+     * there is none before <tt>limit</tt>.
+     */
+    int split(byte[] bytes, int start, int limit, int chunkSize) {
+      int i = Math.max(scanned, start);
+      int min = (int) Math.min((long) start + chunkSize, Integer.MAX_VALUE);
+
+      // Work on locals; they are stored back when the scan stops
+      int state = this.state;
+      int quote = this.quote;
+      int depth = this.depth;
+      int line = this.line;
+
+      int boundary = -1;
+
+      scan:
+      while (i < limit) {
+        int b;
+
+        switch (state) {
+        case CODE:
+          // Skip plain characters in one go
+          while (!STRUCTURAL[(b = bytes[i++]) & 0xFF]) {
+            if (i == limit) {
+              break scan;
+            }
+          }
+
+          if (b == '"' || b == '\'') {
+            quote = b;
+            state = STRING;
+          } else if (b == '[' || b == '{') {
+            depth++;
+          } else if (b == ']' || b == '}') {
+            depth--;
+            if (elements) {
+              if (depth == 0) {
+                // A brace cannot close the array; leave the error to the caller
+                closed = (b == ']');
+                boundary = closed ? i - 1 : -1;
+                break scan;
+              }
+            } else if (depth <= 0) {
+              depth = 0;
+              if (i >= min) {
+                boundary = i;
+                break scan;
+              }
+            }
+          } else if (b == ',') {
+            if (elements && depth == 1 && i >= min) {
+              boundary = i;
+              break scan;
+            }
+          } else if (b == '/') {
+            state = SLASH;
+          } else {
+            line++;
+            if (!elements && depth == 0 && i >= min) {
+              boundary = i;
+              break scan;
+            }
+          }
+          break;
+
+        case STRING:
+          while ((b = bytes[i++]) != quote) {
+            if (b == '\\') {
+              if (i == limit) {
+                state = ESCAPE;
+                break scan;
+              }
+              b = bytes[i++];
+            }
+
+            if (b == '\n') {
+              line++;
+            }
+
+            if (i == limit) {
+              break scan;
+            }
+          }
+
+          state = CODE;
+          break;
+
+        case ESCAPE:
+          if (bytes[i++] == '\n') {
+            line++;
+          }
+          state = STRING;
+          break;
+
+        case SLASH:
+          b = bytes[i++];
+          if (b == '/') {
+            state = LINE_COMMENT;
+          } else if (b == '*') {
+            state = BLOCK_COMMENT;
+          } else {
+            // Not a comment; the tokenizer reports the error
+            state = CODE;
+            if (b == '\n') {
+              line++;
+            }
+          }
+          break;
+
+        case LINE_COMMENT:
+          b = bytes[i++];
+          if (b == '\n') {
+            line++;
+            state = CODE;
+            if (!elements && depth == 0 && i >= min) {
+              boundary = i;
+              break scan;
+            }
+          } else if (b == '\r') {
+            state = CODE;
+          }
+          break;
+
+        case BLOCK_COMMENT:
+          b = bytes[i++];
+          if (b == '*') {
+            state = BLOCK_COMMENT_STAR;
+          } else if (b == '\n') {
+            line++;
+          }
+          break;
+
+        case BLOCK_COMMENT_STAR:
+          // As in the tokenizer, the character after a '*' is not examined again
+          b = bytes[i++];
+          state = (b == '/') ? CODE : BLOCK_COMMENT;
+          if (b == '\n') {
+            line++;
+          }
+          break;
+        }
+      }
+
+      this.state = state;
+      this.quote = quote;
+      this.depth = depth;
+      this.line = line;
+
+      if (boundary == -1) {
+        scanned = limit;
+        chunkLine = nextLine;
+        return -1;
+      }
+
+      scanned = i;
+      chunkLine = nextLine;
+      nextLine = line;
+      return boundary;
+    }
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.veracloud.jton.serialization;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+
+import com.veracloud.jton.JTON;
+
+/**
+ * Tree of the branches of a document selected by a set of paths, as returned
+ * by {@link JTON#parse(String)}.
+ * <p>
+ * Path steps select object members by name and, like
+ * {@link JTON#get(com.veracloud.jton.JtonObject, List)}, array elements by
+ * bracketed index (<tt>"[2"</tt>). A node at the end of a path is
+ * <i>complete</i>: the whole value at that position is selected.
+ */
+final class Projection {
+  private boolean complete = false;
+
+  private HashMap<String, Projection> members = null;
+  private HashMap<Integer, Projection> elements = null;
+
+  private Projection() {
+  }
+
+  /**
+   * Builds the projection of the given paths. An empty path selects the whole
+   * document.
+   */
+  static Projection of(Collection<? extends List<String>> paths) {
+    if (paths == null) {
+      throw new IllegalArgumentException("paths is null.");
+    }
+
+    Projection root = new Projection();
+    for (List<String> path : paths) {
+      if (path == null) {
+        throw new IllegalArgumentException("path is null.");
+      }
+
+      Projection node = root;
+      for (int i = 0, n = path.size(); i < n && !node.complete; i++) {
+        node = node.add(path.get(i));
+      }
+
+      node.complete = true;
+      node.members = null;
+      node.elements = null;
+    }
+
+    return root;
+  }
+
+  private Projection add(String step) {
+    if (members == null) {
+      members = new HashMap<>();
+    }
+
+    Projection child = members.get(step);
+    if (child == null) {
+      child = new Projection();
+      members.put(step, child);
+
+      Integer index = parseIndex(step);
+      if (index != null) {
+        if (elements == null) {
+          elements = new HashMap<>();
+        }
+
+        elements.put(index, child);
+      }
+    }
+
+    return child;
+  }
+
+  private static Integer parseIndex(String step) {
+    if (!step.startsWith("[")) {
+      return null;
+    }
+
+    try {
+      return Integer.valueOf(step.substring(1).trim());
+    } catch (NumberFormatException exception) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns whether the whole value at this position is selected.
+   */
+  boolean isComplete() {
+    return complete;
+  }
+
+  /**
+   * Returns the selection within the given member of an object, or
+   * <tt>null</tt> if the member is not selected.
+   */
+  Projection member(String key) {
+    return (members == null) ? null : members.get(key);
+  }
+
+  /**
+   * Returns the selection within the given element of an array, or
+   * <tt>null</tt> if the element is not selected.
+   */
+  Projection element(int index) {
+    return (elements == null) ? null : elements.get(index);
+  }
+}
@@ -0,0 +1,191 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.veracloud.jton.serialization;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compares the word-at-a-time scanning of {@link ByteScanner} with its scalar
+ * variants on the string contents and indentation of a generated, text-heavy
+ * document, then reports the parsing throughput of the whole document.
+ * <p>
+ * Usage: {@code ScanningBenchmark [size in MB] [iterations]}.
+ */
+public class ScanningBenchmark {
+
+  private static volatile int sink;
+
+  public static void main(String[] args) throws IOException, SerializationException {
+    int size = (args.length > 0 ? Integer.parseInt(args[0]) : 16) << 20;
+    int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+    byte[] json = generate(size);
+    int[] strings = find(json, '"');
+    int[] indents = find(json, '\n');
+    System.out.println("Document: " + (json.length >> 10) + " KB, " + strings.length / 2 + " strings, "
+        + indents.length + " indented lines");
+
+    ByteBuffer words = ByteScanner.words(json);
+
+    for (int i = 0; i < iterations; i++) {
+      long t = System.nanoTime();
+      sink = scanStringsScalar(json, strings);
+      long scalar = System.nanoTime() - t;
+
+      t = System.nanoTime();
+      sink = scanStrings(words, strings);
+      long swar = System.nanoTime() - t;
+
+      report("strings   ", scalar, swar);
+
+      t = System.nanoTime();
+      sink = skipIndentsScalar(json, indents);
+      scalar = System.nanoTime() - t;
+
+      t = System.nanoTime();
+      sink = skipIndents(words, indents);
+      swar = System.nanoTime() - t;
+
+      report("whitespace", scalar, swar);
+    }
+
+    JsonSerializer lenient = new JsonSerializer();
+    JsonSerializer strict = new JsonSerializer();
+    strict.setStrict(true);
+
+    for (int i = 0; i < iterations; i++) {
+      long t = System.nanoTime();
+      lenient.readObject(json);
+      long lenientTime = System.nanoTime() - t;
+
+      t = System.nanoTime();
+      strict.readObject(json);
+      long strictTime = System.nanoTime() - t;
+
+      System.out.printf("parse      lenient %8.1f MB/s   strict %8.1f MB/s%n", throughput(json.length, lenientTime),
+          throughput(json.length, strictTime));
+    }
+  }
+
+  private static double throughput(long length, long nanos) {
+    return (length / 1048576.0) / (nanos / 1e9);
+  }
+
+  private static void report(String name, long scalar, long swar) {
+    System.out.printf("%s scalar %8.2f ms   words %8.2f ms   (x%.2f)%n", name, scalar / 1e6, swar / 1e6,
+        (double) scalar / swar);
+  }
+
+  /**
+   * Scans the contents of each string, given by the offsets of its quotes.
+   */
+  private static int scanStringsScalar(byte[] json, int[] strings) {
+    int sum = 0;
+    for (int i = 0; i < strings.length; i += 2) {
+      sum += ByteScanner.scanStringScalar(json, strings[i] + 1, strings[i + 1] + 1, (byte) '"');
+    }
+
+    return sum;
+  }
+
+  private static int scanStrings(ByteBuffer words, int[] strings) {
+    int sum = 0;
+    for (int i = 0; i < strings.length; i += 2) {
+      sum += ByteScanner.scanString(words, strings[i] + 1, strings[i + 1] + 1, (byte) '"');
+    }
+
+    return sum;
+  }
+
+  private static int skipIndentsScalar(byte[] json, int[] indents) {
+    int sum = 0;
+    for (int indent : indents) {
+      sum += ByteScanner.skipWhitespaceScalar(json, indent, json.length);
+    }
+
+    return sum;
+  }
+
+  private static int skipIndents(ByteBuffer words, int[] indents) {
+    int sum = 0;
+    for (int indent : indents) {
+      sum += ByteScanner.skipWhitespace(words, indent, words.limit());
+    }
+
+    return sum;
+  }
+
+  /**
+   * Returns the offsets of the given byte in the document.
+   */
+  private static int[] find(byte[] json, char c) {
+    int[] offsets = new int[1024];
+    int n = 0;
+
+    for (int i = 0; i < json.length; i++) {
+      if (json[i] == c) {
+        if (n == offsets.length) {
+          offsets = Arrays.copyOf(offsets, n << 1);
+        }
+
+        offsets[n++] = i;
+      }
+    }
+
+    return Arrays.copyOf(offsets, n);
+  }
+
+  private static byte[] generate(int size) {
+    String[] words = { "lorem", "ipsum", "dolor", "sit", "amet", "consectetur", "adipiscing", "elit", "sed", "do",
+        "eiusmod", "tempor", "incididunt", "ut", "labore", "et", "dolore", "magna", "aliqua" };
+    Random random = new Random(1);
+
+    StringBuilder builder = new StringBuilder(size + 4096);
+    builder.append('[');
+
+    for (int i = 0; builder.length() < size; i++) {
+      builder.append(i > 0 ? ",\n" : "\n");
+      builder.append("    {\n");
+      builder.append("        \"id\": ").append(i).append(",\n");
+      builder.append("        \"title\": \"").append(sentence(random, words, 4)).append("\",\n");
+      builder.append("        \"body\": \"").append(sentence(random, words, 60)).append("\",\n");
+      builder.append("        \"comments\": [\n");
+      for (int j = 0, n = random.nextInt(4); j < n; j++) {
+        builder.append(j > 0 ? ",\n" : "").append("            \"").append(sentence(random, words, 20)).append('"');
+      }
+      builder.append("\n        ]\n");
+      builder.append("    }");
+    }
+
+    builder.append("\n]\n");
+    return builder.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static String sentence(Random random, String[] words, int length) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < length; i++) {
+      if (i > 0) {
+        builder.append(' ');
+      }
+
+      builder.append(words[random.nextInt(words.length)]);
+    }
+
+    return builder.toString();
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.veracloud.jton.serialization;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Bounded table of canonical {@link String} instances for object keys.
+ * <p>
+ * Parsers look keys up directly in their scan buffer, so a key that is already
+ * in the table is returned without a new string being allocated, and all
+ * occurrences of a key share one instance. The table has a fixed number of
+ * slots; when a slot is taken by a different key, the newer key replaces it.
+ * <p>
+ * A table can be shared by several {@link JsonSerializer}s, also concurrently:
+ * slots only ever hold complete, immutable strings.
+ */
+public final class SymbolTable {
+  /** Default number of slots. */
+  public static final int DEFAULT_CAPACITY = 512;
+
+  /** Keys longer than this are not kept in the table. */
+  public static final int MAX_LENGTH = 64;
+
+  private final String[] symbols;
+  private final int mask;
+
+  public SymbolTable() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param capacity
+   *          The number of slots; it is rounded up to a power of two.
+   */
+  public SymbolTable(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be positive.");
+    }
+
+    int size = Integer.highestOneBit(Math.min(capacity, 1 << 30));
+    if (size < capacity) {
+      size <<= 1;
+    }
+
+    this.symbols = new String[size];
+    this.mask = size - 1;
+  }
+
+  /**
+   * Returns the canonical instance of the string formed by the given
+   * characters.
+   */
+  String intern(char[] chars, int offset, int length) {
+    if (length > MAX_LENGTH) {
+      return new String(chars, offset, length);
+    }
+
+    int hash = 0;
+    for (int i = offset, end = offset + length; i < end; i++) {
+      hash = 31 * hash + chars[i];
+    }
+
+    int slot = spread(hash) & mask;
+    String symbol = symbols[slot];
+    if (symbol != null && symbol.length() == length) {
+      int i = 0;
+      while (i < length && symbol.charAt(i) == chars[offset + i]) {
+        i++;
+      }
+      if (i == length) {
+        return symbol;
+      }
+    }
+
+    symbol = new String(chars, offset, length);
+    symbols[slot] = symbol;
+    return symbol;
+  }
+
+  /**
+   * Returns the canonical instance of the string formed by the given ASCII
+   * bytes.
+   */
+  String intern(byte[] bytes, int offset, int length) {
+    if (length > MAX_LENGTH) {
+      return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+    }
+
+    int hash = 0;
+    for (int i = offset, end = offset + length; i < end; i++) {
+      hash = 31 * hash + bytes[i];
+    }
+
+    int slot = spread(hash) & mask;
+    String symbol = symbols[slot];
+    if (symbol != null && symbol.length() == length) {
+      int i = 0;
+      while (i < length && symbol.charAt(i) == bytes[offset + i]) {
+        i++;
+      }
+      if (i == length) {
+        return symbol;
+      }
+    }
+
+    symbol = new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+    symbols[slot] = symbol;
+    return symbol;
+  }
+
+  /**
+   * Returns the canonical instance of the given string.
+   */
+  String intern(String string) {
+    int length = string.length();
+    if (length > MAX_LENGTH) {
+      return string;
+    }
+
+    int slot = spread(string.hashCode()) & mask;
+    String symbol = symbols[slot];
+    if (string.equals(symbol)) {
+      return symbol;
+    }
+
+    symbols[slot] = string;
+    return string;
+  }
+
+  /**
+   * Removes all keys from the table.
+   */
+  public void clear() {
+    for (int i = 0; i < symbols.length; i++) {
+      symbols[i] = null;
+    }
+  }
+
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+}
@@ -0,0 +1,231 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.veracloud.jton.serialization;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * JSON emitter that encodes the text to UTF-8 itself, straight into a byte
+ * buffer.
+ * <p>
+ * The buffer is written to an output stream or a channel a block at a time,
+ * or grows to hold the whole document, which is then returned as a byte
+ * array. Runs of ASCII characters are copied without further tests;
+ * unpaired surrogates are encoded as <tt>'?'</tt>, as an
+ * {@link java.io.OutputStreamWriter} does.
+ */
+final class Utf8JsonEmitter extends JsonEmitter {
+  private static final int BLOCK_SIZE = 8192;
+
+  /** Size above which a grown buffer is not kept for reuse. */
+  private static final int MAX_RETAINED_SIZE = 64 * 1024;
+
+  private byte[] buffer = new byte[BLOCK_SIZE];
+  private int count = 0;
+
+  /** Encoded names of the key cache. */
+  private final byte[][] names = new byte[KEY_CACHE_SIZE][];
+
+  private OutputStream outputStream = null;
+  private WritableByteChannel channel = null;
+
+  /**
+   * Prepares this emitter to collect the whole document in its buffer.
+   */
+  void reset() {
+    this.outputStream = null;
+    this.channel = null;
+    this.count = 0;
+  }
+
+  /**
+   * Prepares this emitter to write to the given output stream.
+   */
+  void reset(OutputStream outputStream) {
+    reset();
+    this.outputStream = outputStream;
+  }
+
+  /**
+   * Prepares this emitter to write to the given channel.
+   */
+  void reset(WritableByteChannel channel) {
+    reset();
+    this.channel = channel;
+  }
+
+  /**
+   * Releases the destination, discarding any text not flushed.
+   */
+  void release() {
+    reset();
+
+    if (buffer.length > MAX_RETAINED_SIZE) {
+      buffer = new byte[BLOCK_SIZE];
+    }
+  }
+
+  /**
+   * Returns the document collected since {@link #reset()}.
+   */
+  byte[] toByteArray() {
+    return Arrays.copyOf(buffer, count);
+  }
+
+  @Override
+  void write(char c) throws IOException {
+    if (c < 0x80) {
+      if (count == buffer.length) {
+        require(1);
+      }
+
+      buffer[count++] = (byte) c;
+    } else {
+      write(String.valueOf(c), 0, 1);
+    }
+  }
+
+  @Override
+  void write(String string, int start, int end) throws IOException {
+    int i = start;
+
+    while (i < end) {
+      if (count == buffer.length) {
+        require(1);
+      }
+
+      byte[] buffer = this.buffer;
+      int count = this.count;
+      int limit = i + Math.min(end - i, buffer.length - count);
+
+      // ASCII run
+      while (i < limit) {
+        char c = string.charAt(i);
+        if (c >= 0x80) {
+          break;
+        }
+
+        buffer[count++] = (byte) c;
+        i++;
+      }
+
+      this.count = count;
+
+      if (i < limit) {
+        i = writeNonASCII(string, i, end);
+      }
+    }
+  }
+
+  @Override
+  void write(char[] chars, int start, int end) throws IOException {
+    require(end - start);
+
+    for (int i = start; i < end; i++) {
+      buffer[count++] = (byte) chars[i];
+    }
+  }
+
+  /**
+   * Encodes the non-ASCII character at {@code i}, and its low surrogate if it
+   * is the high surrogate of a pair.
+   *
+   * @return The index of the next character.
+   */
+  private int writeNonASCII(String string, int i, int end) throws IOException {
+    require(4);
+
+    char c = string.charAt(i);
+
+    if (c < 0x800) {
+      buffer[count++] = (byte) (0xC0 | (c >> 6));
+      buffer[count++] = (byte) (0x80 | (c & 0x3F));
+    } else if (!Character.isSurrogate(c)) {
+      buffer[count++] = (byte) (0xE0 | (c >> 12));
+      buffer[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+      buffer[count++] = (byte) (0x80 | (c & 0x3F));
+    } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(string.charAt(i + 1))) {
+      int codePoint = Character.toCodePoint(c, string.charAt(i + 1));
+      buffer[count++] = (byte) (0xF0 | (codePoint >> 18));
+      buffer[count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+      buffer[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+      buffer[count++] = (byte) (0x80 | (codePoint & 0x3F));
+      return i + 2;
+    } else {
+      buffer[count++] = '?';
+    }
+
+    return i + 1;
+  }
+
+  @Override
+  void cacheName(int slot, String text) {
+    // Unpaired surrogates are replaced with '?' as by write(String, int, int)
+    names[slot] = text.getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Override
+  void writeCachedName(int slot) throws IOException {
+    byte[] name = names[slot];
+    require(name.length);
+
+    System.arraycopy(name, 0, buffer, count, name.length);
+    count += name.length;
+  }
+
+  @Override
+  void flush() throws IOException {
+    drain();
+
+    if (outputStream != null) {
+      outputStream.flush();
+    }
+  }
+
+  /**
+   * Makes room for {@code n} bytes in the buffer, writing it to the
+   * destination or, when collecting the whole document, growing it.
+   */
+  private void require(int n) throws IOException {
+    if (buffer.length - count < n) {
+      drain();
+
+      if (buffer.length - count < n) {
+        buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, count + n));
+      }
+    }
+  }
+
+  /**
+   * Writes the buffered bytes to the destination, if any.
+   */
+  private void drain() throws IOException {
+    if (outputStream != null) {
+      outputStream.write(buffer, 0, count);
+      count = 0;
+    } else if (channel != null) {
+      ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, count);
+      while (byteBuffer.hasRemaining()) {
+        channel.write(byteBuffer);
+      }
+
+      count = 0;
+    }
+  }
+}
@@ -0,0 +1,940 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.veracloud.jton.serialization;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.veracloud.jton.internal.LazilyParsedNumber;
+
+/**
+ * JSON tokenizer that scans UTF-8 encoded bytes directly.
+ * <p>
+ * Structural characters, literals, numbers and ASCII strings are handled on
+ * the raw bytes; only string contents (and the rare unquoted key) containing
+ * non-ASCII bytes are decoded. Malformed sequences decode to U+FFFD.
+ */
+final class Utf8JsonTokenizer extends JsonTokenizer {
+  private static final char REPLACEMENT = '\uFFFD';
+
+  /** Size of the regions of a file mapped at a time. */
+  static final long MAPPED_WINDOW_SIZE = 1L << 30;
+
+  private InputStream inputStream = null;
+  private ByteBuffer source = null;
+
+  private FileChannel channel = null;
+  private long channelPosition = 0;
+  private long channelSize = 0;
+  private boolean eof = true;
+
+  /**
+   * The tokenizer's own block, allocated when a stream is first read;
+   * {@link #buffer} may point to caller's array.
+   */
+  private byte[] block;
+
+  private byte[] buffer;
+  private int pos = 0;
+  private int limit = 0;
+
+  /** Word view of {@link #buffer} for {@link ByteScanner}. */
+  private ByteBuffer words = null;
+
+  /** Start of the input in {@link #buffer} (excluding discarded text). */
+  private int origin = 0;
+
+  /** Line terminators and column offset of the text discarded so far. */
+  private int discardedLines = 0;
+  private int discardedColumn = 0;
+  private boolean discardedCR = false;
+
+  /** Number of bytes of the character returned by {@link #decode(int)}. */
+  private int width = 0;
+
+  /** Low surrogate of the supplementary character returned by {@link #decode(int)}. */
+  private char lowSurrogate = 0;
+
+  /** Low surrogate still to be returned by {@link #readChar()}. */
+  private char pendingLowSurrogate = 0;
+
+  /** Whether the token last scanned consists of ASCII characters only. */
+  private boolean scannedASCII = true;
+
+  private final StringBuilder stringBuilder = new StringBuilder();
+
+  Utf8JsonTokenizer() {
+  }
+
+  /**
+   * Prepares this tokenizer to read the given bytes in place.
+   */
+  void reset(byte[] bytes, int offset, int length) {
+    reset();
+    this.buffer = bytes;
+    this.pos = offset;
+    this.origin = offset;
+    this.limit = offset + length;
+    skipBOM();
+  }
+
+  /**
+   * Prepares this tokenizer to read the remaining bytes of the given buffer.
+   * Heap buffers are read in place; the contents of direct buffers are copied
+   * block by block.
+   */
+  void reset(ByteBuffer byteBuffer) throws IOException {
+    if (byteBuffer.hasArray()) {
+      reset(byteBuffer.array(), byteBuffer.arrayOffset() + byteBuffer.position(), byteBuffer.remaining());
+    } else {
+      reset();
+      allocateBlock();
+      this.source = byteBuffer.duplicate();
+      this.eof = false;
+      require(3, 0);
+      skipBOM();
+    }
+  }
+
+  /**
+   * Prepares this tokenizer to read the contents of the given file channel.
+   * The file is mapped into memory in windows of {@link #MAPPED_WINDOW_SIZE}
+   * bytes, so files larger than 2 GB can be read.
+   */
+  void reset(FileChannel channel) throws IOException {
+    reset();
+    allocateBlock();
+    this.channel = channel;
+    this.channelPosition = 0;
+    this.channelSize = channel.size();
+    this.source = map();
+    this.eof = false;
+    require(3, 0);
+    skipBOM();
+  }
+
+  private ByteBuffer map() throws IOException {
+    long size = Math.min(MAPPED_WINDOW_SIZE, channelSize - channelPosition);
+    ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, channelPosition, size);
+    channelPosition += size;
+    return window;
+  }
+
+  /**
+   * Prepares this tokenizer to read from the given input stream.
+   */
+  void reset(InputStream inputStream) throws IOException {
+    reset();
+    allocateBlock();
+    this.inputStream = inputStream;
+    this.eof = false;
+    require(3, 0);
+    skipBOM();
+  }
+
+  private void reset() {
+    this.inputStream = null;
+    this.source = null;
+    this.channel = null;
+    this.eof = true;
+    this.buffer = block;
+    this.pos = 0;
+    this.origin = 0;
+    this.limit = 0;
+    this.discardedLines = 0;
+    this.discardedColumn = 0;
+    this.discardedCR = false;
+  }
+
+  private void allocateBlock() {
+    if (block == null) {
+      block = new byte[BLOCK_SIZE];
+    }
+    buffer = block;
+  }
+
+  /**
+   * Releases the input; the block is kept for reuse.
+   */
+  void release() {
+    reset();
+  }
+
+  private ByteBuffer words() {
+    if (words == null || words.array() != buffer) {
+      words = ByteScanner.words(buffer);
+    }
+
+    return words;
+  }
+
+  private void skipBOM() {
+    if (limit - pos >= 3 && buffer[pos] == (byte) 0xEF && buffer[pos + 1] == (byte) 0xBB
+        && buffer[pos + 2] == (byte) 0xBF) {
+      pos += 3;
+      origin = pos;
+    }
+  }
+
+  /**
+   * Discards the buffered bytes before {@code mark} and reads the next block.
+   * {@link #pos} is adjusted to the compacted buffer.
+   *
+   * @return {@code false} at the end of the input.
+   */
+  private boolean fill(int mark) throws IOException {
+    if (eof) {
+      return false;
+    }
+
+    if (mark > 0) {
+      account(mark);
+      System.arraycopy(buffer, mark, buffer, 0, limit - mark);
+      pos -= mark;
+      limit -= mark;
+      origin = 0;
+    }
+
+    if (limit == buffer.length) {
+      buffer = block = Arrays.copyOf(buffer, buffer.length << 1);
+    }
+
+    int n;
+    if (source != null) {
+      if (!source.hasRemaining() && channel != null && channelPosition < channelSize) {
+        source = map();
+      }
+
+      n = Math.min(source.remaining(), buffer.length - limit);
+      if (n == 0) {
+        n = -1;
+      } else {
+        source.get(buffer, limit, n);
+      }
+    } else {
+      n = inputStream.read(buffer, limit, buffer.length - limit);
+      while (n == 0) {
+        n = inputStream.read(buffer, limit, buffer.length - limit);
+      }
+    }
+
+    if (n == -1) {
+      eof = true;
+      return false;
+    }
+
+    limit += n;
+    return true;
+  }
+
+  /**
+   * Ensures that at least {@code n} bytes are available from {@link #pos},
+   * keeping the buffered bytes from {@code mark}.
+   */
+  private boolean require(int n, int mark) throws IOException {
+    while (limit - pos < n) {
+      int offset = pos - mark;
+      boolean more = fill(mark);
+      mark = pos - offset;
+      if (!more) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void account(int mark) {
+    for (int i = origin; i < mark; i++) {
+      byte b = buffer[i];
+      if (b == '\n') {
+        if (!discardedCR) {
+          discardedLines++;
+        }
+        discardedColumn = 0;
+      } else if (b == '\r') {
+        discardedLines++;
+        discardedColumn = 0;
+      } else if ((b & 0xC0) != 0x80) {
+        discardedColumn++;
+      }
+      discardedCR = (b == '\r');
+    }
+  }
+
+  @Override
+  int getLineNumber() {
+    int lines = discardedLines;
+    boolean cr = discardedCR;
+    for (int i = origin; i < pos; i++) {
+      byte b = buffer[i];
+      if (b == '\r' || (b == '\n' && !cr)) {
+        lines++;
+      }
+      cr = (b == '\r');
+    }
+    return lines + 1;
+  }
+
+  @Override
+  int getColumnNumber() {
+    int column = discardedColumn;
+    for (int i = origin; i < pos; i++) {
+      byte b = buffer[i];
+      if (b == '\n' || b == '\r') {
+        column = 0;
+      } else if ((b & 0xC0) != 0x80) {
+        column++;
+      }
+    }
+    return column + 1;
+  }
+
+  /**
+   * Decodes the character at the current position without consuming it and
+   * stores its length in bytes in {@link #width}. Supplementary characters
+   * are returned as their high surrogate, the low surrogate is stored in
+   * {@link #lowSurrogate}. The buffered bytes from {@code mark} are retained
+   * if the buffer has to be refilled.
+   *
+   * @return the decoded character, or {@code -1} at the end of the input.
+   */
+  private int decode(int mark) throws IOException {
+    if (pos == limit) {
+      int offset = pos - mark;
+      boolean more = fill(mark);
+      mark = pos - offset;
+      if (!more) {
+        return -1;
+      }
+    }
+
+    int b0 = buffer[pos] & 0xFF;
+    width = 1;
+    lowSurrogate = 0;
+
+    if (b0 < 0x80) {
+      return b0;
+    }
+
+    if (b0 >= 0xC2 && b0 <= 0xDF) {
+      if (!require(2, mark) || !isContinuation(buffer[pos + 1])) {
+        return REPLACEMENT;
+      }
+      width = 2;
+      return ((b0 & 0x1F) << 6) | (buffer[pos + 1] & 0x3F);
+    }
+
+    if (b0 >= 0xE0 && b0 <= 0xEF) {
+      require(3, mark);
+      int b1 = (limit - pos > 1) ? buffer[pos + 1] & 0xFF : -1;
+      if (b1 == -1 || (b1 & 0xC0) != 0x80 || (b0 == 0xE0 && b1 < 0xA0)) {
+        return REPLACEMENT;
+      }
+      if (limit - pos < 3 || !isContinuation(buffer[pos + 2])) {
+        width = 2;
+        return REPLACEMENT;
+      }
+      width = 3;
+      int c = ((b0 & 0x0F) << 12) | ((b1 & 0x3F) << 6) | (buffer[pos + 2] & 0x3F);
+      return Character.isSurrogate((char) c) ? REPLACEMENT : c;
+    }
+
+    if (b0 >= 0xF0 && b0 <= 0xF4) {
+      require(4, mark);
+      int b1 = (limit - pos > 1) ? buffer[pos + 1] & 0xFF : -1;
+      if (b1 == -1 || (b1 & 0xC0) != 0x80 || (b0 == 0xF0 && b1 < 0x90) || (b0 == 0xF4 && b1 > 0x8F)) {
+        return REPLACEMENT;
+      }
+      if (limit - pos < 3 || !isContinuation(buffer[pos + 2])) {
+        width = 2;
+        return REPLACEMENT;
+      }
+      if (limit - pos < 4 || !isContinuation(buffer[pos + 3])) {
+        width = 3;
+        return REPLACEMENT;
+      }
+      width = 4;
+      int codePoint = ((b0 & 0x07) << 18) | ((b1 & 0x3F) << 12) | ((buffer[pos + 2] & 0x3F) << 6)
+          | (buffer[pos + 3] & 0x3F);
+      lowSurrogate = Character.lowSurrogate(codePoint);
+      return Character.highSurrogate(codePoint);
+    }
+
+    return REPLACEMENT;
+  }
+
+  private static boolean isContinuation(byte b) {
+    return (b & 0xC0) == 0x80;
+  }
+
+  /**
+   * Reads the next character of a string; supplementary characters are
+   * returned as two surrogates.
+   */
+  private int readChar() throws IOException {
+    if (pendingLowSurrogate != 0) {
+      int c = pendingLowSurrogate;
+      pendingLowSurrogate = 0;
+      return c;
+    }
+
+    if (pos < limit && buffer[pos] >= 0) {
+      return buffer[pos++];
+    }
+
+    int c = decode(pos);
+    if (c != -1) {
+      pos += width;
+      pendingLowSurrogate = lowSurrogate;
+    }
+
+    return c;
+  }
+
+  /**
+   * Returns the index of the current byte in the buffer; when reading a byte
+   * array in place, this is the index in the caller's array.
+   */
+  int position() {
+    return pos;
+  }
+
+  @Override
+  void consume() {
+    pos++;
+  }
+
+  @Override
+  int skipWhitespaceAndComments() throws IOException, SerializationException {
+    for (;;) {
+      if (pos == limit && !fill(pos)) {
+        return -1;
+      }
+
+      byte b = buffer[pos];
+      if (b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+        pos++;
+        skipWhitespaceRun();
+      } else if (b == '/') {
+        pos++;
+        skipComment();
+      } else if (b >= 0) {
+        if (!isWhitespace(b)) {
+          return b;
+        }
+        pos++;
+      } else {
+        int c = decode(pos);
+        if (!isWhitespace(c)) {
+          return c;
+        }
+        pos += width;
+      }
+    }
+  }
+
+  private void skipComment() throws IOException, SerializationException {
+    pendingLowSurrogate = 0;
+    int c = readChar();
+
+    if (c == '/') {
+      // Single-line comment
+      for (;;) {
+        if (pos == limit && !fill(pos)) {
+          break;
+        }
+        byte b = buffer[pos];
+        if (b == '\n' || b == '\r') {
+          break;
+        }
+        pos++;
+      }
+    } else if (c == '*') {
+      // Multi-line comment
+      boolean closed = false;
+
+      while (c != -1 && !closed) {
+        c = readChar();
+
+        if (c == '*') {
+          c = readChar();
+          closed = (c == '/');
+        }
+      }
+
+      if (!closed) {
+        throw new SerializationException("Unexpected end of input stream.");
+      }
+    } else {
+      throw new SerializationException("Unexpected character in input stream.");
+    }
+  }
+
+  @Override
+  int skipWhitespace() throws IOException {
+    for (;;) {
+      if (pos == limit && !fill(pos)) {
+        return -1;
+      }
+
+      byte b = buffer[pos];
+      if (!isJsonWhitespace(b)) {
+        return b & 0xFF;
+      }
+
+      pos++;
+      skipWhitespaceRun();
+    }
+  }
+
+  /**
+   * Skips the rest of a run of whitespace in the buffer. Single separators
+   * are common, so the run is only scanned by words if it continues.
+   */
+  private void skipWhitespaceRun() {
+    if (pos < limit && isJsonWhitespace(buffer[pos])) {
+      pos = ByteScanner.skipWhitespace(words(), pos + 1, limit);
+    }
+  }
+
+  @Override
+  String readStrictString(SymbolTable symbols) throws IOException, SerializationException {
+    int start = ++pos;
+
+    // Unlike lenient strings, no character is dropped: non-ASCII text is
+    // decoded in bulk
+    for (;;) {
+      pos = ByteScanner.scanStrictString(words(), pos, limit);
+      if (pos == limit) {
+        int offset = pos - start;
+        boolean more = fill(start);
+        start = pos - offset;
+        if (!more) {
+          throw new SerializationException("Unterminated string in input stream.");
+        }
+
+        continue;
+      }
+
+      if (buffer[pos] == '"') {
+        int length = pos - start;
+        pos++;
+
+        if (ByteScanner.isASCII(words, start, start + length)) {
+          return (symbols != null) ? symbols.intern(buffer, start, length)
+              : new String(buffer, start, length, StandardCharsets.ISO_8859_1);
+        }
+
+        String string = new String(buffer, start, length, StandardCharsets.UTF_8);
+        return (symbols != null) ? symbols.intern(string) : string;
+      }
+
+      break;
+    }
+
+    // Slow path: escape sequences
+    StringBuilder stringBuilder = this.stringBuilder;
+    stringBuilder.setLength(0);
+    if (ByteScanner.isASCII(words, start, pos)) {
+      for (int i = start; i < pos; i++) {
+        stringBuilder.append((char) buffer[i]);
+      }
+    } else {
+      stringBuilder.append(new String(buffer, start, pos - start, StandardCharsets.UTF_8));
+    }
+
+    pendingLowSurrogate = 0;
+    int c = readChar();
+    while (c != '"') {
+      if (c == -1) {
+        throw new SerializationException("Unterminated string in input stream.");
+      }
+
+      if (c < 0x20) {
+        throw new SerializationException("Unescaped control character in input stream.");
+      }
+
+      if (c == '\\') {
+        c = readStrictEscape();
+      }
+
+      stringBuilder.append((char) c);
+      c = readChar();
+    }
+
+    String string = stringBuilder.toString();
+    return (symbols != null) ? symbols.intern(string) : string;
+  }
+
+  private int readStrictEscape() throws IOException, SerializationException {
+    int c = readChar();
+
+    if (c == 'u') {
+      c = 0;
+      for (int i = 0; i < 4; i++) {
+        int digit = hexDigit(readChar());
+        if (digit == -1) {
+          throw new SerializationException("Invalid unicode escape sequence in input stream.");
+        }
+
+        c = (c << 4) | digit;
+      }
+
+      return c;
+    }
+
+    c = unescape(c);
+    if (c == -1) {
+      throw new SerializationException("Unsupported escape sequence in input stream.");
+    }
+
+    return c;
+  }
+
+  @Override
+  String readString() throws IOException, SerializationException {
+    return readString(null);
+  }
+
+  @Override
+  String readKey(int c) throws IOException, SerializationException {
+    return (c == '"' || c == '\'') ? readString(symbolTable) : readIdentifier(symbolTable);
+  }
+
+  private String readString(SymbolTable symbols) throws IOException, SerializationException {
+    // Use the same delimiter to close the string
+    byte t = buffer[pos++];
+    int start = pos;
+
+    for (;;) {
+      pos = ByteScanner.scanString(words(), pos, limit, t);
+      if (pos == limit) {
+        int offset = pos - start;
+        boolean more = fill(start);
+        start = pos - offset;
+        if (!more) {
+          throw new SerializationException("Unterminated string in input stream.");
+        }
+
+        continue;
+      }
+
+      if (buffer[pos] == t) {
+        int length = pos - start;
+        pos++;
+        return (symbols != null) ? symbols.intern(buffer, start, length)
+            : new String(buffer, start, length, StandardCharsets.ISO_8859_1);
+      }
+
+      // Escape sequences, control and non-ASCII characters
+      break;
+    }
+
+    // Slow path: escape sequences, control and non-ASCII characters
+    StringBuilder stringBuilder = this.stringBuilder;
+    stringBuilder.setLength(0);
+    for (int i = start; i < pos; i++) {
+      stringBuilder.append((char) buffer[i]);
+    }
+
+    pendingLowSurrogate = 0;
+    int c = readChar();
+    while (c != -1 && c != t) {
+      if (!isISOControl(c)) {
+        if (c == '\\') {
+          c = readEscape(t);
+        }
+
+        stringBuilder.append((char) c);
+      }
+
+      c = readChar();
+    }
+
+    if (c != t) {
+      throw new SerializationException("Unterminated string in input stream.");
+    }
+
+    String string = stringBuilder.toString();
+    return (symbols != null) ? symbols.intern(string) : string;
+  }
+
+  @Override
+  boolean skipString() throws IOException, SerializationException {
+    // Use the same delimiter to close the string
+    byte t = buffer[pos++];
+    boolean empty = true;
+
+    for (;;) {
+      int from = pos;
+      pos = ByteScanner.scanString(words(), pos, limit, t);
+      if (pos > from) {
+        empty = false;
+      }
+
+      if (pos == limit) {
+        if (!fill(pos)) {
+          throw new SerializationException("Unterminated string in input stream.");
+        }
+
+        continue;
+      }
+
+      if (buffer[pos] == t) {
+        pos++;
+        return !empty;
+      }
+
+      break;
+    }
+
+    // Slow path: escape sequences, control and non-ASCII characters
+    pendingLowSurrogate = 0;
+    int c = readChar();
+    while (c != -1 && c != t) {
+      if (!isISOControl(c)) {
+        if (c == '\\') {
+          readEscape(t);
+        }
+
+        empty = false;
+      }
+
+      c = readChar();
+    }
+
+    if (c != t) {
+      throw new SerializationException("Unterminated string in input stream.");
+    }
+
+    return !empty;
+  }
+
+  private int readEscape(int t) throws IOException, SerializationException {
+    int c = readChar();
+
+    if (c == 'b') {
+      c = '\b';
+    } else if (c == 'f') {
+      c = '\f';
+    } else if (c == 'n') {
+      c = '\n';
+    } else if (c == 'r') {
+      c = '\r';
+    } else if (c == 't') {
+      c = '\t';
+    } else if (c == 'u') {
+      char[] unicode = new char[4];
+      for (int i = 0; i < 4; i++) {
+        unicode[i] = (char) readChar();
+      }
+
+      c = (char) Integer.parseInt(new String(unicode), 16);
+    } else if (!(c == '\\' || c == '/' || c == '\"' || c == '\'' || c == t)) {
+      throw new SerializationException("Unsupported escape sequence in input stream.");
+    }
+
+    return c;
+  }
+
+  @Override
+  String readIdentifier() throws IOException, SerializationException {
+    return readIdentifier(null);
+  }
+
+  private String readIdentifier(SymbolTable symbols) throws IOException, SerializationException {
+    int start = scanIdentifier();
+
+    if (!scannedASCII) {
+      String identifier = new String(buffer, start, pos - start, StandardCharsets.UTF_8);
+      return (symbols != null) ? symbols.intern(identifier) : identifier;
+    }
+
+    return (symbols != null) ? symbols.intern(buffer, start, pos - start)
+        : new String(buffer, start, pos - start, StandardCharsets.ISO_8859_1);
+  }
+
+  @Override
+  void skipIdentifier() throws IOException, SerializationException {
+    scanIdentifier();
+  }
+
+  /**
+   * Moves past an undelimited map key.
+   *
+   * @return the index of the first byte of the key in {@link #buffer}.
+   */
+  private int scanIdentifier() throws IOException, SerializationException {
+    int c = decode(pos);
+    if (!isIdentifierStart(c)) {
+      throw new SerializationException("Illegal identifier start character.");
+    }
+
+    int start = pos;
+    boolean ascii = true;
+
+    for (;;) {
+      if (pos == limit) {
+        int offset = pos - start;
+        boolean more = fill(start);
+        start = pos - offset;
+        if (!more) {
+          throw new SerializationException("Unexpected end of input stream.");
+        }
+      }
+
+      byte b = buffer[pos];
+      if (b >= 0) {
+        if (b == ':' || isWhitespace(b)) {
+          break;
+        }
+        if (!isIdentifierPart(b)) {
+          throw new SerializationException("Illegal identifier character.");
+        }
+        pos++;
+      } else {
+        int offset = pos - start;
+        c = decode(start);
+        start = pos - offset;
+        if (isWhitespace(c)) {
+          break;
+        }
+        if (!isIdentifierPart(c)) {
+          throw new SerializationException("Illegal identifier character.");
+        }
+        pos += width;
+        ascii = false;
+      }
+    }
+
+    scannedASCII = ascii;
+    return start;
+  }
+
+  @Override
+  Number readNumber() throws IOException, SerializationException {
+    int start = scanNumber();
+
+    if (numberPolicy == NumberPolicy.LAZY) {
+      return new LazilyParsedNumber(
+          new String(buffer, start, pos - start, scannedASCII ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8));
+    }
+
+    if (!scannedASCII) {
+      return NumberDecoder.decode(new String(buffer, start, pos - start, StandardCharsets.UTF_8), numberPolicy);
+    }
+
+    return NumberDecoder.decode(buffer, start, pos, numberPolicy);
+  }
+
+  @Override
+  void skipNumber() throws IOException, SerializationException {
+    scanNumber();
+  }
+
+  /**
+   * Moves past a number.
+   *
+   * @return the index of the first byte of the number in {@link #buffer}.
+   */
+  private int scanNumber() throws IOException {
+    int start = pos;
+    boolean ascii = true;
+
+    for (;;) {
+      if (pos == limit) {
+        int offset = pos - start;
+        boolean more = fill(start);
+        start = pos - offset;
+        if (!more) {
+          break;
+        }
+      }
+
+      byte b = buffer[pos];
+      if (b >= 0) {
+        if (!isNumberPart(b)) {
+          break;
+        }
+        pos++;
+      } else {
+        int offset = pos - start;
+        int c = decode(start);
+        start = pos - offset;
+        if (!isDigit(c)) {
+          break;
+        }
+        pos += width;
+        ascii = false;
+      }
+    }
+
+    scannedASCII = ascii;
+    return start;
+  }
+
+  @Override
+  Number readStrictNumber() throws IOException, SerializationException {
+    int start = pos;
+    int state = 0;
+
+    for (;;) {
+      if (pos == limit) {
+        int offset = pos - start;
+        boolean more = fill(start);
+        start = pos - offset;
+        if (!more) {
+          break;
+        }
+      }
+
+      int next = nextNumberState(state, buffer[pos]);
+      if (next == -1) {
+        break;
+      }
+
+      state = next;
+      pos++;
+    }
+
+    if (!isNumberComplete(state)) {
+      throw new SerializationException("Invalid number in input stream.");
+    }
+
+    if (numberPolicy == NumberPolicy.LAZY) {
+      return new LazilyParsedNumber(new String(buffer, start, pos - start, StandardCharsets.ISO_8859_1));
+    }
+
+    return NumberDecoder.decode(buffer, start, pos, numberPolicy);
+  }
+
+  @Override
+  void readLiteral(String text, String incompleteMessage) throws IOException, SerializationException {
+    for (int i = 0, n = text.length(); i < n; i++) {
+      if (pos == limit && !fill(pos)) {
+        throw new SerializationException(incompleteMessage);
+      }
+
+      if (text.charAt(i) != buffer[pos]) {
+        throw new SerializationException("Unexpected character in input stream.");
+      }
+
+      pos++;
+    }
+  }
+}
@@ -0,0 +1,243 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.veracloud.jton.serialization;
+
+import java.time.LocalDate;
+import java.util.Date;
+
+/**
+ * Formats numbers and dates into a reusable character array, as they are
+ * formatted by {@link com.veracloud.jton.JtonPrimitive#getAsString()}.
+ * <p>
+ * Integers are formatted without allocation. Doubles of ordinary magnitude are
+ * formatted with the fewest digits that read back as the same value. Dates are
+ * formatted as ISO 8601 in UTC, the date part being computed with
+ * {@code java.time} once per day rather than through a {@code Calendar} per
+ * value. The methods return the length of the text in {@link #chars()}, or -1
+ * for the values left to {@code toString()} or {@code getAsString()}.
+ */
+final class ValueFormatter {
+  private static final long MILLIS_PER_DAY = 86400000L;
+
+  /**
+   * Range of the days formatted by {@link #formatDate(Date)}: from the
+   * Gregorian cutover, before which {@code GregorianCalendar} follows the
+   * Julian calendar, to the last day of four digit years.
+   */
+  private static final long MIN_EPOCH_DAY = LocalDate.of(1582, 10, 15).toEpochDay();
+  private static final long MAX_EPOCH_DAY = LocalDate.of(9999, 12, 31).toEpochDay();
+
+  private static final double[] POWERS_OF_TEN = new double[23];
+
+  static {
+    POWERS_OF_TEN[0] = 1;
+    for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+      POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+  }
+
+  private final char[] chars = new char[32];
+
+  /** The last day formatted, and its text "yyyy-MM-dd". */
+  private long epochDay = Long.MIN_VALUE;
+  private final char[] day = new char[10];
+
+  /**
+   * Returns the array holding the text of the last value formatted.
+   */
+  char[] chars() {
+    return chars;
+  }
+
+  /**
+   * Formats a number, unless it is a float, a big number or a lazily parsed
+   * one, which are kept as they are given by {@code toString()}.
+   */
+  int formatNumber(Number number) {
+    if (number instanceof Integer || number instanceof Long || number instanceof Short || number instanceof Byte) {
+      return formatLong(number.longValue());
+    } else if (number instanceof Double) {
+      return formatDouble(number.doubleValue());
+    } else {
+      return -1;
+    }
+  }
+
+  int formatLong(long value) {
+    // Digits are taken from the negative value, which cannot overflow
+    long q = value < 0 ? value : -value;
+
+    int i = chars.length;
+    do {
+      chars[--i] = (char) ('0' - (int) (q % 10));
+      q /= 10;
+    } while (q != 0);
+
+    if (value < 0) {
+      chars[--i] = '-';
+    }
+
+    int length = chars.length - i;
+    System.arraycopy(chars, i, chars, 0, length);
+    return length;
+  }
+
+  /**
+   * Formats a double in the plain notation of {@link Double#toString(double)},
+   * with the fewest fraction digits that read back as the same value. Values
+   * below 10<sup>-3</sup> or from 10<sup>7</sup>, which are written in
+   * scientific notation, and non-finite values are not formatted.
+   */
+  int formatDouble(double value) {
+    double magnitude = Math.abs(value);
+    if (!(magnitude >= 1e-3 && magnitude < 1e7)) {
+      return -1;
+    }
+
+    for (int scale = 0; scale < POWERS_OF_TEN.length; scale++) {
+      double scaled = magnitude * POWERS_OF_TEN[scale];
+      if (scaled >= 0x1p53) {
+        break;
+      }
+
+      // Both operands are exact, so the quotient is the double nearest to the
+      // decimal value
+      long unscaled = Math.round(scaled);
+      if (unscaled / POWERS_OF_TEN[scale] == magnitude) {
+        return formatDecimal(value < 0, unscaled, scale);
+      }
+    }
+
+    return -1;
+  }
+
+  /**
+   * Formats {@code unscaled * 10^-scale} with at least one fraction digit.
+   */
+  private int formatDecimal(boolean negative, long unscaled, int scale) {
+    int i = chars.length;
+
+    if (scale == 0) {
+      chars[--i] = '0';
+    } else {
+      for (int j = 0; j < scale; j++) {
+        chars[--i] = (char) ('0' + (int) (unscaled % 10));
+        unscaled /= 10;
+      }
+    }
+
+    chars[--i] = '.';
+
+    do {
+      chars[--i] = (char) ('0' + (int) (unscaled % 10));
+      unscaled /= 10;
+    } while (unscaled != 0);
+
+    if (negative) {
+      chars[--i] = '-';
+    }
+
+    int length = chars.length - i;
+    System.arraycopy(chars, i, chars, 0, length);
+    return length;
+  }
+
+  /**
+   * Formats a date in UTC, as a date ({@code yyyy-MM-ddZ}) if it is a
+   * {@link java.sql.Date}, as a time ({@code HH:mm:ss[.SSS]Z}) if it is a
+   * {@link java.sql.Time}, and as a date and time
+   * ({@code yyyy-MM-ddTHH:mm:ss[.SSS]Z}) otherwise. The milliseconds are
+   * omitted when zero. Dates before the Gregorian cutover or after year 9999
+   * are not formatted.
+   */
+  int formatDate(Date date) {
+    long time = date.getTime();
+    long epochDay = Math.floorDiv(time, MILLIS_PER_DAY);
+    int millisOfDay = (int) Math.floorMod(time, MILLIS_PER_DAY);
+
+    int i = 0;
+
+    if (!(date instanceof java.sql.Time)) {
+      if (epochDay < MIN_EPOCH_DAY || epochDay > MAX_EPOCH_DAY) {
+        return -1;
+      }
+
+      if (epochDay != this.epochDay) {
+        formatDay(epochDay);
+      }
+
+      System.arraycopy(day, 0, chars, 0, day.length);
+      i = day.length;
+
+      if (date instanceof java.sql.Date) {
+        chars[i++] = 'Z';
+        return i;
+      }
+
+      chars[i++] = 'T';
+    }
+
+    int seconds = millisOfDay / 1000;
+    int millis = millisOfDay % 1000;
+
+    i = formatDigits(seconds / 3600, 2, i);
+    chars[i++] = ':';
+    i = formatDigits(seconds / 60 % 60, 2, i);
+    chars[i++] = ':';
+    i = formatDigits(seconds % 60, 2, i);
+
+    if (millis != 0) {
+      chars[i++] = '.';
+      i = formatDigits(millis, 3, i);
+    }
+
+    chars[i++] = 'Z';
+    return i;
+  }
+
+  private void formatDay(long epochDay) {
+    LocalDate date = LocalDate.ofEpochDay(epochDay);
+
+    int year = date.getYear();
+    int month = date.getMonthValue();
+    int dayOfMonth = date.getDayOfMonth();
+
+    for (int i = 3; i >= 0; i--) {
+      day[i] = (char) ('0' + year % 10);
+      year /= 10;
+    }
+
+    day[4] = '-';
+    day[5] = (char) ('0' + month / 10);
+    day[6] = (char) ('0' + month % 10);
+    day[7] = '-';
+    day[8] = (char) ('0' + dayOfMonth / 10);
+    day[9] = (char) ('0' + dayOfMonth % 10);
+
+    this.epochDay = epochDay;
+  }
+
+  /**
+   * Formats a non-negative value with the given number of digits at
+   * {@code i}, returning the index following them.
+   */
+  private int formatDigits(int value, int digits, int i) {
+    for (int j = i + digits - 1; j >= i; j--) {
+      chars[j] = (char) ('0' + value % 10);
+      value /= 10;
+    }
+
+    return i + digits;
+  }
+}
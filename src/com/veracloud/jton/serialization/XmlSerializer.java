@@ -51,6 +51,8 @@ public class XmlSerializer implements Serializer<JtonObject> {
 	private Charset charset = null;
 	private String localName = null;
 
+	private final ValueFormatter formatter = new ValueFormatter();
+
 	public static final String DEFAULT_LOCALNAME = "jton-object";
 
 	public static final String XMLNS_ATTRIBUTE_PREFIX = "xmlns";
@@ -383,11 +385,21 @@ public class XmlSerializer implements Serializer<JtonObject> {
 				}
 			}
 
-			xmlStreamWriter.writeCharacters(number.toString());
+			int length = formatter.formatNumber(number);
+			if (length >= 0) {
+				xmlStreamWriter.writeCharacters(formatter.chars(), 0, length);
+			} else {
+				xmlStreamWriter.writeCharacters(number.toString());
+			}
 		} else if (object.isBoolean()) {
 			xmlStreamWriter.writeCharacters(String.valueOf(object.getAsBoolean()));
 		} else if (object.isDate()) {
-			xmlStreamWriter.writeCharacters(object.getAsString());
+			int length = formatter.formatDate(object.getAsDate());
+			if (length >= 0) {
+				xmlStreamWriter.writeCharacters(formatter.chars(), 0, length);
+			} else {
+				xmlStreamWriter.writeCharacters(object.getAsString());
+			}
 		} else if (object.isSqlDate()) {
 			xmlStreamWriter.writeCharacters(object.getAsString());
 		} else if (object.isSqlTime()) {
@@ -456,35 +468,35 @@ public class XmlSerializer implements Serializer<JtonObject> {
 					if ("null".equals(type)) {
 						return JtonNull.INSTANCE;
 					} else if ("string".equals(type)) {
-						return new JtonPrimitive(text);
+						return JtonPrimitive.valueOf(text);
 					} else if ("char".equals(type)) {
-						return new JtonPrimitive(Character.valueOf(text.charAt(0)));
+						return JtonPrimitive.valueOf(Character.valueOf(text.charAt(0)));
 					} else if ("byte".equals(type)) {
-						return new JtonPrimitive(Byte.valueOf(text));
+						return JtonPrimitive.valueOf(Byte.valueOf(text));
 					} else if ("short".equals(type)) {
-						return new JtonPrimitive(Short.valueOf(text));
+						return JtonPrimitive.valueOf(Short.valueOf(text));
 					} else if ("int".equals(type)) {
-						return new JtonPrimitive(Integer.valueOf(text));
+						return JtonPrimitive.valueOf(Integer.valueOf(text));
 					} else if ("long".equals(type)) {
-						return new JtonPrimitive(Long.valueOf(text));
+						return JtonPrimitive.valueOf(Long.valueOf(text));
 					} else if ("float".equals(type)) {
-						return new JtonPrimitive(Float.valueOf(text));
+						return JtonPrimitive.valueOf(Float.valueOf(text));
 					} else if ("double".equals(type)) {
-						return new JtonPrimitive(Double.valueOf(text));
+						return JtonPrimitive.valueOf(Double.valueOf(text));
 					} else if ("bigint".equals(type)) {
-						return new JtonPrimitive(new BigInteger(text));
+						return JtonPrimitive.valueOf(new BigInteger(text));
 					} else if ("bigdecimal".equals(type)) {
-						return new JtonPrimitive(new BigDecimal(text));
+						return JtonPrimitive.valueOf(new BigDecimal(text));
 					} else if ("number".equals(type)) {
-						return new JtonPrimitive(new LazilyParsedNumber(text));
+						return JtonPrimitive.valueOf(new LazilyParsedNumber(text));
 					} else if ("date".equals(type)) {
-						return new JtonPrimitive(DatatypeConverter.parseDateTime(text).getTime());
+						return JtonPrimitive.valueOf(DatatypeConverter.parseDateTime(text).getTime());
 					} else if ("sqldate".equals(type)) {
-						return new JtonPrimitive(new java.sql.Date(DatatypeConverter.parseDate(text).getTime().getTime()));
+						return JtonPrimitive.valueOf(new java.sql.Date(DatatypeConverter.parseDate(text).getTime().getTime()));
 					} else if ("sqltime".equals(type)) {
-						return new JtonPrimitive(new java.sql.Time(DatatypeConverter.parseDate(text).getTime().getTime()));
+						return JtonPrimitive.valueOf(new java.sql.Time(DatatypeConverter.parseDate(text).getTime().getTime()));
 					} else if ("sqltstamp".equals(type)) {
-						return new JtonPrimitive(new java.sql.Timestamp(DatatypeConverter.parseDate(text).getTime().getTime()));
+						return JtonPrimitive.valueOf(new java.sql.Timestamp(DatatypeConverter.parseDate(text).getTime().getTime()));
 					} else {
 						throw new SerializationException("Unknown type: " + type);
 					}